@@ -3,7 +3,9 @@ package com.nocountry.api.config;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @ConfigurationProperties(prefix = "app")
 public class AppProperties {
@@ -53,6 +55,26 @@ public class AppProperties {
         private boolean enabled = true;
         private int rateLimitCapacity = 30;
         private int rateLimitRefillPerSecond = 10;
+        private int rateLimitMaxBuckets = 100000;
+        private boolean rateLimitSharedEnabled = false;
+        private int rateLimitLeaseBlock = 5;
+        private long rateLimitLeaseTtlMs = 1000;
+        private long rateLimitSharedSlowMs = 100;
+        private long rateLimitSharedBackoffSeconds = 30;
+        private int rateLimitSharedPoolSize = 2;
+        private boolean asyncIngestEnabled = false;
+        private int ingestQueueCapacity = 10000;
+        private int ingestWriterThreads = 2;
+        private int ingestBatchSize = 200;
+        private long ingestFlushIntervalMs = 50;
+        private int batchMaxSize = 20;
+        private int sessionCacheMaxSize = 50000;
+        private long sessionCacheTtlSeconds = 900;
+        private boolean lastSeenCoalescingEnabled = true;
+        private long lastSeenFlushIntervalMs = 1000;
+        private int dedupFilterMemoryKb = 1024;
+        private long dedupFilterWindowSeconds = 3600;
+        private String ipHashSecret = "";
 
         public boolean isEnabled() {
             return enabled;
@@ -77,10 +99,178 @@ public class AppProperties {
         public void setRateLimitRefillPerSecond(int rateLimitRefillPerSecond) {
             this.rateLimitRefillPerSecond = rateLimitRefillPerSecond;
         }
+
+        public int getRateLimitMaxBuckets() {
+            return rateLimitMaxBuckets;
+        }
+
+        public void setRateLimitMaxBuckets(int rateLimitMaxBuckets) {
+            this.rateLimitMaxBuckets = rateLimitMaxBuckets;
+        }
+
+        public boolean isRateLimitSharedEnabled() {
+            return rateLimitSharedEnabled;
+        }
+
+        public void setRateLimitSharedEnabled(boolean rateLimitSharedEnabled) {
+            this.rateLimitSharedEnabled = rateLimitSharedEnabled;
+        }
+
+        public int getRateLimitLeaseBlock() {
+            return rateLimitLeaseBlock;
+        }
+
+        public void setRateLimitLeaseBlock(int rateLimitLeaseBlock) {
+            this.rateLimitLeaseBlock = rateLimitLeaseBlock;
+        }
+
+        public long getRateLimitLeaseTtlMs() {
+            return rateLimitLeaseTtlMs;
+        }
+
+        public void setRateLimitLeaseTtlMs(long rateLimitLeaseTtlMs) {
+            this.rateLimitLeaseTtlMs = rateLimitLeaseTtlMs;
+        }
+
+        public long getRateLimitSharedSlowMs() {
+            return rateLimitSharedSlowMs;
+        }
+
+        public void setRateLimitSharedSlowMs(long rateLimitSharedSlowMs) {
+            this.rateLimitSharedSlowMs = rateLimitSharedSlowMs;
+        }
+
+        public long getRateLimitSharedBackoffSeconds() {
+            return rateLimitSharedBackoffSeconds;
+        }
+
+        public void setRateLimitSharedBackoffSeconds(long rateLimitSharedBackoffSeconds) {
+            this.rateLimitSharedBackoffSeconds = rateLimitSharedBackoffSeconds;
+        }
+
+        public int getRateLimitSharedPoolSize() {
+            return rateLimitSharedPoolSize;
+        }
+
+        public void setRateLimitSharedPoolSize(int rateLimitSharedPoolSize) {
+            this.rateLimitSharedPoolSize = rateLimitSharedPoolSize;
+        }
+
+        public boolean isAsyncIngestEnabled() {
+            return asyncIngestEnabled;
+        }
+
+        public void setAsyncIngestEnabled(boolean asyncIngestEnabled) {
+            this.asyncIngestEnabled = asyncIngestEnabled;
+        }
+
+        public int getIngestQueueCapacity() {
+            return ingestQueueCapacity;
+        }
+
+        public void setIngestQueueCapacity(int ingestQueueCapacity) {
+            this.ingestQueueCapacity = ingestQueueCapacity;
+        }
+
+        public int getIngestWriterThreads() {
+            return ingestWriterThreads;
+        }
+
+        public void setIngestWriterThreads(int ingestWriterThreads) {
+            this.ingestWriterThreads = ingestWriterThreads;
+        }
+
+        public int getIngestBatchSize() {
+            return ingestBatchSize;
+        }
+
+        public void setIngestBatchSize(int ingestBatchSize) {
+            this.ingestBatchSize = ingestBatchSize;
+        }
+
+        public long getIngestFlushIntervalMs() {
+            return ingestFlushIntervalMs;
+        }
+
+        public void setIngestFlushIntervalMs(long ingestFlushIntervalMs) {
+            this.ingestFlushIntervalMs = ingestFlushIntervalMs;
+        }
+
+        public int getBatchMaxSize() {
+            return batchMaxSize;
+        }
+
+        public void setBatchMaxSize(int batchMaxSize) {
+            this.batchMaxSize = batchMaxSize;
+        }
+
+        public int getSessionCacheMaxSize() {
+            return sessionCacheMaxSize;
+        }
+
+        public void setSessionCacheMaxSize(int sessionCacheMaxSize) {
+            this.sessionCacheMaxSize = sessionCacheMaxSize;
+        }
+
+        public long getSessionCacheTtlSeconds() {
+            return sessionCacheTtlSeconds;
+        }
+
+        public void setSessionCacheTtlSeconds(long sessionCacheTtlSeconds) {
+            this.sessionCacheTtlSeconds = sessionCacheTtlSeconds;
+        }
+
+        public boolean isLastSeenCoalescingEnabled() {
+            return lastSeenCoalescingEnabled;
+        }
+
+        public void setLastSeenCoalescingEnabled(boolean lastSeenCoalescingEnabled) {
+            this.lastSeenCoalescingEnabled = lastSeenCoalescingEnabled;
+        }
+
+        public long getLastSeenFlushIntervalMs() {
+            return lastSeenFlushIntervalMs;
+        }
+
+        public void setLastSeenFlushIntervalMs(long lastSeenFlushIntervalMs) {
+            this.lastSeenFlushIntervalMs = lastSeenFlushIntervalMs;
+        }
+
+        public int getDedupFilterMemoryKb() {
+            return dedupFilterMemoryKb;
+        }
+
+        public void setDedupFilterMemoryKb(int dedupFilterMemoryKb) {
+            this.dedupFilterMemoryKb = dedupFilterMemoryKb;
+        }
+
+        public long getDedupFilterWindowSeconds() {
+            return dedupFilterWindowSeconds;
+        }
+
+        public void setDedupFilterWindowSeconds(long dedupFilterWindowSeconds) {
+            this.dedupFilterWindowSeconds = dedupFilterWindowSeconds;
+        }
+
+        public String getIpHashSecret() {
+            return ipHashSecret;
+        }
+
+        public void setIpHashSecret(String ipHashSecret) {
+            this.ipHashSecret = ipHashSecret;
+        }
     }
 
     public static class Stripe {
         private String webhookSecret = "";
+        private List<String> webhookPreviousSecrets = new ArrayList<>();
+        private int webhookMaxBodyBytes = 1_048_576;
+        private boolean inboxEnabled = false;
+        private int inboxWorkers = 2;
+        private int inboxBatchSize = 10;
+        private long inboxPollIntervalMs = 500;
+        private int inboxMaxAttempts = 8;
+        private long inboxLockSeconds = 120;
 
         public String getWebhookSecret() {
             return webhookSecret;
@@ -89,12 +279,102 @@ public class AppProperties {
         public void setWebhookSecret(String webhookSecret) {
             this.webhookSecret = webhookSecret;
         }
+
+        public List<String> getWebhookPreviousSecrets() {
+            return webhookPreviousSecrets;
+        }
+
+        public void setWebhookPreviousSecrets(List<String> webhookPreviousSecrets) {
+            this.webhookPreviousSecrets = webhookPreviousSecrets;
+        }
+
+        public int getWebhookMaxBodyBytes() {
+            return webhookMaxBodyBytes;
+        }
+
+        public void setWebhookMaxBodyBytes(int webhookMaxBodyBytes) {
+            this.webhookMaxBodyBytes = webhookMaxBodyBytes;
+        }
+
+        public boolean isInboxEnabled() {
+            return inboxEnabled;
+        }
+
+        public void setInboxEnabled(boolean inboxEnabled) {
+            this.inboxEnabled = inboxEnabled;
+        }
+
+        public int getInboxWorkers() {
+            return inboxWorkers;
+        }
+
+        public void setInboxWorkers(int inboxWorkers) {
+            this.inboxWorkers = inboxWorkers;
+        }
+
+        public int getInboxBatchSize() {
+            return inboxBatchSize;
+        }
+
+        public void setInboxBatchSize(int inboxBatchSize) {
+            this.inboxBatchSize = inboxBatchSize;
+        }
+
+        public long getInboxPollIntervalMs() {
+            return inboxPollIntervalMs;
+        }
+
+        public void setInboxPollIntervalMs(long inboxPollIntervalMs) {
+            this.inboxPollIntervalMs = inboxPollIntervalMs;
+        }
+
+        public int getInboxMaxAttempts() {
+            return inboxMaxAttempts;
+        }
+
+        public void setInboxMaxAttempts(int inboxMaxAttempts) {
+            this.inboxMaxAttempts = inboxMaxAttempts;
+        }
+
+        public long getInboxLockSeconds() {
+            return inboxLockSeconds;
+        }
+
+        public void setInboxLockSeconds(long inboxLockSeconds) {
+            this.inboxLockSeconds = inboxLockSeconds;
+        }
     }
 
     public static class Integrations {
         private boolean metaCapiEnabled = false;
         private boolean ga4MpEnabled = false;
         private boolean pipedriveEnabled = false;
+        private int dispatchThreads = 16;
+        private int dispatchQueueCapacity = 256;
+        private int dispatchMaxConcurrent = 8;
+        private long dispatchTimeoutMs = 15000;
+        private boolean dispatchWait = true;
+        private boolean circuitBreakerEnabled = false;
+        private int circuitFailureRateThreshold = 50;
+        private int circuitWindowSize = 20;
+        private int circuitMinimumCalls = 10;
+        private long circuitOpenSeconds = 30;
+        private boolean adaptiveConcurrencyEnabled = false;
+        private long adaptiveLatencyTargetMs = 2000;
+        private int adaptiveMinConcurrent = 1;
+        private boolean outboxEnabled = false;
+        private boolean outboxDrainerEnabled = true;
+        private int outboxBatchSize = 8;
+        private long outboxPollIntervalMs = 1000;
+        private long outboxLockSeconds = 120;
+        private long outboxBackoffBaseSeconds = 5;
+        private long outboxBackoffMaxSeconds = 3600;
+        private int outboxMaxAttempts = 10;
+        private Map<String, Integer> outboxMaxAttemptsByIntegration = new HashMap<>();
+        private int logBufferCapacity = 10000;
+        private int logBatchSize = 200;
+        private long logFlushIntervalMs = 500;
+        private boolean logSkippedRollupEnabled = false;
 
         public boolean isMetaCapiEnabled() {
             return metaCapiEnabled;
@@ -119,11 +399,223 @@ public class AppProperties {
         public void setPipedriveEnabled(boolean pipedriveEnabled) {
             this.pipedriveEnabled = pipedriveEnabled;
         }
+
+        public int getDispatchThreads() {
+            return dispatchThreads;
+        }
+
+        public void setDispatchThreads(int dispatchThreads) {
+            this.dispatchThreads = dispatchThreads;
+        }
+
+        public int getDispatchQueueCapacity() {
+            return dispatchQueueCapacity;
+        }
+
+        public void setDispatchQueueCapacity(int dispatchQueueCapacity) {
+            this.dispatchQueueCapacity = dispatchQueueCapacity;
+        }
+
+        public int getDispatchMaxConcurrent() {
+            return dispatchMaxConcurrent;
+        }
+
+        public void setDispatchMaxConcurrent(int dispatchMaxConcurrent) {
+            this.dispatchMaxConcurrent = dispatchMaxConcurrent;
+        }
+
+        public long getDispatchTimeoutMs() {
+            return dispatchTimeoutMs;
+        }
+
+        public void setDispatchTimeoutMs(long dispatchTimeoutMs) {
+            this.dispatchTimeoutMs = dispatchTimeoutMs;
+        }
+
+        public boolean isDispatchWait() {
+            return dispatchWait;
+        }
+
+        public void setDispatchWait(boolean dispatchWait) {
+            this.dispatchWait = dispatchWait;
+        }
+
+        public boolean isCircuitBreakerEnabled() {
+            return circuitBreakerEnabled;
+        }
+
+        public void setCircuitBreakerEnabled(boolean circuitBreakerEnabled) {
+            this.circuitBreakerEnabled = circuitBreakerEnabled;
+        }
+
+        public int getCircuitFailureRateThreshold() {
+            return circuitFailureRateThreshold;
+        }
+
+        public void setCircuitFailureRateThreshold(int circuitFailureRateThreshold) {
+            this.circuitFailureRateThreshold = circuitFailureRateThreshold;
+        }
+
+        public int getCircuitWindowSize() {
+            return circuitWindowSize;
+        }
+
+        public void setCircuitWindowSize(int circuitWindowSize) {
+            this.circuitWindowSize = circuitWindowSize;
+        }
+
+        public int getCircuitMinimumCalls() {
+            return circuitMinimumCalls;
+        }
+
+        public void setCircuitMinimumCalls(int circuitMinimumCalls) {
+            this.circuitMinimumCalls = circuitMinimumCalls;
+        }
+
+        public long getCircuitOpenSeconds() {
+            return circuitOpenSeconds;
+        }
+
+        public void setCircuitOpenSeconds(long circuitOpenSeconds) {
+            this.circuitOpenSeconds = circuitOpenSeconds;
+        }
+
+        public boolean isAdaptiveConcurrencyEnabled() {
+            return adaptiveConcurrencyEnabled;
+        }
+
+        public void setAdaptiveConcurrencyEnabled(boolean adaptiveConcurrencyEnabled) {
+            this.adaptiveConcurrencyEnabled = adaptiveConcurrencyEnabled;
+        }
+
+        public long getAdaptiveLatencyTargetMs() {
+            return adaptiveLatencyTargetMs;
+        }
+
+        public void setAdaptiveLatencyTargetMs(long adaptiveLatencyTargetMs) {
+            this.adaptiveLatencyTargetMs = adaptiveLatencyTargetMs;
+        }
+
+        public int getAdaptiveMinConcurrent() {
+            return adaptiveMinConcurrent;
+        }
+
+        public void setAdaptiveMinConcurrent(int adaptiveMinConcurrent) {
+            this.adaptiveMinConcurrent = adaptiveMinConcurrent;
+        }
+
+        public boolean isOutboxEnabled() {
+            return outboxEnabled;
+        }
+
+        public void setOutboxEnabled(boolean outboxEnabled) {
+            this.outboxEnabled = outboxEnabled;
+        }
+
+        public boolean isOutboxDrainerEnabled() {
+            return outboxDrainerEnabled;
+        }
+
+        public void setOutboxDrainerEnabled(boolean outboxDrainerEnabled) {
+            this.outboxDrainerEnabled = outboxDrainerEnabled;
+        }
+
+        public int getOutboxBatchSize() {
+            return outboxBatchSize;
+        }
+
+        public void setOutboxBatchSize(int outboxBatchSize) {
+            this.outboxBatchSize = outboxBatchSize;
+        }
+
+        public long getOutboxPollIntervalMs() {
+            return outboxPollIntervalMs;
+        }
+
+        public void setOutboxPollIntervalMs(long outboxPollIntervalMs) {
+            this.outboxPollIntervalMs = outboxPollIntervalMs;
+        }
+
+        public long getOutboxLockSeconds() {
+            return outboxLockSeconds;
+        }
+
+        public void setOutboxLockSeconds(long outboxLockSeconds) {
+            this.outboxLockSeconds = outboxLockSeconds;
+        }
+
+        public long getOutboxBackoffBaseSeconds() {
+            return outboxBackoffBaseSeconds;
+        }
+
+        public void setOutboxBackoffBaseSeconds(long outboxBackoffBaseSeconds) {
+            this.outboxBackoffBaseSeconds = outboxBackoffBaseSeconds;
+        }
+
+        public long getOutboxBackoffMaxSeconds() {
+            return outboxBackoffMaxSeconds;
+        }
+
+        public void setOutboxBackoffMaxSeconds(long outboxBackoffMaxSeconds) {
+            this.outboxBackoffMaxSeconds = outboxBackoffMaxSeconds;
+        }
+
+        public int getOutboxMaxAttempts() {
+            return outboxMaxAttempts;
+        }
+
+        public void setOutboxMaxAttempts(int outboxMaxAttempts) {
+            this.outboxMaxAttempts = outboxMaxAttempts;
+        }
+
+        public Map<String, Integer> getOutboxMaxAttemptsByIntegration() {
+            return outboxMaxAttemptsByIntegration;
+        }
+
+        public void setOutboxMaxAttemptsByIntegration(Map<String, Integer> outboxMaxAttemptsByIntegration) {
+            this.outboxMaxAttemptsByIntegration = outboxMaxAttemptsByIntegration;
+        }
+
+        public int getLogBufferCapacity() {
+            return logBufferCapacity;
+        }
+
+        public void setLogBufferCapacity(int logBufferCapacity) {
+            this.logBufferCapacity = logBufferCapacity;
+        }
+
+        public int getLogBatchSize() {
+            return logBatchSize;
+        }
+
+        public void setLogBatchSize(int logBatchSize) {
+            this.logBatchSize = logBatchSize;
+        }
+
+        public long getLogFlushIntervalMs() {
+            return logFlushIntervalMs;
+        }
+
+        public void setLogFlushIntervalMs(long logFlushIntervalMs) {
+            this.logFlushIntervalMs = logFlushIntervalMs;
+        }
+
+        public boolean isLogSkippedRollupEnabled() {
+            return logSkippedRollupEnabled;
+        }
+
+        public void setLogSkippedRollupEnabled(boolean logSkippedRollupEnabled) {
+            this.logSkippedRollupEnabled = logSkippedRollupEnabled;
+        }
     }
 
     public static class Meta {
         private String pixelId = "";
         private String accessToken = "";
+        private boolean batchEnabled = false;
+        private int batchMaxEvents = 100;
+        private long batchMaxWaitMs = 200;
+        private int batchSenderThreads = 2;
 
         public String getPixelId() {
             return pixelId;
@@ -140,12 +632,49 @@ public class AppProperties {
         public void setAccessToken(String accessToken) {
             this.accessToken = accessToken;
         }
+
+        public boolean isBatchEnabled() {
+            return batchEnabled;
+        }
+
+        public void setBatchEnabled(boolean batchEnabled) {
+            this.batchEnabled = batchEnabled;
+        }
+
+        public int getBatchMaxEvents() {
+            return batchMaxEvents;
+        }
+
+        public void setBatchMaxEvents(int batchMaxEvents) {
+            this.batchMaxEvents = batchMaxEvents;
+        }
+
+        public long getBatchMaxWaitMs() {
+            return batchMaxWaitMs;
+        }
+
+        public void setBatchMaxWaitMs(long batchMaxWaitMs) {
+            this.batchMaxWaitMs = batchMaxWaitMs;
+        }
+
+        public int getBatchSenderThreads() {
+            return batchSenderThreads;
+        }
+
+        public void setBatchSenderThreads(int batchSenderThreads) {
+            this.batchSenderThreads = batchSenderThreads;
+        }
     }
 
     public static class Ga4 {
         private String measurementId = "";
         private String apiSecret = "";
         private boolean debugValidationEnabled = false;
+        private double debugValidationSampleRate = 0.01;
+        private boolean batchEnabled = false;
+        private int batchMaxEvents = 100;
+        private long batchMaxWaitMs = 200;
+        private int batchSenderThreads = 4;
 
         public String getMeasurementId() {
             return measurementId;
@@ -170,10 +699,54 @@ public class AppProperties {
         public void setDebugValidationEnabled(boolean debugValidationEnabled) {
             this.debugValidationEnabled = debugValidationEnabled;
         }
+
+        public double getDebugValidationSampleRate() {
+            return debugValidationSampleRate;
+        }
+
+        public void setDebugValidationSampleRate(double debugValidationSampleRate) {
+            this.debugValidationSampleRate = debugValidationSampleRate;
+        }
+
+        public boolean isBatchEnabled() {
+            return batchEnabled;
+        }
+
+        public void setBatchEnabled(boolean batchEnabled) {
+            this.batchEnabled = batchEnabled;
+        }
+
+        public int getBatchMaxEvents() {
+            return batchMaxEvents;
+        }
+
+        public void setBatchMaxEvents(int batchMaxEvents) {
+            this.batchMaxEvents = batchMaxEvents;
+        }
+
+        public long getBatchMaxWaitMs() {
+            return batchMaxWaitMs;
+        }
+
+        public void setBatchMaxWaitMs(long batchMaxWaitMs) {
+            this.batchMaxWaitMs = batchMaxWaitMs;
+        }
+
+        public int getBatchSenderThreads() {
+            return batchSenderThreads;
+        }
+
+        public void setBatchSenderThreads(int batchSenderThreads) {
+            this.batchSenderThreads = batchSenderThreads;
+        }
     }
 
     public static class Pipedrive {
         private String apiToken = "";
+        private int idCacheMaxSize = 10000;
+        private long idCacheTtlSeconds = 604800;
+        private long idCacheDealTtlSeconds = 900;
+        private int idCacheWarmupLimit = 10000;
 
         public String getApiToken() {
             return apiToken;
@@ -182,6 +755,38 @@ public class AppProperties {
         public void setApiToken(String apiToken) {
             this.apiToken = apiToken;
         }
+
+        public int getIdCacheMaxSize() {
+            return idCacheMaxSize;
+        }
+
+        public void setIdCacheMaxSize(int idCacheMaxSize) {
+            this.idCacheMaxSize = idCacheMaxSize;
+        }
+
+        public long getIdCacheTtlSeconds() {
+            return idCacheTtlSeconds;
+        }
+
+        public void setIdCacheTtlSeconds(long idCacheTtlSeconds) {
+            this.idCacheTtlSeconds = idCacheTtlSeconds;
+        }
+
+        public long getIdCacheDealTtlSeconds() {
+            return idCacheDealTtlSeconds;
+        }
+
+        public void setIdCacheDealTtlSeconds(long idCacheDealTtlSeconds) {
+            this.idCacheDealTtlSeconds = idCacheDealTtlSeconds;
+        }
+
+        public int getIdCacheWarmupLimit() {
+            return idCacheWarmupLimit;
+        }
+
+        public void setIdCacheWarmupLimit(int idCacheWarmupLimit) {
+            this.idCacheWarmupLimit = idCacheWarmupLimit;
+        }
     }
 
     public static class Cors {
@@ -199,6 +804,10 @@ public class AppProperties {
     public static class Http {
         private int connectTimeoutMs = 2500;
         private int readTimeoutMs = 3500;
+        private int maxConnections = 50;
+        private int maxConnectionsPerRoute = 10;
+        private long idleEvictionSeconds = 30;
+        private long connectionTtlSeconds = 300;
 
         public int getConnectTimeoutMs() {
             return connectTimeoutMs;
@@ -215,5 +824,37 @@ public class AppProperties {
         public void setReadTimeoutMs(int readTimeoutMs) {
             this.readTimeoutMs = readTimeoutMs;
         }
+
+        public int getMaxConnections() {
+            return maxConnections;
+        }
+
+        public void setMaxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+        }
+
+        public int getMaxConnectionsPerRoute() {
+            return maxConnectionsPerRoute;
+        }
+
+        public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+            this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+        }
+
+        public long getIdleEvictionSeconds() {
+            return idleEvictionSeconds;
+        }
+
+        public void setIdleEvictionSeconds(long idleEvictionSeconds) {
+            this.idleEvictionSeconds = idleEvictionSeconds;
+        }
+
+        public long getConnectionTtlSeconds() {
+            return connectionTtlSeconds;
+        }
+
+        public void setConnectionTtlSeconds(long connectionTtlSeconds) {
+            this.connectionTtlSeconds = connectionTtlSeconds;
+        }
     }
 }
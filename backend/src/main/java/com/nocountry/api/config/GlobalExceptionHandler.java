@@ -1,9 +1,13 @@
 package com.nocountry.api.config;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.nocountry.api.dto.ApiError;
+import com.nocountry.api.service.PayloadTooLargeException;
 import com.nocountry.api.service.ResourceNotFoundException;
+import com.nocountry.api.service.ServiceUnavailableException;
 import com.nocountry.api.service.TooManyRequestsException;
 import jakarta.validation.ConstraintViolationException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
@@ -56,6 +60,26 @@ public class GlobalExceptionHandler {
         ));
     }
 
+    @ExceptionHandler(PayloadTooLargeException.class)
+    public ResponseEntity<ApiError> handlePayloadTooLarge(PayloadTooLargeException ex) {
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(new ApiError(
+                "PAYLOAD_TOO_LARGE",
+                ex.getMessage(),
+                List.of()
+        ));
+    }
+
+    @ExceptionHandler(ServiceUnavailableException.class)
+    public ResponseEntity<ApiError> handleUnavailable(ServiceUnavailableException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(new ApiError(
+                        "UNAVAILABLE",
+                        ex.getMessage(),
+                        List.of()
+                ));
+    }
+
     @ExceptionHandler(ResourceNotFoundException.class)
     public ResponseEntity<ApiError> handleNotFound(ResourceNotFoundException ex) {
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ApiError(
@@ -74,7 +98,7 @@ public class GlobalExceptionHandler {
         ));
     }
 
-    @ExceptionHandler({IllegalArgumentException.class, HttpMessageNotReadableException.class})
+    @ExceptionHandler({IllegalArgumentException.class, HttpMessageNotReadableException.class, JsonProcessingException.class})
     public ResponseEntity<ApiError> handleBadRequest(Exception ex) {
         return ResponseEntity.badRequest().body(new ApiError(
                 "VALIDATION_ERROR",
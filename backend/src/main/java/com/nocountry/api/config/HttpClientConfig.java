@@ -1,21 +1,57 @@
 package com.nocountry.api.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestClient;
 
 @Configuration
 public class HttpClientConfig {
 
-    @Bean
-    public RestClient integrationRestClient(AppProperties appProperties) {
-        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
-        requestFactory.setConnectTimeout(appProperties.getHttp().getConnectTimeoutMs());
-        requestFactory.setReadTimeout(appProperties.getHttp().getReadTimeoutMs());
+    // Keep-alive pool shared by Meta, GA4 and Pipedrive, so repeat calls to the same host reuse an open TLS
+    // connection. Automatic retries stay off: failed calls are retried by the caller (outbox, Stripe), which
+    // knows whether repeating them is safe.
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient integrationHttpClient(AppProperties appProperties, MeterRegistry meterRegistry) {
+        AppProperties.Http config = appProperties.getHttp();
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(Math.max(1, config.getMaxConnections()))
+                .setMaxConnPerRoute(Math.max(1, config.getMaxConnectionsPerRoute()))
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(config.getConnectTimeoutMs()))
+                        .setSocketTimeout(Timeout.ofMilliseconds(config.getReadTimeoutMs()))
+                        .setTimeToLive(TimeValue.ofSeconds(config.getConnectionTtlSeconds()))
+                        .build())
+                .build();
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, "integration").bindTo(meterRegistry);
+
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        // Waiting for a free pooled connection counts against the connect timeout.
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(config.getConnectTimeoutMs()))
+                        .setResponseTimeout(Timeout.ofMilliseconds(config.getReadTimeoutMs()))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofSeconds(Math.max(1, config.getIdleEvictionSeconds())))
+                .disableAutomaticRetries()
+                .build();
+    }
 
+    @Bean
+    public RestClient integrationRestClient(CloseableHttpClient integrationHttpClient) {
         return RestClient.builder()
-                .requestFactory(requestFactory)
+                .requestFactory(new HttpComponentsClientHttpRequestFactory(integrationHttpClient))
                 .build();
     }
 }
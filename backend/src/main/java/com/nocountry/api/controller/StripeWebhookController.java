@@ -1,16 +1,19 @@
 package com.nocountry.api.controller;
 
+import com.nocountry.api.config.AppProperties;
+import com.nocountry.api.service.PayloadTooLargeException;
 import com.nocountry.api.service.RequestMetadata;
 import com.nocountry.api.service.RequestMetadataResolver;
 import com.nocountry.api.service.StripeWebhookService;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
-import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Map;
 
 @RestController
@@ -19,20 +22,45 @@ public class StripeWebhookController {
 
     private final StripeWebhookService stripeWebhookService;
     private final RequestMetadataResolver requestMetadataResolver;
+    private final AppProperties appProperties;
 
-    public StripeWebhookController(StripeWebhookService stripeWebhookService, RequestMetadataResolver requestMetadataResolver) {
+    public StripeWebhookController(
+            StripeWebhookService stripeWebhookService,
+            RequestMetadataResolver requestMetadataResolver,
+            AppProperties appProperties
+    ) {
         this.stripeWebhookService = stripeWebhookService;
         this.requestMetadataResolver = requestMetadataResolver;
+        this.appProperties = appProperties;
     }
 
     @PostMapping("/webhook")
     public ResponseEntity<Map<String, Object>> webhook(
-            @RequestBody String payload,
             @RequestHeader(value = "Stripe-Signature", required = false) String stripeSignature,
             HttpServletRequest request
-    ) {
+    ) throws IOException {
+        byte[] payload = readPayload(request);
         RequestMetadata metadata = requestMetadataResolver.resolve(request);
         stripeWebhookService.process(payload, stripeSignature, metadata);
         return ResponseEntity.ok(Map.of("received", true));
     }
+
+    // The signature covers the exact bytes Stripe sent, so the body is read raw rather than through a message
+    // converter. Reading stops one byte past the cap, so an oversized body never sits in memory whole.
+    private byte[] readPayload(HttpServletRequest request) throws IOException {
+        int maxBytes = Math.max(1, appProperties.getStripe().getWebhookMaxBodyBytes());
+        if (request.getContentLengthLong() > maxBytes) {
+            throw new PayloadTooLargeException("Webhook body exceeds " + maxBytes + " bytes");
+        }
+        try (InputStream body = request.getInputStream()) {
+            byte[] payload = body.readNBytes(maxBytes + 1);
+            if (payload.length > maxBytes) {
+                throw new PayloadTooLargeException("Webhook body exceeds " + maxBytes + " bytes");
+            }
+            if (payload.length == 0) {
+                throw new IllegalArgumentException("Missing webhook body");
+            }
+            return payload;
+        }
+    }
 }
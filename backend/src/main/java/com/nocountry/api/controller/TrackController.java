@@ -1,19 +1,26 @@
 package com.nocountry.api.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.nocountry.api.dto.TrackBatchResponse;
 import com.nocountry.api.dto.TrackRequest;
 import com.nocountry.api.dto.TrackResponse;
 import com.nocountry.api.service.RequestMetadata;
 import com.nocountry.api.service.RequestMetadataResolver;
 import com.nocountry.api.service.TooManyRequestsException;
+import com.nocountry.api.service.TrackBatchService;
 import com.nocountry.api.service.TrackRateLimiterService;
+import com.nocountry.api.service.TrackingIngestQueue;
 import com.nocountry.api.service.TrackingService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.IOException;
+import java.util.List;
 import java.util.UUID;
 
 @RestController
@@ -21,15 +28,21 @@ import java.util.UUID;
 public class TrackController {
 
     private final TrackingService trackingService;
+    private final TrackingIngestQueue trackingIngestQueue;
+    private final TrackBatchService trackBatchService;
     private final RequestMetadataResolver requestMetadataResolver;
     private final TrackRateLimiterService trackRateLimiterService;
 
     public TrackController(
             TrackingService trackingService,
+            TrackingIngestQueue trackingIngestQueue,
+            TrackBatchService trackBatchService,
             RequestMetadataResolver requestMetadataResolver,
             TrackRateLimiterService trackRateLimiterService
     ) {
         this.trackingService = trackingService;
+        this.trackingIngestQueue = trackingIngestQueue;
+        this.trackBatchService = trackBatchService;
         this.requestMetadataResolver = requestMetadataResolver;
         this.trackRateLimiterService = trackRateLimiterService;
     }
@@ -41,7 +54,22 @@ public class TrackController {
             throw new TooManyRequestsException("Rate limit exceeded for this IP");
         }
 
-        UUID eventId = trackingService.track(request, metadata);
+        UUID eventId = trackingIngestQueue.isEnabled()
+                ? trackingIngestQueue.enqueue(request, metadata)
+                : trackingService.track(request, metadata);
         return new TrackResponse(eventId.toString());
     }
+
+    @PostMapping(path = "/track/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public TrackBatchResponse trackBatch(HttpServletRequest servletRequest) throws IOException {
+        boolean ndjson = MediaType.APPLICATION_NDJSON.isCompatibleWith(MediaType.parseMediaType(servletRequest.getContentType()));
+        List<JsonNode> items = trackBatchService.read(servletRequest.getInputStream(), ndjson);
+
+        RequestMetadata metadata = requestMetadataResolver.resolve(servletRequest);
+        if (!trackRateLimiterService.allow(metadata.ipHash(), items.size())) {
+            throw new TooManyRequestsException("Rate limit exceeded for this IP");
+        }
+
+        return trackBatchService.track(items, metadata);
+    }
 }
@@ -0,0 +1,6 @@
+package com.nocountry.api.dto;
+
+import java.util.List;
+
+public record TrackBatchItemResult(int index, String status, String eventId, List<String> errors) {
+}
@@ -0,0 +1,6 @@
+package com.nocountry.api.dto;
+
+import java.util.List;
+
+public record TrackBatchResponse(int accepted, int rejected, List<TrackBatchItemResult> items) {
+}
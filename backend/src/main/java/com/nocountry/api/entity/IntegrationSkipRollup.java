@@ -0,0 +1,90 @@
+package com.nocountry.api.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Objects;
+
+@Entity
+@Table(name = "integration_skip_rollup")
+@IdClass(IntegrationSkipRollup.Key.class)
+public class IntegrationSkipRollup {
+
+    @Id
+    @Column(name = "integration", nullable = false, length = 64)
+    private String integration;
+
+    @Id
+    @Column(name = "bucket_start", nullable = false)
+    private Instant bucketStart;
+
+    @Column(name = "skipped", nullable = false)
+    private long skipped;
+
+    public String getIntegration() {
+        return integration;
+    }
+
+    public void setIntegration(String integration) {
+        this.integration = integration;
+    }
+
+    public Instant getBucketStart() {
+        return bucketStart;
+    }
+
+    public void setBucketStart(Instant bucketStart) {
+        this.bucketStart = bucketStart;
+    }
+
+    public long getSkipped() {
+        return skipped;
+    }
+
+    public void setSkipped(long skipped) {
+        this.skipped = skipped;
+    }
+
+    public static class Key implements Serializable {
+
+        private String integration;
+        private Instant bucketStart;
+
+        public Key() {
+        }
+
+        public Key(String integration, Instant bucketStart) {
+            this.integration = integration;
+            this.bucketStart = bucketStart;
+        }
+
+        public String getIntegration() {
+            return integration;
+        }
+
+        public Instant getBucketStart() {
+            return bucketStart;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof Key key)) {
+                return false;
+            }
+            return Objects.equals(integration, key.integration) && Objects.equals(bucketStart, key.bucketStart);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(integration, bucketStart);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.nocountry.api.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Objects;
+
+@Entity
+@Table(name = "pipedrive_id_cache")
+@IdClass(PipedriveIdCacheEntry.Key.class)
+public class PipedriveIdCacheEntry {
+
+    @Id
+    @Column(name = "kind", nullable = false, length = 16)
+    private String kind;
+
+    @Id
+    @Column(name = "lookup_key", nullable = false, length = 255)
+    private String lookupKey;
+
+    @Column(name = "pipedrive_id", nullable = false)
+    private Long pipedriveId;
+
+    @Column(name = "verified_at", nullable = false)
+    private Instant verifiedAt;
+
+    public String getKind() {
+        return kind;
+    }
+
+    public void setKind(String kind) {
+        this.kind = kind;
+    }
+
+    public String getLookupKey() {
+        return lookupKey;
+    }
+
+    public void setLookupKey(String lookupKey) {
+        this.lookupKey = lookupKey;
+    }
+
+    public Long getPipedriveId() {
+        return pipedriveId;
+    }
+
+    public void setPipedriveId(Long pipedriveId) {
+        this.pipedriveId = pipedriveId;
+    }
+
+    public Instant getVerifiedAt() {
+        return verifiedAt;
+    }
+
+    public void setVerifiedAt(Instant verifiedAt) {
+        this.verifiedAt = verifiedAt;
+    }
+
+    public static class Key implements Serializable {
+
+        private String kind;
+        private String lookupKey;
+
+        public Key() {
+        }
+
+        public Key(String kind, String lookupKey) {
+            this.kind = kind;
+            this.lookupKey = lookupKey;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof Key key)) {
+                return false;
+            }
+            return Objects.equals(kind, key.kind) && Objects.equals(lookupKey, key.lookupKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(kind, lookupKey);
+        }
+    }
+}
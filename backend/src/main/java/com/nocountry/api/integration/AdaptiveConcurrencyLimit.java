@@ -0,0 +1,73 @@
+package com.nocountry.api.integration;
+
+import java.util.concurrent.TimeUnit;
+
+// Calls allowed in flight for one integration. Fixed at max unless adaptive, in which case it follows AIMD on
+// observed latency: a failed call or one slower than the target halves the limit, and a fast call made while
+// the limit was fully used raises it by 1/limit, i.e. about one per limit's worth of good calls.
+final class AdaptiveConcurrencyLimit {
+
+    private final boolean adaptive;
+    private final int min;
+    private final int max;
+    private final long targetNanos;
+
+    private double limit;
+    private int inFlight;
+
+    AdaptiveConcurrencyLimit(boolean adaptive, int min, int max, long latencyTargetMs) {
+        this.adaptive = adaptive;
+        this.max = Math.max(1, max);
+        this.min = Math.min(this.max, Math.max(1, min));
+        this.targetNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, latencyTargetMs));
+        this.limit = this.max;
+    }
+
+    synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    // Waits for a slot instead of refusing, for callers that have nowhere else to keep the call.
+    synchronized void acquire() throws InterruptedException {
+        while (inFlight >= (int) limit) {
+            wait();
+        }
+        inFlight++;
+    }
+
+    // The call was never made, so it says nothing about latency.
+    synchronized void release() {
+        inFlight--;
+        notifyAll();
+    }
+
+    synchronized void release(long latencyNanos, boolean failed) {
+        boolean saturated = inFlight >= (int) limit;
+        inFlight--;
+        notifyAll();
+        if (!adaptive) {
+            return;
+        }
+        if (failed || latencyNanos > targetNanos) {
+            limit = Math.max(min, limit / 2);
+        } else if (saturated) {
+            limit = Math.min(max, limit + 1 / limit);
+        }
+    }
+
+    synchronized int available() {
+        return Math.max(0, (int) limit - inFlight);
+    }
+
+    synchronized int limit() {
+        return (int) limit;
+    }
+
+    synchronized int inFlight() {
+        return inFlight;
+    }
+}
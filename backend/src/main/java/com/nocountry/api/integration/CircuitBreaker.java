@@ -0,0 +1,159 @@
+package com.nocountry.api.integration;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+// Count-based breaker for one integration. CLOSED opens once at least minimumCalls of the last windowSize
+// calls were seen and the failure rate reaches the threshold. OPEN rejects every call for openSeconds, then
+// HALF_OPEN lets a single trial call through: success closes the breaker, failure opens it again.
+final class CircuitBreaker {
+
+    enum State {
+        CLOSED,
+        HALF_OPEN,
+        OPEN
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    private final String integration;
+    private final boolean enabled;
+    private final int failureRateThreshold;
+    private final int minimumCalls;
+    private final long openNanos;
+    private final LongSupplier nanoClock;
+    private final boolean[] window;
+    private final Map<State, Counter> transitions = new EnumMap<>(State.class);
+
+    private State state = State.CLOSED;
+    private int windowIndex;
+    private int windowCount;
+    private int windowFailures;
+    private long openedAtNanos;
+    private boolean trialInFlight;
+
+    CircuitBreaker(
+            String integration,
+            boolean enabled,
+            int failureRateThreshold,
+            int windowSize,
+            int minimumCalls,
+            long openSeconds,
+            LongSupplier nanoClock,
+            MeterRegistry meterRegistry
+    ) {
+        this.integration = integration;
+        this.enabled = enabled;
+        this.failureRateThreshold = Math.min(100, Math.max(1, failureRateThreshold));
+        this.window = new boolean[Math.max(1, windowSize)];
+        this.minimumCalls = Math.min(window.length, Math.max(1, minimumCalls));
+        this.openNanos = TimeUnit.SECONDS.toNanos(Math.max(1, openSeconds));
+        this.nanoClock = nanoClock;
+
+        Gauge.builder("integrations.circuit.state", this, breaker -> breaker.state().ordinal())
+                .tag("integration", integration)
+                .description("Circuit breaker state: 0 closed, 1 half-open, 2 open")
+                .register(meterRegistry);
+        for (State target : State.values()) {
+            transitions.put(target, Counter.builder("integrations.circuit.transitions")
+                    .tag("integration", integration)
+                    .tag("state", target.name().toLowerCase())
+                    .description("Circuit breaker transitions into each state")
+                    .register(meterRegistry));
+        }
+    }
+
+    // False when the call must not be made. A true answer in HALF_OPEN hands out the trial call, which must
+    // be settled with record() or cancel().
+    synchronized boolean tryAcquire() {
+        if (!enabled) {
+            return true;
+        }
+        if (state == State.OPEN) {
+            if (nanoClock.getAsLong() - openedAtNanos < openNanos) {
+                return false;
+            }
+            transitionTo(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialInFlight) {
+                return false;
+            }
+            trialInFlight = true;
+        }
+        return true;
+    }
+
+    // The acquired call was never made, e.g. the dispatch queue was full.
+    synchronized void cancel() {
+        if (state == State.HALF_OPEN) {
+            trialInFlight = false;
+        }
+    }
+
+    synchronized void record(boolean success) {
+        if (!enabled) {
+            return;
+        }
+        switch (state) {
+            case HALF_OPEN -> {
+                trialInFlight = false;
+                if (success) {
+                    resetWindow();
+                    transitionTo(State.CLOSED);
+                } else {
+                    open();
+                }
+            }
+            case CLOSED -> {
+                if (windowCount == window.length) {
+                    windowFailures -= window[windowIndex] ? 1 : 0;
+                } else {
+                    windowCount++;
+                }
+                window[windowIndex] = !success;
+                windowFailures += success ? 0 : 1;
+                windowIndex = (windowIndex + 1) % window.length;
+                if (windowCount >= minimumCalls && windowFailures * 100 >= failureRateThreshold * windowCount) {
+                    open();
+                }
+            }
+            // Calls that started before the breaker opened carry no news.
+            case OPEN -> {
+            }
+        }
+    }
+
+    synchronized State state() {
+        return state;
+    }
+
+    private void open() {
+        openedAtNanos = nanoClock.getAsLong();
+        resetWindow();
+        transitionTo(State.OPEN);
+    }
+
+    private void resetWindow() {
+        windowIndex = 0;
+        windowCount = 0;
+        windowFailures = 0;
+    }
+
+    private void transitionTo(State target) {
+        if (state == target) {
+            return;
+        }
+        log.warn("integration_circuit integration={} from={} to={}", integration, state, target);
+        state = target;
+        transitions.get(target).increment();
+    }
+}
@@ -0,0 +1,18 @@
+package com.nocountry.api.integration;
+
+// Result of one integration call, as far as retrying it is concerned.
+public enum IntegrationOutcome {
+    SENT,
+    SKIPPED,
+    // Timeouts, connection errors, 429 and 5xx responses: the same request may succeed later.
+    RETRYABLE_FAILURE,
+    // Any other 4xx response: the request itself was refused and would be refused again.
+    PERMANENT_FAILURE,
+    // Not attempted because the integration's circuit breaker is open; try again once it has recovered.
+    DEFERRED;
+
+    public static IntegrationOutcome forHttpStatus(int httpStatus) {
+        boolean clientError = httpStatus >= 400 && httpStatus < 500;
+        return clientError && httpStatus != 408 && httpStatus != 429 ? PERMANENT_FAILURE : RETRYABLE_FAILURE;
+    }
+}
@@ -0,0 +1,133 @@
+package com.nocountry.api.integration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+// Collects items until maxSize are waiting or the oldest has waited maxWaitMs, then hands them to the sender
+// in one call. The sender returns one result per item, in order; each caller gets its own result back.
+public final class MicroBatcher<T, R> implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(MicroBatcher.class);
+    private static final long SHUTDOWN_TIMEOUT_MS = 10_000;
+
+    private final String name;
+    private final int maxSize;
+    private final long maxWaitMs;
+    private final Function<List<T>, List<R>> sender;
+    private final ScheduledExecutorService executor;
+    private final Object lock = new Object();
+
+    private List<Entry<T, R>> pending = new ArrayList<>();
+    private ScheduledFuture<?> scheduledFlush;
+
+    public MicroBatcher(String name, int maxSize, long maxWaitMs, int senderThreads, Function<List<T>, List<R>> sender) {
+        this.name = name;
+        this.maxSize = Math.max(1, maxSize);
+        this.maxWaitMs = Math.max(0, maxWaitMs);
+        this.sender = sender;
+        AtomicInteger sequence = new AtomicInteger();
+        ScheduledThreadPoolExecutor pool = new ScheduledThreadPoolExecutor(Math.max(1, senderThreads), runnable -> {
+            Thread thread = new Thread(runnable, name + "-batch-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        pool.setRemoveOnCancelPolicy(true);
+        this.executor = pool;
+    }
+
+    public CompletableFuture<R> submit(T item) {
+        Entry<T, R> entry = new Entry<>(item, new CompletableFuture<>());
+        List<Entry<T, R>> full = null;
+        synchronized (lock) {
+            pending.add(entry);
+            if (pending.size() >= maxSize) {
+                full = takePending();
+            } else if (pending.size() == 1) {
+                scheduledFlush = executor.schedule(this::flushDue, maxWaitMs, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (full != null) {
+            List<Entry<T, R>> batch = full;
+            try {
+                executor.execute(() -> send(batch));
+            } catch (RejectedExecutionException ex) {
+                batch.forEach(e -> e.result.completeExceptionally(ex));
+            }
+        }
+        return entry.result;
+    }
+
+    @Override
+    public void close() {
+        List<Entry<T, R>> remaining;
+        synchronized (lock) {
+            remaining = takePending();
+        }
+        if (!remaining.isEmpty()) {
+            send(remaining);
+        }
+
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                log.warn("micro_batcher shutdown_timeout name={}", name);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void flushDue() {
+        List<Entry<T, R>> batch;
+        synchronized (lock) {
+            batch = takePending();
+        }
+        if (!batch.isEmpty()) {
+            send(batch);
+        }
+    }
+
+    private List<Entry<T, R>> takePending() {
+        List<Entry<T, R>> batch = pending;
+        pending = new ArrayList<>();
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        return batch;
+    }
+
+    private void send(List<Entry<T, R>> batch) {
+        List<T> items = new ArrayList<>(batch.size());
+        for (Entry<T, R> entry : batch) {
+            items.add(entry.item);
+        }
+
+        try {
+            List<R> results = sender.apply(items);
+            if (results.size() != batch.size()) {
+                throw new IllegalStateException("Batch sender returned " + results.size() + " results for " + batch.size() + " items");
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).result.complete(results.get(i));
+            }
+        } catch (Exception ex) {
+            log.warn("micro_batcher status=failed name={} size={} error={}", name, batch.size(), ex.getMessage());
+            batch.forEach(entry -> entry.result.completeExceptionally(ex));
+        }
+    }
+
+    private record Entry<T, R>(T item, CompletableFuture<R> result) {
+    }
+}
@@ -1,30 +1,321 @@
 package com.nocountry.api.integration;
 
+import com.nocountry.api.config.AppProperties;
 import com.nocountry.api.integration.ga4.Ga4MeasurementProtocolService;
 import com.nocountry.api.integration.meta.MetaCapiService;
 import com.nocountry.api.integration.pipedrive.PipedriveService;
+import com.nocountry.api.service.IntegrationLogService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+// Fans a purchase out to every integration at once. Each integration has its own bulkhead (at most
+// dispatch-max-concurrent calls in flight, lowered adaptively when the provider slows down), its own circuit
+// breaker and its own timeout, so a slow provider neither delays the others nor piles up threads. Outcomes
+// the integration cannot log itself (rejected, timed out, deferred) are logged here.
+// A purchase dispatched inline has no outbox row to retry it from, so instead of being rejected it waits for
+// a bulkhead slot, and runs on the caller's thread when the dispatch queue is full. A timeout only ends the
+// wait: the call keeps running and its integration logs the result.
+// The circuit breaker only runs with the outbox on: a short-circuited call is DEFERRED, and only an outbox row
+// can be sent again once the circuit closes.
 @Service
 public class PurchaseIntegrationDispatcher {
 
-    private final MetaCapiService metaCapiService;
-    private final Ga4MeasurementProtocolService ga4MeasurementProtocolService;
-    private final PipedriveService pipedriveService;
+    public static final String META_CAPI = "META_CAPI";
+    public static final String GA4_MP = "GA4_MP";
+    public static final String PIPEDRIVE = "PIPEDRIVE";
+
+    private static final Logger log = LoggerFactory.getLogger(PurchaseIntegrationDispatcher.class);
+    private static final long SHUTDOWN_TIMEOUT_MS = 10_000;
+
+    private final IntegrationLogService integrationLogService;
+    private final AppProperties.Integrations config;
+    private final Map<String, Target> targets;
+    private final ExecutorService executor;
 
     public PurchaseIntegrationDispatcher(
             MetaCapiService metaCapiService,
             Ga4MeasurementProtocolService ga4MeasurementProtocolService,
-            PipedriveService pipedriveService
+            PipedriveService pipedriveService,
+            IntegrationLogService integrationLogService,
+            AppProperties appProperties,
+            MeterRegistry meterRegistry
     ) {
-        this.metaCapiService = metaCapiService;
-        this.ga4MeasurementProtocolService = ga4MeasurementProtocolService;
-        this.pipedriveService = pipedriveService;
+        this.integrationLogService = integrationLogService;
+        this.config = appProperties.getIntegrations();
+        if (config.isCircuitBreakerEnabled() && !config.isOutboxEnabled()) {
+            log.warn("integration_dispatch circuit_breaker=disabled reason=outbox_disabled");
+        }
+        Map<String, Target> byName = new LinkedHashMap<>();
+        for (Target target : List.of(
+                new Target(META_CAPI, metaCapiService::sendPurchase, config, meterRegistry),
+                new Target(GA4_MP, ga4MeasurementProtocolService::sendPurchase, config, meterRegistry),
+                new Target(PIPEDRIVE, pipedriveService::sendPurchase, config, meterRegistry))) {
+            byName.put(target.name, target);
+        }
+        this.targets = Collections.unmodifiableMap(byName);
+        this.executor = createExecutor(config);
+    }
+
+    public Set<String> integrations() {
+        return targets.keySet();
     }
 
     public void dispatchPurchase(PurchaseIntegrationPayload payload) {
-        metaCapiService.sendPurchase(payload);
-        ga4MeasurementProtocolService.sendPurchase(payload);
-        pipedriveService.sendPurchase(payload);
+        dispatchPurchase(payload, config.isDispatchWait());
+    }
+
+    // With waitForCompletion=false the caller returns right away; the returned future completes once every
+    // integration has finished, timed out or been rejected, and never completes exceptionally.
+    public CompletableFuture<Void> dispatchPurchase(PurchaseIntegrationPayload payload, boolean waitForCompletion) {
+        CompletableFuture<?>[] calls = targets.values().stream()
+                .map(target -> submit(target, payload, true))
+                .toArray(CompletableFuture[]::new);
+        CompletableFuture<Void> all = CompletableFuture.allOf(calls);
+        if (waitForCompletion) {
+            all.join();
+        }
+        return all;
+    }
+
+    // Sends to a single integration through the same bulkhead and timeout, e.g. when retrying from the outbox.
+    public CompletableFuture<IntegrationOutcome> dispatch(String integration, PurchaseIntegrationPayload payload) {
+        Target target = targets.get(integration);
+        if (target == null) {
+            return CompletableFuture.completedFuture(IntegrationOutcome.PERMANENT_FAILURE);
+        }
+        return submit(target, payload, false);
+    }
+
+    // Calls every integration can still take right now. The outbox drainer sizes its batches from it, so none
+    // of its calls is refused by a bulkhead, even after the adaptive limit has dropped.
+    public int availableSlots() {
+        return targets.values().stream()
+                .mapToInt(target -> target.limit.available())
+                .min()
+                .orElse(0);
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                log.warn("integration_dispatch shutdown_timeout");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private CompletableFuture<IntegrationOutcome> submit(Target target, PurchaseIntegrationPayload payload, boolean inline) {
+        if (inline) {
+            try {
+                target.limit.acquire();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                reject(target, payload, "interrupted while waiting for the bulkhead");
+                return CompletableFuture.completedFuture(IntegrationOutcome.RETRYABLE_FAILURE);
+            }
+        } else if (!target.limit.tryAcquire()) {
+            reject(target, payload, "bulkhead full");
+            return CompletableFuture.completedFuture(IntegrationOutcome.RETRYABLE_FAILURE);
+        }
+        if (!target.breaker.tryAcquire()) {
+            target.limit.release();
+            shortCircuit(target, payload);
+            return CompletableFuture.completedFuture(IntegrationOutcome.DEFERRED);
+        }
+
+        CompletableFuture<IntegrationOutcome> call;
+        try {
+            call = CompletableFuture.supplyAsync(() -> send(target, payload), executor);
+        } catch (RejectedExecutionException ex) {
+            if (inline) {
+                return CompletableFuture.completedFuture(send(target, payload));
+            }
+            target.limit.release();
+            target.breaker.cancel();
+            reject(target, payload, "dispatch queue full");
+            return CompletableFuture.completedFuture(IntegrationOutcome.RETRYABLE_FAILURE);
+        }
+
+        return call.orTimeout(Math.max(1, config.getDispatchTimeoutMs()), TimeUnit.MILLISECONDS)
+                .handle((outcome, ex) -> {
+                    if (ex != null) {
+                        onFailure(target, payload, ex instanceof CompletionException ? ex.getCause() : ex);
+                        return IntegrationOutcome.RETRYABLE_FAILURE;
+                    }
+                    return outcome;
+                });
+    }
+
+    private IntegrationOutcome send(Target target, PurchaseIntegrationPayload payload) {
+        long startNanos = System.nanoTime();
+        IntegrationOutcome outcome = IntegrationOutcome.RETRYABLE_FAILURE;
+        try {
+            outcome = target.sender.apply(payload);
+            return outcome;
+        } finally {
+            // Settled when the call really ends, even after a timeout, so the limit reflects live calls and the
+            // breaker and latency samples see the real result.
+            target.settle(outcome, System.nanoTime() - startNanos);
+        }
+    }
+
+    private void shortCircuit(Target target, PurchaseIntegrationPayload payload) {
+        target.shortCircuited.increment();
+        log.info("integration_dispatch status=deferred integration={} eventId={} reason=circuit_open",
+                target.name, payload.eventId());
+        integrationLogService.logWithReference(target.name, referenceId(payload), "DEFERRED",
+                null, null, null, null, "circuit open");
+    }
+
+    private void reject(Target target, PurchaseIntegrationPayload payload, String reason) {
+        target.rejected.increment();
+        log.warn("integration_dispatch status=rejected integration={} eventId={} reason={}",
+                target.name, payload.eventId(), reason);
+        integrationLogService.logWithReference(target.name, referenceId(payload), "REJECTED",
+                null, null, null, null, reason);
+    }
+
+    private void onFailure(Target target, PurchaseIntegrationPayload payload, Throwable error) {
+        if (error instanceof TimeoutException) {
+            target.timeouts.increment();
+            log.warn("integration_dispatch status=timeout integration={} eventId={} timeoutMs={}",
+                    target.name, payload.eventId(), config.getDispatchTimeoutMs());
+            integrationLogService.logWithReference(target.name, referenceId(payload), "TIMEOUT",
+                    null, (int) config.getDispatchTimeoutMs(), null, null,
+                    "no response within " + config.getDispatchTimeoutMs() + " ms; the call may still complete");
+            return;
+        }
+
+        log.warn("integration_dispatch status=failed integration={} eventId={} error={}",
+                target.name, payload.eventId(), error.getMessage());
+        integrationLogService.logWithReference(target.name, referenceId(payload), "FAILED",
+                null, null, null, null, error.getMessage());
+    }
+
+    private String referenceId(PurchaseIntegrationPayload payload) {
+        if (payload.eventId() != null) {
+            return payload.eventId().toString();
+        }
+        return payload.stripeSessionId();
+    }
+
+    // Virtual threads on Java 21+, where blocking HTTP calls are cheap to park; the bulkheads still bound how
+    // many run at once. Older runtimes get a bounded pool that rejects instead of queueing without limit.
+    private static ExecutorService createExecutor(AppProperties.Integrations config) {
+        if (Runtime.version().feature() >= 21) {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException ex) {
+                log.warn("integration_dispatch virtual_threads_unavailable error={}", ex.getMessage());
+            }
+        }
+
+        int threads = Math.max(1, config.getDispatchThreads());
+        AtomicInteger sequence = new AtomicInteger();
+        return new ThreadPoolExecutor(
+                threads,
+                threads,
+                60,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, config.getDispatchQueueCapacity())),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "integration-dispatch-" + sequence.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+
+    private static final class Target {
+
+        private final String name;
+        private final Function<PurchaseIntegrationPayload, IntegrationOutcome> sender;
+        private final AdaptiveConcurrencyLimit limit;
+        private final CircuitBreaker breaker;
+        private final Counter rejected;
+        private final Counter timeouts;
+        private final Counter shortCircuited;
+
+        private Target(
+                String name,
+                Function<PurchaseIntegrationPayload, IntegrationOutcome> sender,
+                AppProperties.Integrations config,
+                MeterRegistry meterRegistry
+        ) {
+            this.name = name;
+            this.sender = sender;
+            this.limit = new AdaptiveConcurrencyLimit(
+                    config.isAdaptiveConcurrencyEnabled(),
+                    config.getAdaptiveMinConcurrent(),
+                    config.getDispatchMaxConcurrent(),
+                    config.getAdaptiveLatencyTargetMs()
+            );
+            this.breaker = new CircuitBreaker(
+                    name,
+                    config.isCircuitBreakerEnabled() && config.isOutboxEnabled(),
+                    config.getCircuitFailureRateThreshold(),
+                    config.getCircuitWindowSize(),
+                    config.getCircuitMinimumCalls(),
+                    config.getCircuitOpenSeconds(),
+                    System::nanoTime,
+                    meterRegistry
+            );
+            this.rejected = Counter.builder("integrations.dispatch.rejected")
+                    .tag("integration", name)
+                    .description("Outbox integration calls refused because the bulkhead or dispatch queue was full")
+                    .register(meterRegistry);
+            this.timeouts = Counter.builder("integrations.dispatch.timeouts")
+                    .tag("integration", name)
+                    .description("Integration calls that did not finish within the dispatch timeout")
+                    .register(meterRegistry);
+            this.shortCircuited = Counter.builder("integrations.circuit.short_circuited")
+                    .tag("integration", name)
+                    .description("Integration calls deferred because the circuit breaker was open")
+                    .register(meterRegistry);
+            Gauge.builder("integrations.concurrency.limit", limit, AdaptiveConcurrencyLimit::limit)
+                    .tag("integration", name)
+                    .description("Integration calls currently allowed in flight")
+                    .register(meterRegistry);
+            Gauge.builder("integrations.concurrency.in_flight", limit, AdaptiveConcurrencyLimit::inFlight)
+                    .tag("integration", name)
+                    .description("Integration calls in flight")
+                    .register(meterRegistry);
+        }
+
+        // Only retryable failures say something about the provider's health; a refused request (4xx) was
+        // answered promptly and a skipped one never left the process.
+        private void settle(IntegrationOutcome outcome, long latencyNanos) {
+            boolean failed = outcome == IntegrationOutcome.RETRYABLE_FAILURE;
+            limit.release(latencyNanos, failed);
+            if (outcome != IntegrationOutcome.SKIPPED) {
+                breaker.record(!failed);
+            }
+        }
     }
 }
@@ -3,8 +3,11 @@ package com.nocountry.api.integration.ga4;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.nocountry.api.config.AppProperties;
+import com.nocountry.api.integration.IntegrationOutcome;
+import com.nocountry.api.integration.MicroBatcher;
 import com.nocountry.api.integration.PurchaseIntegrationPayload;
 import com.nocountry.api.service.IntegrationLogService;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.MediaType;
@@ -15,19 +18,38 @@ import org.springframework.web.client.RestClientResponseException;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+// With batching on, purchases wait up to batch-max-wait-ms and are sent per client_id in multi-event requests.
+// Debug validation, when enabled, runs for a sample of the sent requests on a separate thread.
 @Service
 public class Ga4MeasurementProtocolService {
 
     private static final Logger log = LoggerFactory.getLogger(Ga4MeasurementProtocolService.class);
+    // Measurement Protocol limit for the events array of a single request.
+    private static final int MAX_EVENTS_PER_REQUEST = 25;
+    private static final int VALIDATION_QUEUE_CAPACITY = 100;
+    private static final long SHUTDOWN_TIMEOUT_MS = 10_000;
 
     private final RestClient restClient;
     private final AppProperties appProperties;
     private final IntegrationLogService integrationLogService;
     private final ObjectMapper objectMapper;
+    private final MicroBatcher<PurchaseIntegrationPayload, IntegrationOutcome> batcher;
+    private final ThreadPoolExecutor validationExecutor;
+    private final ExecutorService sendExecutor;
 
     public Ga4MeasurementProtocolService(
             RestClient integrationRestClient,
@@ -39,9 +61,22 @@ public class Ga4MeasurementProtocolService {
         this.appProperties = appProperties;
         this.integrationLogService = integrationLogService;
         this.objectMapper = objectMapper;
+        AppProperties.Ga4 ga4 = appProperties.getGa4();
+        this.batcher = ga4.isBatchEnabled()
+                ? new MicroBatcher<>("ga4-mp", ga4.getBatchMaxEvents(), ga4.getBatchMaxWaitMs(), 1, this::sendBatch)
+                : null;
+        this.sendExecutor = ga4.isBatchEnabled() ? newSendExecutor(ga4.getBatchSenderThreads()) : null;
+        this.validationExecutor = ga4.isDebugValidationEnabled()
+                ? new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(VALIDATION_QUEUE_CAPACITY), runnable -> {
+                    Thread thread = new Thread(runnable, "ga4-mp-validation");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy())
+                : null;
     }
 
-    public void sendPurchase(PurchaseIntegrationPayload payload) {
+    public IntegrationOutcome sendPurchase(PurchaseIntegrationPayload payload) {
         String referenceId = referenceId(payload);
         if (!appProperties.getIntegrations().isGa4MpEnabled()) {
             integrationLogService.logWithReference(
@@ -54,7 +89,7 @@ public class Ga4MeasurementProtocolService {
                     null,
                     "GA4_MP_ENABLED=false"
             );
-            return;
+            return IntegrationOutcome.SKIPPED;
         }
 
         if (isBlank(appProperties.getGa4().getMeasurementId()) || isBlank(appProperties.getGa4().getApiSecret())) {
@@ -69,25 +104,92 @@ public class Ga4MeasurementProtocolService {
                     null,
                     "missing GA4_MEASUREMENT_ID or GA4_API_SECRET"
             );
-            return;
+            return IntegrationOutcome.SKIPPED;
         }
 
-        String clientId = payload.clientId();
-        if (isBlank(clientId)) {
-            UUID fallbackId = payload.eventId() == null ? UUID.randomUUID() : payload.eventId();
-            clientId = "server_backup." + fallbackId;
-            log.warn("ga4_mp using_server_backup_client_id eventId={}", payload.eventId());
+        if (batcher != null) {
+            try {
+                return batcher.submit(payload).join();
+            } catch (Exception ex) {
+                log.warn("ga4_mp status=failed eventId={} error={}", payload.eventId(), ex.getMessage());
+                logFailure(List.of(payload), null, null, ex.getMessage());
+                return IntegrationOutcome.RETRYABLE_FAILURE;
+            }
         }
+        return sendBatch(List.of(payload)).get(0);
+    }
 
-        try {
-            long startNanos = System.nanoTime();
-            Map<String, Object> body = buildRequestBody(payload, clientId);
+    @PreDestroy
+    void stop() {
+        if (batcher != null) {
+            batcher.close();
+        }
+        if (sendExecutor != null) {
+            sendExecutor.shutdown();
+        }
+        if (validationExecutor != null) {
+            validationExecutor.shutdown();
+            try {
+                if (!validationExecutor.awaitTermination(SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    log.warn("ga4_mp validation_shutdown_timeout");
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // Measurement Protocol takes several events per request, but only for one client_id, so purchases are
+    // grouped by client and each group goes out in chunks of at most 25 events. Purchases rarely share a
+    // client_id, so a batch is mostly single-event requests: they go out in parallel on the send pool rather
+    // than one after another on the batcher thread.
+    List<IntegrationOutcome> sendBatch(List<PurchaseIntegrationPayload> payloads) {
+        Map<String, List<Integer>> byClientId = new LinkedHashMap<>();
+        for (int i = 0; i < payloads.size(); i++) {
+            byClientId.computeIfAbsent(resolveClientId(payloads.get(i)), key -> new ArrayList<>()).add(i);
+        }
+
+        List<ClientRequest> requests = new ArrayList<>();
+        byClientId.forEach((clientId, indexes) -> {
+            for (int from = 0; from < indexes.size(); from += MAX_EVENTS_PER_REQUEST) {
+                requests.add(new ClientRequest(clientId,
+                        indexes.subList(from, Math.min(indexes.size(), from + MAX_EVENTS_PER_REQUEST))));
+            }
+        });
 
-            ValidationResult validationResult = ValidationResult.disabled();
-            if (appProperties.getGa4().isDebugValidationEnabled()) {
-                validationResult = validateDebug(body);
+        IntegrationOutcome[] outcomes = new IntegrationOutcome[payloads.size()];
+        if (sendExecutor == null || requests.size() == 1) {
+            for (ClientRequest request : requests) {
+                IntegrationOutcome outcome = sendRequest(request.clientId(), request.payloads(payloads));
+                request.indexes().forEach(index -> outcomes[index] = outcome);
             }
+            return List.of(outcomes);
+        }
+
+        List<CompletableFuture<IntegrationOutcome>> sent = new ArrayList<>(requests.size());
+        for (ClientRequest request : requests) {
+            sent.add(CompletableFuture.supplyAsync(
+                    () -> sendRequest(request.clientId(), request.payloads(payloads)), sendExecutor));
+        }
+        for (int i = 0; i < requests.size(); i++) {
+            IntegrationOutcome outcome = sent.get(i).join();
+            requests.get(i).indexes().forEach(index -> outcomes[index] = outcome);
+        }
+        return List.of(outcomes);
+    }
 
+    private IntegrationOutcome sendRequest(String clientId, List<PurchaseIntegrationPayload> payloads) {
+        List<Map<String, Object>> events = new ArrayList<>(payloads.size());
+        for (PurchaseIntegrationPayload payload : payloads) {
+            events.add(buildEvent(payload));
+        }
+        Map<String, Object> body = Map.of(
+                "client_id", clientId,
+                "events", events
+        );
+
+        try {
+            long startNanos = System.nanoTime();
             ResponseEntity<Void> response = restClient.post()
                     .uri("https://www.google-analytics.com/mp/collect?measurement_id={measurementId}&api_secret={apiSecret}",
                             appProperties.getGa4().getMeasurementId(),
@@ -98,46 +200,91 @@ public class Ga4MeasurementProtocolService {
                     .toBodilessEntity();
             int latencyMs = elapsedMs(startNanos);
 
-            String status = validationResult.messages().isEmpty() ? "SENT" : "SENT_WITH_WARNINGS";
-            log.info("ga4_mp status={} eventId={} validationErrors={}", status.toLowerCase(), payload.eventId(), validationResult.messages().size());
-
-            integrationLogService.logWithReference(
-                    "GA4_MP",
-                    referenceId,
-                    status,
-                    response.getStatusCode().value(),
-                    latencyMs,
-                    body,
-                    buildDebugLogPayload(validationResult),
-                    validationResult.messages().isEmpty() ? null : "GA4 debug validation reported issues"
-            );
+            for (int i = 0; i < payloads.size(); i++) {
+                PurchaseIntegrationPayload payload = payloads.get(i);
+                log.info("ga4_mp status=sent eventId={} batchSize={}", payload.eventId(), payloads.size());
+                integrationLogService.logWithReference(
+                        "GA4_MP",
+                        referenceId(payload),
+                        "SENT",
+                        response.getStatusCode().value(),
+                        latencyMs,
+                        Map.of("client_id", clientId, "events", List.of(events.get(i))),
+                        null,
+                        null
+                );
+            }
+            if (shouldValidate()) {
+                validateAsync(body, payloads);
+            }
+            return IntegrationOutcome.SENT;
         } catch (RestClientResponseException ex) {
-            log.warn("ga4_mp status=failed eventId={} error={}", payload.eventId(), ex.getMessage());
-            integrationLogService.logWithReference(
-                    "GA4_MP",
-                    referenceId,
-                    "FAILED",
-                    ex.getRawStatusCode(),
-                    null,
-                    null,
-                    ex.getResponseBodyAsString(),
-                    ex.getMessage()
-            );
+            log.warn("ga4_mp status=failed batchSize={} error={}", payloads.size(), ex.getMessage());
+            int httpStatus = ex.getStatusCode().value();
+            logFailure(payloads, httpStatus, ex.getResponseBodyAsString(), ex.getMessage());
+            return IntegrationOutcome.forHttpStatus(httpStatus);
         } catch (Exception ex) {
-            log.warn("ga4_mp status=failed eventId={} error={}", payload.eventId(), ex.getMessage());
+            log.warn("ga4_mp status=failed batchSize={} error={}", payloads.size(), ex.getMessage());
+            logFailure(payloads, null, null, ex.getMessage());
+            return IntegrationOutcome.RETRYABLE_FAILURE;
+        }
+    }
+
+    private boolean shouldValidate() {
+        double sampleRate = appProperties.getGa4().getDebugValidationSampleRate();
+        return validationExecutor != null && sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+
+    // The debug endpoint only reports on the payload, it never affects delivery, so it runs off the send path
+    // and is dropped rather than queued without limit when the validator falls behind.
+    private void validateAsync(Map<String, Object> body, List<PurchaseIntegrationPayload> payloads) {
+        try {
+            validationExecutor.execute(() -> {
+                ValidationResult validationResult = validateDebug(body);
+                log.info("ga4_mp status=validated batchSize={} validationErrors={}",
+                        payloads.size(), validationResult.messages().size());
+                for (PurchaseIntegrationPayload payload : payloads) {
+                    integrationLogService.logWithReference(
+                            "GA4_MP",
+                            referenceId(payload),
+                            validationResult.messages().isEmpty() ? "VALIDATED" : "VALIDATION_WARNINGS",
+                            validationResult.httpStatus(),
+                            null,
+                            body,
+                            buildDebugLogPayload(validationResult),
+                            validationResult.messages().isEmpty() ? null : "GA4 debug validation reported issues"
+                    );
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            log.debug("ga4_mp validation_dropped batchSize={}", payloads.size());
+        }
+    }
+
+    private void logFailure(List<PurchaseIntegrationPayload> payloads, Integer httpStatus, Object responsePayload, String error) {
+        for (PurchaseIntegrationPayload payload : payloads) {
             integrationLogService.logWithReference(
                     "GA4_MP",
-                    referenceId,
+                    referenceId(payload),
                     "FAILED",
+                    httpStatus,
                     null,
                     null,
-                    null,
-                    null,
-                    ex.getMessage()
+                    responsePayload,
+                    error
             );
         }
     }
 
+    private String resolveClientId(PurchaseIntegrationPayload payload) {
+        if (!isBlank(payload.clientId())) {
+            return payload.clientId();
+        }
+        UUID fallbackId = payload.eventId() == null ? UUID.randomUUID() : payload.eventId();
+        log.warn("ga4_mp using_server_backup_client_id eventId={}", payload.eventId());
+        return "server_backup." + fallbackId;
+    }
+
     private ValidationResult validateDebug(Map<String, Object> body) {
         try {
             ResponseEntity<String> response = restClient.post()
@@ -151,8 +298,9 @@ public class Ga4MeasurementProtocolService {
 
             return parseValidationResult(response.getBody(), response.getStatusCode().value());
         } catch (RestClientResponseException ex) {
-            String message = "debug_endpoint_http_error status=" + ex.getRawStatusCode();
-            return new ValidationResult(ex.getRawStatusCode(), List.of(message));
+            int httpStatus = ex.getStatusCode().value();
+            String message = "debug_endpoint_http_error status=" + httpStatus;
+            return new ValidationResult(httpStatus, List.of(message));
         } catch (Exception ex) {
             return new ValidationResult(null, List.of("debug_endpoint_error " + ex.getMessage()));
         }
@@ -184,7 +332,7 @@ public class Ga4MeasurementProtocolService {
         }
     }
 
-    private Map<String, Object> buildRequestBody(PurchaseIntegrationPayload payload, String clientId) {
+    private Map<String, Object> buildEvent(PurchaseIntegrationPayload payload) {
         Map<String, Object> params = Map.of(
                 "currency", payload.currency(),
                 "value", payload.amount(),
@@ -192,20 +340,15 @@ public class Ga4MeasurementProtocolService {
                 "engagement_time_msec", 1
         );
 
-        Map<String, Object> event = Map.of(
+        return Map.of(
                 "name", "purchase",
                 "params", params
         );
-
-        return Map.of(
-                "client_id", clientId,
-                "events", List.of(event)
-        );
     }
 
     private Map<String, Object> buildDebugLogPayload(ValidationResult validationResult) {
         Map<String, Object> payload = new HashMap<>();
-        payload.put("debug_validation_enabled", appProperties.getGa4().isDebugValidationEnabled());
+        payload.put("debug_validation_sample_rate", appProperties.getGa4().getDebugValidationSampleRate());
         payload.put("validation_messages", validationResult.messages());
         if (validationResult.httpStatus() != null) {
             payload.put("debug_http_status", validationResult.httpStatus());
@@ -228,9 +371,24 @@ public class Ga4MeasurementProtocolService {
         return payload.stripeSessionId();
     }
 
-    private record ValidationResult(Integer httpStatus, List<String> messages) {
-        private static ValidationResult disabled() {
-            return new ValidationResult(null, List.of());
+    private static ExecutorService newSendExecutor(int threads) {
+        AtomicInteger sequence = new AtomicInteger();
+        return Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "ga4-mp-send-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private record ClientRequest(String clientId, List<Integer> indexes) {
+
+        List<PurchaseIntegrationPayload> payloads(List<PurchaseIntegrationPayload> batch) {
+            List<PurchaseIntegrationPayload> group = new ArrayList<>(indexes.size());
+            indexes.forEach(index -> group.add(batch.get(index)));
+            return group;
         }
     }
+
+    private record ValidationResult(Integer httpStatus, List<String> messages) {
+    }
 }
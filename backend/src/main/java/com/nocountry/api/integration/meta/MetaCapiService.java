@@ -3,10 +3,14 @@ package com.nocountry.api.integration.meta;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.nocountry.api.config.AppProperties;
+import com.nocountry.api.integration.IntegrationOutcome;
+import com.nocountry.api.integration.MicroBatcher;
 import com.nocountry.api.integration.PurchaseIntegrationPayload;
 import com.nocountry.api.service.IntegrationLogService;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
@@ -14,19 +18,26 @@ import org.springframework.web.client.RestClientResponseException;
 import org.springframework.web.client.RestClient;
 
 import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+// With batching on, purchases wait up to batch-max-wait-ms for others and go out in one request of at most
+// batch-max-events; each caller still gets the outcome of its own event.
 @Service
 public class MetaCapiService {
 
     private static final Logger log = LoggerFactory.getLogger(MetaCapiService.class);
+    // Graph API limit for the data array of a single events request.
+    private static final int MAX_EVENTS_PER_REQUEST = 1000;
 
     private final RestClient restClient;
     private final AppProperties appProperties;
     private final IntegrationLogService integrationLogService;
     private final ObjectMapper objectMapper;
+    private final MicroBatcher<PurchaseIntegrationPayload, IntegrationOutcome> batcher;
 
     public MetaCapiService(
             RestClient integrationRestClient,
@@ -38,9 +49,14 @@ public class MetaCapiService {
         this.appProperties = appProperties;
         this.integrationLogService = integrationLogService;
         this.objectMapper = objectMapper;
+        AppProperties.Meta meta = appProperties.getMeta();
+        this.batcher = meta.isBatchEnabled()
+                ? new MicroBatcher<>("meta-capi", Math.min(meta.getBatchMaxEvents(), MAX_EVENTS_PER_REQUEST),
+                meta.getBatchMaxWaitMs(), meta.getBatchSenderThreads(), this::sendBatch)
+                : null;
     }
 
-    public void sendPurchase(PurchaseIntegrationPayload payload) {
+    public IntegrationOutcome sendPurchase(PurchaseIntegrationPayload payload) {
         String referenceId = referenceId(payload);
         if (!appProperties.getIntegrations().isMetaCapiEnabled()) {
             integrationLogService.logWithReference(
@@ -53,7 +69,7 @@ public class MetaCapiService {
                     null,
                     "META_CAPI_ENABLED=false"
             );
-            return;
+            return IntegrationOutcome.SKIPPED;
         }
 
         if (isBlank(appProperties.getMeta().getPixelId()) || isBlank(appProperties.getMeta().getAccessToken())) {
@@ -68,78 +84,122 @@ public class MetaCapiService {
                     null,
                     "missing META_PIXEL_ID or META_ACCESS_TOKEN"
             );
-            return;
+            return IntegrationOutcome.SKIPPED;
         }
 
-        try {
-            long startNanos = System.nanoTime();
-            Map<String, Object> userData = new HashMap<>();
-            if (!isBlank(payload.clientUserAgent())) {
-                userData.put("client_user_agent", payload.clientUserAgent());
-            }
-            if (!isBlank(payload.clientIp())) {
-                userData.put("client_ip_address", payload.clientIp());
+        if (batcher != null) {
+            try {
+                return batcher.submit(payload).join();
+            } catch (Exception ex) {
+                log.warn("meta_capi status=failed eventId={} error={}", payload.eventId(), ex.getMessage());
+                logFailure(List.of(payload), null, null, ex.getMessage());
+                return IntegrationOutcome.RETRYABLE_FAILURE;
             }
+        }
+        return sendBatch(List.of(payload)).get(0);
+    }
 
-            Map<String, Object> event = new HashMap<>();
-            event.put("event_name", "Purchase");
-            event.put("event_time", payload.occurredAt().atZone(ZoneOffset.UTC).toEpochSecond());
-            event.put("action_source", "website");
-            if (payload.eventId() != null) {
-                event.put("event_id", payload.eventId().toString());
-            }
-            event.put("user_data", userData);
-            event.put("custom_data", Map.of(
-                    "currency", payload.currency(),
-                    "value", payload.amount()
-            ));
+    @PreDestroy
+    void stop() {
+        if (batcher != null) {
+            batcher.close();
+        }
+    }
 
-            Map<String, Object> body = Map.of("data", List.of(event));
+    // One Graph API call for the whole batch; every event still gets its own integrations_log row. Meta rejects
+    // the whole request when a single event is invalid, so a 400 on a batch is retried as two halves until the
+    // bad events are isolated. Nothing else is split: a 401/403 (expired token, missing permission) would fail
+    // every half too, and retrying throttling or 5xx answers smaller would only add load, so every event in the
+    // batch takes that outcome.
+    List<IntegrationOutcome> sendBatch(List<PurchaseIntegrationPayload> payloads) {
+        List<Map<String, Object>> events = new ArrayList<>(payloads.size());
+        for (PurchaseIntegrationPayload payload : payloads) {
+            events.add(buildEvent(payload));
+        }
 
+        try {
+            long startNanos = System.nanoTime();
             ResponseEntity<String> response = restClient.post()
                     .uri("https://graph.facebook.com/v18.0/{pixelId}/events?access_token={token}",
                             appProperties.getMeta().getPixelId(),
                             appProperties.getMeta().getAccessToken())
                     .contentType(MediaType.APPLICATION_JSON)
-                    .body(body)
+                    .body(Map.of("data", events))
                     .retrieve()
                     .toEntity(String.class);
             int latencyMs = elapsedMs(startNanos);
-
-            log.info("meta_capi status=sent eventId={}", payload.eventId());
-            integrationLogService.logWithReference(
-                    "META_CAPI",
-                    referenceId,
-                    "SENT",
-                    response.getStatusCode().value(),
-                    latencyMs,
-                    body,
-                    parseResponsePayload(response.getBody()),
-                    null
-            );
+            Object responsePayload = parseResponsePayload(response.getBody());
+
+            for (int i = 0; i < payloads.size(); i++) {
+                PurchaseIntegrationPayload payload = payloads.get(i);
+                log.info("meta_capi status=sent eventId={} batchSize={}", payload.eventId(), payloads.size());
+                integrationLogService.logWithReference(
+                        "META_CAPI",
+                        referenceId(payload),
+                        "SENT",
+                        response.getStatusCode().value(),
+                        latencyMs,
+                        Map.of("data", List.of(events.get(i))),
+                        responsePayload,
+                        null
+                );
+            }
+            return Collections.nCopies(payloads.size(), IntegrationOutcome.SENT);
         } catch (RestClientResponseException ex) {
-            log.warn("meta_capi status=failed eventId={} error={}", payload.eventId(), ex.getMessage());
-            integrationLogService.logWithReference(
-                    "META_CAPI",
-                    referenceId,
-                    "FAILED",
-                    ex.getRawStatusCode(),
-                    null,
-                    null,
-                    ex.getResponseBodyAsString(),
-                    ex.getMessage()
-            );
+            int httpStatus = ex.getStatusCode().value();
+            IntegrationOutcome outcome = IntegrationOutcome.forHttpStatus(httpStatus);
+            if (httpStatus == HttpStatus.BAD_REQUEST.value() && payloads.size() > 1) {
+                int half = payloads.size() / 2;
+                log.info("meta_capi status=split batchSize={} httpStatus={}", payloads.size(), httpStatus);
+                List<IntegrationOutcome> outcomes = new ArrayList<>(sendBatch(payloads.subList(0, half)));
+                outcomes.addAll(sendBatch(payloads.subList(half, payloads.size())));
+                return outcomes;
+            }
+            log.warn("meta_capi status=failed batchSize={} error={}", payloads.size(), ex.getMessage());
+            logFailure(payloads, httpStatus, ex.getResponseBodyAsString(), ex.getMessage());
+            return Collections.nCopies(payloads.size(), outcome);
         } catch (Exception ex) {
-            log.warn("meta_capi status=failed eventId={} error={}", payload.eventId(), ex.getMessage());
+            log.warn("meta_capi status=failed batchSize={} error={}", payloads.size(), ex.getMessage());
+            logFailure(payloads, null, null, ex.getMessage());
+            return Collections.nCopies(payloads.size(), IntegrationOutcome.RETRYABLE_FAILURE);
+        }
+    }
+
+    private Map<String, Object> buildEvent(PurchaseIntegrationPayload payload) {
+        Map<String, Object> userData = new HashMap<>();
+        if (!isBlank(payload.clientUserAgent())) {
+            userData.put("client_user_agent", payload.clientUserAgent());
+        }
+        if (!isBlank(payload.clientIp())) {
+            userData.put("client_ip_address", payload.clientIp());
+        }
+
+        Map<String, Object> event = new HashMap<>();
+        event.put("event_name", "Purchase");
+        event.put("event_time", payload.occurredAt().atZone(ZoneOffset.UTC).toEpochSecond());
+        event.put("action_source", "website");
+        if (payload.eventId() != null) {
+            event.put("event_id", payload.eventId().toString());
+        }
+        event.put("user_data", userData);
+        event.put("custom_data", Map.of(
+                "currency", payload.currency(),
+                "value", payload.amount()
+        ));
+        return event;
+    }
+
+    private void logFailure(List<PurchaseIntegrationPayload> payloads, Integer httpStatus, Object responsePayload, String error) {
+        for (PurchaseIntegrationPayload payload : payloads) {
             integrationLogService.logWithReference(
                     "META_CAPI",
-                    referenceId,
+                    referenceId(payload),
                     "FAILED",
+                    httpStatus,
                     null,
                     null,
-                    null,
-                    null,
-                    ex.getMessage()
+                    responsePayload,
+                    error
             );
         }
     }
@@ -0,0 +1,176 @@
+package com.nocountry.api.integration.pipedrive;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.nocountry.api.config.AppProperties;
+import com.nocountry.api.entity.PipedriveIdCacheEntry;
+import com.nocountry.api.repository.PipedriveIdCacheRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+// email -> person id, in memory and in pipedrive_id_cache so the mapping survives restarts. The table is only
+// an optimization: when it cannot be read or written, lookups fall back to search.
+// Deal titles carry the checkout session id, so a deal is only ever looked up again by retries of the same
+// purchase; those ids stay in memory for a short TTL and are never written to the table.
+@Component
+public class PipedriveIdCache {
+
+    public static final String PERSON = "PERSON";
+    public static final String DEAL = "DEAL";
+
+    private static final Logger log = LoggerFactory.getLogger(PipedriveIdCache.class);
+
+    private final PipedriveIdCacheRepository pipedriveIdCacheRepository;
+    private final AppProperties appProperties;
+    private final Clock clock;
+    private final Cache<PipedriveIdCacheEntry.Key, Mapping> cache;
+    private final Cache<String, Long> dealCache;
+    private final boolean enabled;
+    private final Duration ttl;
+
+    public PipedriveIdCache(
+            PipedriveIdCacheRepository pipedriveIdCacheRepository,
+            AppProperties appProperties,
+            Clock clock,
+            MeterRegistry meterRegistry
+    ) {
+        this.pipedriveIdCacheRepository = pipedriveIdCacheRepository;
+        this.appProperties = appProperties;
+        this.clock = clock;
+        AppProperties.Pipedrive config = appProperties.getPipedrive();
+        this.enabled = config.getIdCacheMaxSize() > 0;
+        this.ttl = Duration.ofSeconds(Math.max(1, config.getIdCacheTtlSeconds()));
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(Math.max(0, config.getIdCacheMaxSize()))
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.dealCache = Caffeine.newBuilder()
+                .maximumSize(Math.max(0, config.getIdCacheMaxSize()))
+                .expireAfterWrite(Duration.ofSeconds(Math.max(1, config.getIdCacheDealTtlSeconds())))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "pipedrive.id");
+        CaffeineCacheMetrics.monitor(meterRegistry, dealCache, "pipedrive.deal_id");
+    }
+
+    @PostConstruct
+    void warmUp() {
+        if (!enabled || !appProperties.getIntegrations().isPipedriveEnabled()) {
+            return;
+        }
+
+        try {
+            List<PipedriveIdCacheEntry> rows = pipedriveIdCacheRepository.findVerifiedSince(
+                    Instant.now(clock).minus(ttl),
+                    Math.max(0, appProperties.getPipedrive().getIdCacheWarmupLimit())
+            );
+            for (PipedriveIdCacheEntry row : rows) {
+                cache.put(new PipedriveIdCacheEntry.Key(row.getKind(), row.getLookupKey()),
+                        new Mapping(row.getPipedriveId(), row.getVerifiedAt()));
+            }
+            log.info("pipedrive_id_cache warmed entries={}", rows.size());
+        } catch (DataAccessException ex) {
+            log.warn("pipedrive_id_cache warmup_failed error={}", ex.getMessage());
+        }
+    }
+
+    // Ids Pipedrive has not confirmed within the TTL count as misses, so the caller searches again and the
+    // fresh answer replaces them.
+    public Long get(String kind, String lookupKey) {
+        if (!enabled) {
+            return null;
+        }
+        if (DEAL.equals(kind)) {
+            return dealCache.getIfPresent(lookupKey);
+        }
+
+        PipedriveIdCacheEntry.Key key = new PipedriveIdCacheEntry.Key(kind, lookupKey);
+        Mapping mapping = cache.getIfPresent(key);
+        if (mapping == null) {
+            mapping = load(kind, lookupKey);
+            if (mapping == null) {
+                return null;
+            }
+            cache.put(key, mapping);
+        }
+        return mapping.verifiedAt().plus(ttl).isAfter(Instant.now(clock)) ? mapping.pipedriveId() : null;
+    }
+
+    // Called whenever Pipedrive has just confirmed the id, by a search hit or a successful create or update.
+    public void put(String kind, String lookupKey, Long pipedriveId) {
+        if (!enabled || pipedriveId == null) {
+            return;
+        }
+        if (DEAL.equals(kind)) {
+            dealCache.put(lookupKey, pipedriveId);
+            return;
+        }
+
+        Instant now = Instant.now(clock);
+        cache.put(new PipedriveIdCacheEntry.Key(kind, lookupKey), new Mapping(pipedriveId, now));
+        try {
+            pipedriveIdCacheRepository.upsertMapping(kind, lookupKey, pipedriveId, now);
+        } catch (DataAccessException ex) {
+            log.warn("pipedrive_id_cache write_failed kind={} error={}", kind, ex.getMessage());
+        }
+    }
+
+    // The id no longer exists in Pipedrive (deleted or merged); forget it unless it was already replaced.
+    public void invalidate(String kind, String lookupKey, long pipedriveId) {
+        if (!enabled) {
+            return;
+        }
+        if (DEAL.equals(kind)) {
+            dealCache.asMap().remove(lookupKey, pipedriveId);
+            log.info("pipedrive_id_cache status=invalidated kind={} pipedriveId={}", kind, pipedriveId);
+            return;
+        }
+
+        cache.asMap().computeIfPresent(new PipedriveIdCacheEntry.Key(kind, lookupKey),
+                (key, mapping) -> mapping.pipedriveId() == pipedriveId ? null : mapping);
+        try {
+            pipedriveIdCacheRepository.deleteMapping(kind, lookupKey, pipedriveId);
+        } catch (DataAccessException ex) {
+            log.warn("pipedrive_id_cache delete_failed kind={} error={}", kind, ex.getMessage());
+        }
+        log.info("pipedrive_id_cache status=invalidated kind={} pipedriveId={}", kind, pipedriveId);
+    }
+
+    // Rows past the TTL are never served again; without this the table would keep every customer ever seen.
+    @Scheduled(fixedDelay = 3_600_000)
+    public void purgeExpired() {
+        try {
+            int purged = pipedriveIdCacheRepository.deleteVerifiedBefore(Instant.now(clock).minus(ttl));
+            if (purged > 0) {
+                log.info("pipedrive_id_cache purged rows={}", purged);
+            }
+        } catch (DataAccessException ex) {
+            log.warn("pipedrive_id_cache purge_failed error={}", ex.getMessage());
+        }
+    }
+
+    private Mapping load(String kind, String lookupKey) {
+        try {
+            PipedriveIdCacheEntry row = pipedriveIdCacheRepository.findMapping(kind, lookupKey);
+            return row == null ? null : new Mapping(row.getPipedriveId(), row.getVerifiedAt());
+        } catch (DataAccessException ex) {
+            log.warn("pipedrive_id_cache read_failed kind={} error={}", kind, ex.getMessage());
+            return null;
+        }
+    }
+
+    private record Mapping(long pipedriveId, Instant verifiedAt) {
+    }
+}
@@ -1,17 +1,20 @@
 package com.nocountry.api.integration.pipedrive;
 
 import com.nocountry.api.config.AppProperties;
+import com.nocountry.api.integration.IntegrationOutcome;
 import com.nocountry.api.integration.PurchaseIntegrationPayload;
 import com.nocountry.api.service.IntegrationLogService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestClientResponseException;
 import org.springframework.web.client.RestClient;
 
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 @Service
@@ -22,18 +25,21 @@ public class PipedriveService {
     private final RestClient restClient;
     private final AppProperties appProperties;
     private final IntegrationLogService integrationLogService;
+    private final PipedriveIdCache pipedriveIdCache;
 
     public PipedriveService(
             RestClient integrationRestClient,
             AppProperties appProperties,
-            IntegrationLogService integrationLogService
+            IntegrationLogService integrationLogService,
+            PipedriveIdCache pipedriveIdCache
     ) {
         this.restClient = integrationRestClient;
         this.appProperties = appProperties;
         this.integrationLogService = integrationLogService;
+        this.pipedriveIdCache = pipedriveIdCache;
     }
 
-    public void sendPurchase(PurchaseIntegrationPayload payload) {
+    public IntegrationOutcome sendPurchase(PurchaseIntegrationPayload payload) {
         String referenceId = referenceId(payload);
         if (!appProperties.getIntegrations().isPipedriveEnabled()) {
             integrationLogService.logWithReference(
@@ -46,7 +52,7 @@ public class PipedriveService {
                     null,
                     "PIPEDRIVE_ENABLED=false"
             );
-            return;
+            return IntegrationOutcome.SKIPPED;
         }
 
         if (isBlank(appProperties.getPipedrive().getApiToken())) {
@@ -61,14 +67,13 @@ public class PipedriveService {
                     null,
                     "missing PIPEDRIVE_API_TOKEN"
             );
-            return;
+            return IntegrationOutcome.SKIPPED;
         }
 
         try {
             long startNanos = System.nanoTime();
             String token = appProperties.getPipedrive().getApiToken();
-            Long personId = upsertPerson(token, payload);
-            upsertDeal(token, payload, personId);
+            syncPurchase(token, payload);
             int latencyMs = elapsedMs(startNanos);
 
             log.info("pipedrive status=sent eventId={}", payload.eventId());
@@ -86,6 +91,7 @@ public class PipedriveService {
                     null,
                     null
             );
+            return IntegrationOutcome.SENT;
         } catch (RestClientResponseException ex) {
             log.warn("pipedrive status=failed eventId={} error={}", payload.eventId(), ex.getMessage());
             integrationLogService.logWithReference(
@@ -98,6 +104,7 @@ public class PipedriveService {
                     ex.getResponseBodyAsString(),
                     ex.getMessage()
             );
+            return IntegrationOutcome.forHttpStatus(ex.getRawStatusCode());
         } catch (Exception ex) {
             log.warn("pipedrive status=failed eventId={} error={}", payload.eventId(), ex.getMessage());
             integrationLogService.logWithReference(
@@ -110,12 +117,40 @@ public class PipedriveService {
                     null,
                     ex.getMessage()
             );
+            return IntegrationOutcome.RETRYABLE_FAILURE;
+        }
+    }
+
+    // Cached ids skip the search calls. If Pipedrive answers 404 for one of them, it was deleted or merged on
+    // their side: the stale ids are dropped and the purchase is resolved again through search.
+    private void syncPurchase(String token, PurchaseIntegrationPayload payload) {
+        String emailKey = isBlank(payload.customerEmail()) ? null : payload.customerEmail().trim().toLowerCase(Locale.ROOT);
+        String title = "Purchase " + payload.stripeSessionId();
+        Long cachedPersonId = emailKey == null ? null : pipedriveIdCache.get(PipedriveIdCache.PERSON, emailKey);
+        Long cachedDealId = pipedriveIdCache.get(PipedriveIdCache.DEAL, title);
+
+        try {
+            Long personId = cachedPersonId != null ? cachedPersonId : upsertPerson(token, payload, emailKey);
+            upsertDeal(token, payload, title, personId, cachedDealId != null ? cachedDealId : findDealByTitle(token, title));
+        } catch (HttpClientErrorException.NotFound ex) {
+            if (cachedPersonId == null && cachedDealId == null) {
+                throw ex;
+            }
+            if (cachedPersonId != null) {
+                pipedriveIdCache.invalidate(PipedriveIdCache.PERSON, emailKey, cachedPersonId);
+            }
+            if (cachedDealId != null) {
+                pipedriveIdCache.invalidate(PipedriveIdCache.DEAL, title, cachedDealId);
+            }
+            Long personId = upsertPerson(token, payload, emailKey);
+            upsertDeal(token, payload, title, personId, findDealByTitle(token, title));
         }
     }
 
-    private Long upsertPerson(String token, PurchaseIntegrationPayload payload) {
+    private Long upsertPerson(String token, PurchaseIntegrationPayload payload, String emailKey) {
         Long existingPersonId = findPersonByEmail(token, payload.customerEmail());
         if (existingPersonId != null) {
+            pipedriveIdCache.put(PipedriveIdCache.PERSON, emailKey, existingPersonId);
             return existingPersonId;
         }
 
@@ -132,13 +167,14 @@ public class PipedriveService {
                 .retrieve()
                 .body(Map.class);
 
-        return extractIdFromData(response);
+        Long personId = extractIdFromData(response);
+        if (emailKey != null) {
+            pipedriveIdCache.put(PipedriveIdCache.PERSON, emailKey, personId);
+        }
+        return personId;
     }
 
-    private void upsertDeal(String token, PurchaseIntegrationPayload payload, Long personId) {
-        String title = "Purchase " + payload.stripeSessionId();
-        Long existingDealId = findDealByTitle(token, title);
-
+    private void upsertDeal(String token, PurchaseIntegrationPayload payload, String title, Long personId, Long existingDealId) {
         Map<String, Object> body = new HashMap<>();
         body.put("title", title);
         body.put("value", payload.amount());
@@ -155,15 +191,17 @@ public class PipedriveService {
                     .body(body)
                     .retrieve()
                     .toBodilessEntity();
+            pipedriveIdCache.put(PipedriveIdCache.DEAL, title, existingDealId);
             return;
         }
 
-        restClient.post()
+        Map<?, ?> response = restClient.post()
                 .uri("https://api.pipedrive.com/v1/deals?api_token={token}", token)
                 .contentType(MediaType.APPLICATION_JSON)
                 .body(body)
                 .retrieve()
-                .toBodilessEntity();
+                .body(Map.class);
+        pipedriveIdCache.put(PipedriveIdCache.DEAL, title, extractIdFromData(response));
     }
 
     private Long findPersonByEmail(String token, String email) {
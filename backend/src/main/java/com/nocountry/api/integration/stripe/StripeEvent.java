@@ -0,0 +1,36 @@
+package com.nocountry.api.integration.stripe;
+
+import java.util.Map;
+
+// The parts of a Stripe event the webhook handler reads; StripeEventParser skips everything else. Text fields
+// are null when missing, null or blank. data.object is never null: a missing one has every field null.
+public record StripeEvent(String id, String type, DataObject object) {
+
+    // data.object of a checkout.session or payment_intent event.
+    public record DataObject(
+            String id,
+            String paymentIntent,
+            String clientReferenceId,
+            String status,
+            String paymentStatus,
+            String currency,
+            Long amountTotal,
+            Long amount,
+            Long amountReceived,
+            String customerEmail,
+            String receiptEmail,
+            String customerDetailsEmail,
+            String customerDetailsName,
+            String billingEmail,
+            String billingName,
+            Map<String, String> metadata
+    ) {
+
+        static final DataObject EMPTY = new DataObject(
+                null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, Map.of());
+
+        public String metadata(String key) {
+            return metadata.get(key);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.nocountry.api.integration.stripe;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+// Reads a Stripe event in one streaming pass, keeping only the fields in StripeEvent. Line items, payment
+// method details and the rest of a checkout session are skipped without being materialized, but the whole
+// document is still tokenized, so malformed JSON fails as it would with readTree.
+@Component
+public class StripeEventParser {
+
+    private final JsonFactory jsonFactory;
+
+    public StripeEventParser(ObjectMapper objectMapper) {
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    public StripeEvent parse(String payload) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(payload)) {
+            return read(parser);
+        }
+    }
+
+    public StripeEvent parse(byte[] payload) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(payload)) {
+            return read(parser);
+        }
+    }
+
+    private StripeEvent read(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "Stripe event must be a JSON object");
+        }
+
+        EventFields event = new EventFields();
+        readObject(parser, name -> {
+            switch (name) {
+                case "id" -> event.id = text(parser);
+                case "type" -> event.type = text(parser);
+                case "data" -> readObject(parser, dataField -> {
+                    if ("object".equals(dataField)) {
+                        event.object = readDataObject(parser);
+                    } else {
+                        parser.skipChildren();
+                    }
+                });
+                default -> parser.skipChildren();
+            }
+        });
+        return new StripeEvent(event.id, event.type, event.object);
+    }
+
+    private StripeEvent.DataObject readDataObject(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return StripeEvent.DataObject.EMPTY;
+        }
+
+        ObjectFields object = new ObjectFields();
+        readObject(parser, name -> {
+            switch (name) {
+                case "id" -> object.id = text(parser);
+                case "payment_intent" -> object.paymentIntent = text(parser);
+                case "client_reference_id" -> object.clientReferenceId = text(parser);
+                case "status" -> object.status = text(parser);
+                case "payment_status" -> object.paymentStatus = text(parser);
+                case "currency" -> object.currency = text(parser);
+                case "amount_total" -> object.amountTotal = number(parser);
+                case "amount" -> object.amount = number(parser);
+                case "amount_received" -> object.amountReceived = number(parser);
+                case "customer_email" -> object.customerEmail = text(parser);
+                case "receipt_email" -> object.receiptEmail = text(parser);
+                case "customer_details" -> readObject(parser, detail -> {
+                    switch (detail) {
+                        case "email" -> object.customerDetailsEmail = text(parser);
+                        case "name" -> object.customerDetailsName = text(parser);
+                        default -> parser.skipChildren();
+                    }
+                });
+                case "charges" -> readFirstBillingDetails(parser, object);
+                case "metadata" -> readObject(parser, key -> {
+                    String value = text(parser);
+                    if (value != null) {
+                        object.metadata.put(key, value);
+                    }
+                });
+                default -> parser.skipChildren();
+            }
+        });
+        return new StripeEvent.DataObject(
+                object.id,
+                object.paymentIntent,
+                object.clientReferenceId,
+                object.status,
+                object.paymentStatus,
+                object.currency,
+                object.amountTotal,
+                object.amount,
+                object.amountReceived,
+                object.customerEmail,
+                object.receiptEmail,
+                object.customerDetailsEmail,
+                object.customerDetailsName,
+                object.billingEmail,
+                object.billingName,
+                Map.copyOf(object.metadata)
+        );
+    }
+
+    // charges.data[0].billing_details of a payment intent.
+    private void readFirstBillingDetails(JsonParser parser, ObjectFields object) throws IOException {
+        readObject(parser, name -> {
+            if (!"data".equals(name) || parser.currentToken() != JsonToken.START_ARRAY) {
+                parser.skipChildren();
+                return;
+            }
+            boolean first = true;
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (!first) {
+                    parser.skipChildren();
+                    continue;
+                }
+                first = false;
+                readObject(parser, chargeField -> {
+                    if (!"billing_details".equals(chargeField)) {
+                        parser.skipChildren();
+                        return;
+                    }
+                    readObject(parser, detail -> {
+                        switch (detail) {
+                            case "email" -> object.billingEmail = text(parser);
+                            case "name" -> object.billingName = text(parser);
+                            default -> parser.skipChildren();
+                        }
+                    });
+                });
+            }
+        });
+    }
+
+    // Calls the handler with the parser on each field's value; the handler reads it or skips it. A value that
+    // is not an object is skipped.
+    private static void readObject(JsonParser parser, FieldHandler handler) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            parser.nextToken();
+            handler.handle(name);
+        }
+    }
+
+    private static String text(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token.isStructStart()) {
+            parser.skipChildren();
+            return null;
+        }
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        String value = parser.getText();
+        return value == null || value.isBlank() ? null : value;
+    }
+
+    private static Long number(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token.isStructStart()) {
+            parser.skipChildren();
+            return null;
+        }
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        return parser.getValueAsLong(0);
+    }
+
+    @FunctionalInterface
+    private interface FieldHandler {
+        void handle(String name) throws IOException;
+    }
+
+    private static final class EventFields {
+        private String id;
+        private String type;
+        private StripeEvent.DataObject object = StripeEvent.DataObject.EMPTY;
+    }
+
+    private static final class ObjectFields {
+        private String id;
+        private String paymentIntent;
+        private String clientReferenceId;
+        private String status;
+        private String paymentStatus;
+        private String currency;
+        private Long amountTotal;
+        private Long amount;
+        private Long amountReceived;
+        private String customerEmail;
+        private String receiptEmail;
+        private String customerDetailsEmail;
+        private String customerDetailsName;
+        private String billingEmail;
+        private String billingName;
+        private final Map<String, String> metadata = new HashMap<>();
+    }
+}
@@ -1,27 +1,60 @@
 package com.nocountry.api.integration.stripe;
 
+import com.nocountry.api.config.AppProperties;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
+// Checks the Stripe-Signature header against the webhook secret and, while a secret is being rotated, the
+// previous ones. Each thread keeps one initialized Mac per secret, and the secret that matched last is tried
+// first, so during a rotation a request normally costs a single HMAC.
 @Component
 public class StripeSignatureVerifier {
 
     private static final long DEFAULT_TOLERANCE_SECONDS = 300;
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int SIGNATURE_LENGTH = 32;
+    private static final byte SEPARATOR = '.';
 
-    public boolean verify(String payload, String stripeSignatureHeader, String secret) {
-        if (payload == null || stripeSignatureHeader == null || secret == null || secret.isBlank()) {
+    private final List<SecretKeySpec> keys;
+    private final ThreadLocal<Mac[]> macs;
+    private volatile int lastMatched;
+
+    public StripeSignatureVerifier(AppProperties appProperties) {
+        Set<String> secrets = new LinkedHashSet<>();
+        secrets.add(appProperties.getStripe().getWebhookSecret());
+        secrets.addAll(appProperties.getStripe().getWebhookPreviousSecrets());
+        List<SecretKeySpec> configured = new ArrayList<>();
+        for (String secret : secrets) {
+            if (secret != null && !secret.isBlank()) {
+                configured.add(new SecretKeySpec(secret.trim().getBytes(StandardCharsets.UTF_8), ALGORITHM));
+            }
+        }
+        this.keys = List.copyOf(configured);
+        this.macs = ThreadLocal.withInitial(this::newMacs);
+    }
+
+    public boolean verify(String payload, String stripeSignatureHeader) {
+        return payload != null && verify(payload.getBytes(StandardCharsets.UTF_8), stripeSignatureHeader);
+    }
+
+    public boolean verify(byte[] payload, String stripeSignatureHeader) {
+        if (payload == null || stripeSignatureHeader == null || keys.isEmpty()) {
             return false;
         }
 
         SignatureParts parts = parseHeader(stripeSignatureHeader);
-        if (parts.timestamp == null || parts.v1Signatures.isEmpty()) {
+        if (parts == null || parts.v1Signatures.isEmpty()) {
             return false;
         }
 
@@ -31,58 +64,86 @@ public class StripeSignatureVerifier {
             return false;
         }
 
-        String signedPayload = parts.timestamp + "." + payload;
-        String expected = hmacSha256(secret, signedPayload);
+        Mac[] threadMacs = macs.get();
+        int first = lastMatched;
+        for (int i = 0; i < threadMacs.length; i++) {
+            int index = (first + i) % threadMacs.length;
+            if (matches(threadMacs[index], parts, payload)) {
+                if (index != first) {
+                    lastMatched = index;
+                }
+                return true;
+            }
+        }
+        return false;
+    }
 
-        for (String candidate : parts.v1Signatures) {
-            if (MessageDigest.isEqual(expected.getBytes(StandardCharsets.UTF_8), candidate.getBytes(StandardCharsets.UTF_8))) {
+    // Signs "<t>.<payload>" without building the concatenated string. doFinal leaves the Mac ready for reuse.
+    private boolean matches(Mac mac, SignatureParts parts, byte[] payload) {
+        mac.update(parts.signedTimestamp);
+        mac.update(SEPARATOR);
+        mac.update(payload);
+        byte[] expected = mac.doFinal();
+        for (byte[] candidate : parts.v1Signatures) {
+            if (MessageDigest.isEqual(expected, candidate)) {
                 return true;
             }
         }
         return false;
     }
 
+    // Returns null when the header has no usable timestamp. v1 values that are not 32 bytes of hex cannot
+    // match and are dropped.
     private SignatureParts parseHeader(String header) {
-        Long timestamp = null;
-        List<String> signatures = new ArrayList<>();
+        String timestamp = null;
+        List<byte[]> signatures = new ArrayList<>(1);
 
         for (String part : header.split(",")) {
-            String[] kv = part.split("=", 2);
-            if (kv.length != 2) {
+            int separator = part.indexOf('=');
+            if (separator < 0) {
                 continue;
             }
-            String key = kv[0].trim();
-            String value = kv[1].trim();
+            String key = part.substring(0, separator).trim();
+            String value = part.substring(separator + 1).trim();
             if ("t".equals(key)) {
+                timestamp = value;
+            }
+            if ("v1".equals(key) && value.length() == SIGNATURE_LENGTH * 2) {
                 try {
-                    timestamp = Long.parseLong(value);
-                } catch (NumberFormatException ignored) {
-                    timestamp = null;
+                    signatures.add(HexFormat.of().parseHex(value));
+                } catch (IllegalArgumentException ignored) {
+                    // Not hex.
                 }
             }
-            if ("v1".equals(key)) {
-                signatures.add(value);
-            }
         }
 
-        return new SignatureParts(timestamp, signatures);
+        if (timestamp == null) {
+            return null;
+        }
+        try {
+            return new SignatureParts(
+                    Long.parseLong(timestamp),
+                    timestamp.getBytes(StandardCharsets.US_ASCII),
+                    signatures
+            );
+        } catch (NumberFormatException ex) {
+            return null;
+        }
     }
 
-    private String hmacSha256(String secret, String payload) {
+    private Mac[] newMacs() {
+        Mac[] created = new Mac[keys.size()];
         try {
-            Mac mac = Mac.getInstance("HmacSHA256");
-            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
-            byte[] digest = mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
-            StringBuilder hex = new StringBuilder(digest.length * 2);
-            for (byte b : digest) {
-                hex.append(String.format("%02x", b));
+            for (int i = 0; i < created.length; i++) {
+                created[i] = Mac.getInstance(ALGORITHM);
+                created[i].init(keys.get(i));
             }
-            return hex.toString();
-        } catch (Exception ex) {
-            throw new IllegalStateException("Unable to compute Stripe signature", ex);
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("Unable to initialize Stripe signature verification", ex);
         }
+        return created;
     }
 
-    private record SignatureParts(Long timestamp, List<String> v1Signatures) {
+    private record SignatureParts(long timestamp, byte[] signedTimestamp, List<byte[]> v1Signatures) {
     }
 }
@@ -0,0 +1,28 @@
+package com.nocountry.api.repository;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+@Component
+public class DatabaseDialect {
+
+    private final JdbcTemplate jdbcTemplate;
+    private volatile Boolean postgres;
+
+    public DatabaseDialect(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Postgres-only statements (ON CONFLICT ... DO UPDATE, RETURNING) fall back to portable SQL elsewhere, e.g. H2 in tests.
+    public boolean isPostgres() {
+        Boolean cached = postgres;
+        if (cached == null) {
+            String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                    connection.getMetaData().getDatabaseProductName());
+            cached = "PostgreSQL".equalsIgnoreCase(product);
+            postgres = cached;
+        }
+        return cached;
+    }
+}
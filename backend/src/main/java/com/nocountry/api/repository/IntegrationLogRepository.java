@@ -5,5 +5,5 @@ import org.springframework.data.jpa.repository.JpaRepository;
 
 import java.util.UUID;
 
-public interface IntegrationLogRepository extends JpaRepository<IntegrationLog, UUID> {
+public interface IntegrationLogRepository extends JpaRepository<IntegrationLog, UUID>, IntegrationLogRepositoryCustom {
 }
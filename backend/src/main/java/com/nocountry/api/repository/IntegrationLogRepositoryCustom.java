@@ -0,0 +1,10 @@
+package com.nocountry.api.repository;
+
+import com.nocountry.api.entity.IntegrationLog;
+
+import java.util.List;
+
+public interface IntegrationLogRepositoryCustom {
+
+    void insertAll(List<IntegrationLog> rows);
+}
@@ -0,0 +1,60 @@
+package com.nocountry.api.repository;
+
+import com.nocountry.api.entity.IntegrationLog;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.StringJoiner;
+
+@Repository
+public class IntegrationLogRepositoryImpl implements IntegrationLogRepositoryCustom {
+
+    private static final String INSERT_SQL = """
+            INSERT INTO integrations_log (id, integration, reference_id, status, http_status, latency_ms,
+                                          request_payload, response_payload, error_message, created_at)
+            VALUES %s
+            """;
+
+    private static final int COLUMNS = 10;
+    // 200 rows stay well below the driver's bind parameter limit.
+    private static final int CHUNK_SIZE = 200;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final DatabaseDialect databaseDialect;
+
+    public IntegrationLogRepositoryImpl(NamedParameterJdbcTemplate jdbcTemplate, DatabaseDialect databaseDialect) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.databaseDialect = databaseDialect;
+    }
+
+    // One multi-row INSERT per chunk. Payloads are already serialized JSON text; the cast stores them as
+    // json documents rather than json strings.
+    @Override
+    public void insertAll(List<IntegrationLog> rows) {
+        String json = databaseDialect.isPostgres() ? "CAST(? AS jsonb)" : "? FORMAT JSON";
+        String row = "(?, ?, ?, ?, ?, ?, " + json + ", " + json + ", ?, ?)";
+
+        for (int from = 0; from < rows.size(); from += CHUNK_SIZE) {
+            List<IntegrationLog> chunk = rows.subList(from, Math.min(rows.size(), from + CHUNK_SIZE));
+            StringJoiner values = new StringJoiner(", ");
+            Object[] args = new Object[chunk.size() * COLUMNS];
+            int i = 0;
+            for (IntegrationLog log : chunk) {
+                values.add(row);
+                args[i++] = log.getId();
+                args[i++] = log.getIntegration();
+                args[i++] = log.getReferenceId();
+                args[i++] = log.getStatus();
+                args[i++] = log.getHttpStatus();
+                args[i++] = log.getLatencyMs();
+                args[i++] = log.getRequestPayload();
+                args[i++] = log.getResponsePayload();
+                args[i++] = log.getErrorMessage();
+                args[i++] = Timestamp.from(log.getCreatedAt());
+            }
+            jdbcTemplate.getJdbcOperations().update(INSERT_SQL.formatted(values), args);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.nocountry.api.repository;
+
+import com.nocountry.api.entity.IntegrationOutboxEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface IntegrationOutboxRepository extends JpaRepository<IntegrationOutboxEntry, UUID>, IntegrationOutboxRepositoryCustom {
+
+    List<IntegrationOutboxEntry> findByReferenceId(String referenceId);
+}
@@ -0,0 +1,21 @@
+package com.nocountry.api.repository;
+
+import com.nocountry.api.entity.IntegrationOutboxEntry;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface IntegrationOutboxRepositoryCustom {
+
+    void insertAll(List<IntegrationOutboxEntry> entries);
+
+    List<PendingIntegrationCall> claim(int batchSize, Instant now, Instant lockedUntil);
+
+    boolean markCompleted(PendingIntegrationCall call, String status, Instant completedAt);
+
+    boolean markRetry(PendingIntegrationCall call, String error, Instant nextAttemptAt);
+
+    boolean markDeferred(PendingIntegrationCall call, Instant nextAttemptAt);
+
+    boolean markDead(PendingIntegrationCall call, String error, Instant failedAt);
+}
@@ -0,0 +1,180 @@
+package com.nocountry.api.repository;
+
+import com.nocountry.api.entity.IntegrationOutboxEntry;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public class IntegrationOutboxRepositoryImpl implements IntegrationOutboxRepositoryCustom {
+
+    private static final String INSERT_SQL = """
+            INSERT INTO integration_outbox (id, integration, reference_id, payload, status, attempts,
+                                            next_attempt_at, created_at)
+            VALUES (:id, :integration, :referenceId, :payload, 'PENDING', 0, :nextAttemptAt, :createdAt)
+            """;
+
+    private static final String DUE_WHERE = """
+            o.status = 'PENDING'
+              AND o.next_attempt_at <= :now
+              AND (o.locked_until IS NULL OR o.locked_until <= :now)
+            """;
+
+    // SKIP LOCKED lets every replica drain at the same time; each row goes to exactly one of them.
+    private static final String CLAIM_SKIP_LOCKED_SQL = """
+            UPDATE integration_outbox e
+            SET locked_until = :lockedUntil, attempts = e.attempts + 1
+            FROM (
+                SELECT o.id
+                FROM integration_outbox o
+                WHERE %s
+                ORDER BY o.next_attempt_at
+                LIMIT :batchSize
+                FOR UPDATE SKIP LOCKED
+            ) c
+            WHERE e.id = c.id
+            RETURNING e.id, e.integration, e.payload, e.attempts
+            """.formatted(DUE_WHERE);
+
+    private static final String CLAIM_CANDIDATES_SQL = """
+            SELECT o.id
+            FROM integration_outbox o
+            WHERE %s
+            ORDER BY o.next_attempt_at
+            LIMIT :batchSize
+            """.formatted(DUE_WHERE);
+
+    private static final String CLAIM_ONE_SQL = """
+            UPDATE integration_outbox
+            SET locked_until = :lockedUntil, attempts = attempts + 1
+            WHERE id = :id
+              AND status = 'PENDING'
+              AND (locked_until IS NULL OR locked_until <= :now)
+            """;
+
+    private static final String LOAD_CLAIMED_SQL = """
+            SELECT id, integration, payload, attempts
+            FROM integration_outbox
+            WHERE id = :id
+            """;
+
+    // Outcomes are fenced on the claim token so a drain pass whose lock expired cannot overwrite a newer claim.
+    private static final String MARK_COMPLETED_SQL = """
+            UPDATE integration_outbox
+            SET status = :status, completed_at = :at, last_error = NULL, locked_until = NULL
+            WHERE id = :id AND locked_until = :lockedUntil
+            """;
+
+    private static final String MARK_RETRY_SQL = """
+            UPDATE integration_outbox
+            SET next_attempt_at = :at, last_error = :error, locked_until = NULL
+            WHERE id = :id AND locked_until = :lockedUntil
+            """;
+
+    // A deferred call never reached the provider, so its claim does not count as an attempt.
+    private static final String MARK_DEFERRED_SQL = """
+            UPDATE integration_outbox
+            SET next_attempt_at = :at, attempts = attempts - 1, locked_until = NULL
+            WHERE id = :id AND locked_until = :lockedUntil
+            """;
+
+    private static final String MARK_DEAD_SQL = """
+            UPDATE integration_outbox
+            SET status = 'DEAD', completed_at = :at, last_error = :error, locked_until = NULL
+            WHERE id = :id AND locked_until = :lockedUntil
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final DatabaseDialect databaseDialect;
+
+    public IntegrationOutboxRepositoryImpl(NamedParameterJdbcTemplate jdbcTemplate, DatabaseDialect databaseDialect) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.databaseDialect = databaseDialect;
+    }
+
+    @Override
+    public void insertAll(List<IntegrationOutboxEntry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        SqlParameterSource[] params = entries.stream()
+                .map(entry -> new MapSqlParameterSource()
+                        .addValue("id", entry.getId())
+                        .addValue("integration", entry.getIntegration())
+                        .addValue("referenceId", entry.getReferenceId())
+                        .addValue("payload", entry.getPayload())
+                        .addValue("nextAttemptAt", Timestamp.from(entry.getNextAttemptAt()))
+                        .addValue("createdAt", Timestamp.from(entry.getCreatedAt())))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate(INSERT_SQL, params);
+    }
+
+    @Override
+    public List<PendingIntegrationCall> claim(int batchSize, Instant now, Instant lockedUntil) {
+        // Truncated so the token survives the round trip through a TIMESTAMP column unchanged.
+        Instant token = lockedUntil.truncatedTo(ChronoUnit.MILLIS);
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("batchSize", batchSize)
+                .addValue("now", Timestamp.from(now))
+                .addValue("lockedUntil", Timestamp.from(token));
+        RowMapper<PendingIntegrationCall> mapper = (rs, rowNum) -> new PendingIntegrationCall(
+                rs.getObject("id", UUID.class),
+                rs.getString("integration"),
+                rs.getString("payload"),
+                rs.getInt("attempts"),
+                token
+        );
+
+        if (databaseDialect.isPostgres()) {
+            return jdbcTemplate.query(CLAIM_SKIP_LOCKED_SQL, params, mapper);
+        }
+
+        // Portable fallback: pick candidates, then claim each one with a conditional update so concurrent
+        // drain passes never both win the same row.
+        List<PendingIntegrationCall> claimed = new ArrayList<>();
+        for (UUID id : jdbcTemplate.queryForList(CLAIM_CANDIDATES_SQL, params, UUID.class)) {
+            params.addValue("id", id);
+            if (jdbcTemplate.update(CLAIM_ONE_SQL, params) > 0) {
+                claimed.addAll(jdbcTemplate.query(LOAD_CLAIMED_SQL, params, mapper));
+            }
+        }
+        return claimed;
+    }
+
+    @Override
+    public boolean markCompleted(PendingIntegrationCall call, String status, Instant completedAt) {
+        return jdbcTemplate.update(MARK_COMPLETED_SQL, outcomeParams(call, completedAt).addValue("status", status)) > 0;
+    }
+
+    @Override
+    public boolean markRetry(PendingIntegrationCall call, String error, Instant nextAttemptAt) {
+        return jdbcTemplate.update(MARK_RETRY_SQL, outcomeParams(call, nextAttemptAt).addValue("error", error)) > 0;
+    }
+
+    @Override
+    public boolean markDeferred(PendingIntegrationCall call, Instant nextAttemptAt) {
+        return jdbcTemplate.update(MARK_DEFERRED_SQL, outcomeParams(call, nextAttemptAt)) > 0;
+    }
+
+    @Override
+    public boolean markDead(PendingIntegrationCall call, String error, Instant failedAt) {
+        return jdbcTemplate.update(MARK_DEAD_SQL, outcomeParams(call, failedAt).addValue("error", error)) > 0;
+    }
+
+    private MapSqlParameterSource outcomeParams(PendingIntegrationCall call, Instant at) {
+        return new MapSqlParameterSource()
+                .addValue("id", call.id())
+                .addValue("lockedUntil", Timestamp.from(call.lockedUntil()))
+                .addValue("at", Timestamp.from(at));
+    }
+}
@@ -0,0 +1,7 @@
+package com.nocountry.api.repository;
+
+import com.nocountry.api.entity.IntegrationSkipRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface IntegrationSkipRollupRepository extends JpaRepository<IntegrationSkipRollup, IntegrationSkipRollup.Key>, IntegrationSkipRollupRepositoryCustom {
+}
@@ -0,0 +1,10 @@
+package com.nocountry.api.repository;
+
+import com.nocountry.api.entity.IntegrationSkipRollup;
+
+import java.util.Map;
+
+public interface IntegrationSkipRollupRepositoryCustom {
+
+    void addAll(Map<IntegrationSkipRollup.Key, Long> skippedByBucket);
+}
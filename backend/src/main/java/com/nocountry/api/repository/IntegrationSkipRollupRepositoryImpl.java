@@ -0,0 +1,68 @@
+package com.nocountry.api.repository;
+
+import com.nocountry.api.entity.IntegrationSkipRollup;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@Repository
+public class IntegrationSkipRollupRepositoryImpl implements IntegrationSkipRollupRepositoryCustom {
+
+    // Every instance adds its own counts to the shared bucket.
+    private static final String ADD_SQL = """
+            INSERT INTO integration_skip_rollup AS r (integration, bucket_start, skipped)
+            VALUES (:integration, :bucketStart, :skipped)
+            ON CONFLICT (integration, bucket_start) DO UPDATE
+            SET skipped = r.skipped + EXCLUDED.skipped
+            """;
+
+    private static final String INCREMENT_SQL = """
+            UPDATE integration_skip_rollup
+            SET skipped = skipped + :skipped
+            WHERE integration = :integration AND bucket_start = :bucketStart
+            """;
+
+    private static final String INSERT_SQL = """
+            INSERT INTO integration_skip_rollup (integration, bucket_start, skipped)
+            VALUES (:integration, :bucketStart, :skipped)
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final DatabaseDialect databaseDialect;
+
+    public IntegrationSkipRollupRepositoryImpl(NamedParameterJdbcTemplate jdbcTemplate, DatabaseDialect databaseDialect) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.databaseDialect = databaseDialect;
+    }
+
+    @Override
+    public void addAll(Map<IntegrationSkipRollup.Key, Long> skippedByBucket) {
+        if (skippedByBucket.isEmpty()) {
+            return;
+        }
+
+        List<SqlParameterSource> params = new ArrayList<>(skippedByBucket.size());
+        skippedByBucket.forEach((key, skipped) -> params.add(new MapSqlParameterSource()
+                .addValue("integration", key.getIntegration())
+                .addValue("bucketStart", Timestamp.from(key.getBucketStart()))
+                .addValue("skipped", skipped)));
+
+        if (databaseDialect.isPostgres()) {
+            jdbcTemplate.batchUpdate(ADD_SQL, params.toArray(SqlParameterSource[]::new));
+            return;
+        }
+
+        // Portable fallback for a single writer, e.g. H2 in tests.
+        for (SqlParameterSource param : params) {
+            if (jdbcTemplate.update(INCREMENT_SQL, param) == 0) {
+                jdbcTemplate.update(INSERT_SQL, param);
+            }
+        }
+    }
+}
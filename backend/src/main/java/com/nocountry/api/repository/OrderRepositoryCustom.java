@@ -2,7 +2,13 @@ package com.nocountry.api.repository;
 
 import com.nocountry.api.entity.OrderRecord;
 
+import java.util.UUID;
+
 public interface OrderRepositoryCustom {
 
-    OrderRecord upsert(OrderRecord candidate);
+    UpsertedOrder upsert(OrderRecord candidate);
+
+    boolean assignEventIdIfMissing(UUID orderId, UUID eventId);
+
+    void lockOrderKey(String key);
 }
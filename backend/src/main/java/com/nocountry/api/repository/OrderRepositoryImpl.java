@@ -4,7 +4,6 @@ import com.nocountry.api.entity.OrderRecord;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
-import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Repository;
 
 import java.sql.ResultSet;
@@ -17,157 +16,179 @@ import java.util.UUID;
 @Repository
 public class OrderRepositoryImpl implements OrderRepositoryCustom {
 
-    private static final String INSERT_SQL = """
-            INSERT INTO orders (id, event_id, stripe_session_id, payment_intent_id, amount, currency, status, business_status, created_at)
-            VALUES (:id, :eventId, :stripeSessionId, :paymentIntentId, :amount, :currency, :status, :businessStatus, :createdAt)
+    // The order matching the payment intent wins over the one matching the checkout session.
+    private static final String TARGET_MATCH = """
+            payment_intent_id = :paymentIntentId OR stripe_session_id = :stripeSessionId
+            ORDER BY CASE WHEN payment_intent_id = :paymentIntentId THEN 0 ELSE 1 END
+            LIMIT 1
             """;
 
-    private static final String UPDATE_BY_PAYMENT_INTENT_SQL = """
-            UPDATE orders
-            SET event_id = COALESCE(:eventId, orders.event_id),
+    // The session id is only replaced while it is still a placeholder (empty, or the payment intent id that
+    // payment_intent events use when they arrive before checkout.session.completed).
+    private static final String UPDATE_SET = """
+            SET event_id = COALESCE(o.event_id, :eventId),
                 stripe_session_id = CASE
-                    WHEN orders.stripe_session_id = :paymentIntentId
-                      OR orders.stripe_session_id IS NULL
-                      OR orders.stripe_session_id = ''
+                    WHEN o.stripe_session_id = :paymentIntentId
+                      OR o.stripe_session_id IS NULL
+                      OR o.stripe_session_id = ''
                     THEN :stripeSessionId
-                    ELSE orders.stripe_session_id
+                    ELSE o.stripe_session_id
                 END,
-                payment_intent_id = COALESCE(orders.payment_intent_id, :paymentIntentId),
+                payment_intent_id = COALESCE(o.payment_intent_id, :paymentIntentId),
                 amount = :amount,
                 currency = :currency,
                 status = :status,
                 business_status = :businessStatus
-            WHERE payment_intent_id = :paymentIntentId
             """;
 
-    private static final String UPDATE_BY_STRIPE_SESSION_SQL = """
-            UPDATE orders
-            SET event_id = COALESCE(:eventId, orders.event_id),
-                payment_intent_id = COALESCE(orders.payment_intent_id, :paymentIntentId),
-                amount = :amount,
-                currency = :currency,
-                status = :status,
-                business_status = :businessStatus
-            WHERE stripe_session_id = :stripeSessionId
+    private static final String ORDER_COLUMNS = """
+            id, event_id, stripe_session_id, payment_intent_id, amount, currency, status, business_status, created_at
             """;
 
+    // One statement on Postgres: lock the existing order, if any, and update it, otherwise insert. Data-modifying
+    // CTEs share one snapshot, so "target" still holds the previous status and event id. A parallel insert of
+    // the same order makes ON CONFLICT DO NOTHING return no row; the caller then runs the statement again.
+    private static final String UPSERT_RETURNING_SQL = """
+            WITH target AS (
+                SELECT id, status, event_id
+                FROM orders
+                WHERE %s
+                FOR UPDATE
+            ),
+            updated AS (
+                UPDATE orders o
+                %s
+                FROM target t
+                WHERE o.id = t.id
+                RETURNING o.id, o.event_id, o.stripe_session_id, o.payment_intent_id, o.amount, o.currency, o.status,
+                          o.business_status, o.created_at, t.status AS previous_status, t.event_id AS previous_event_id,
+                          FALSE AS inserted
+            ),
+            inserted AS (
+                INSERT INTO orders (%s)
+                SELECT CAST(:id AS UUID), CAST(:eventId AS UUID), CAST(:stripeSessionId AS VARCHAR),
+                       CAST(:paymentIntentId AS VARCHAR), CAST(:amount AS NUMERIC), CAST(:currency AS VARCHAR),
+                       CAST(:status AS VARCHAR), CAST(:businessStatus AS VARCHAR), CAST(:createdAt AS TIMESTAMP)
+                WHERE NOT EXISTS (SELECT 1 FROM target)
+                ON CONFLICT DO NOTHING
+                RETURNING id, event_id, stripe_session_id, payment_intent_id, amount, currency, status, business_status,
+                          created_at, CAST(NULL AS VARCHAR) AS previous_status, CAST(NULL AS UUID) AS previous_event_id,
+                          TRUE AS inserted
+            )
+            SELECT * FROM updated
+            UNION ALL
+            SELECT * FROM inserted
+            """.formatted(TARGET_MATCH, UPDATE_SET, ORDER_COLUMNS.strip());
+
+    private static final String FIND_TARGET_SQL = """
+            SELECT %s
+            FROM orders
+            WHERE %s
+            """.formatted(ORDER_COLUMNS.strip(), TARGET_MATCH);
+
+    private static final String UPDATE_BY_ID_SQL = """
+            UPDATE orders o
+            %s
+            WHERE o.id = :targetId
+            """.formatted(UPDATE_SET);
+
+    private static final String INSERT_SQL = """
+            INSERT INTO orders (%s)
+            VALUES (:id, :eventId, :stripeSessionId, :paymentIntentId, :amount, :currency, :status, :businessStatus, :createdAt)
+            ON CONFLICT DO NOTHING
+            """.formatted(ORDER_COLUMNS.strip());
+
     private static final String FIND_BY_ID_SQL = """
-            SELECT id, event_id, stripe_session_id, payment_intent_id, amount, currency, status, business_status, created_at
+            SELECT %s
             FROM orders
             WHERE id = :id
             LIMIT 1
-            """;
+            """.formatted(ORDER_COLUMNS.strip());
 
-    private static final String FIND_BY_PAYMENT_INTENT_SQL = """
-            SELECT id, event_id, stripe_session_id, payment_intent_id, amount, currency, status, business_status, created_at
-            FROM orders
-            WHERE payment_intent_id = :paymentIntentId
-            LIMIT 1
+    private static final String ASSIGN_EVENT_ID_SQL = """
+            UPDATE orders
+            SET event_id = :eventId
+            WHERE id = :id AND event_id IS NULL
             """;
 
-    private static final String FIND_BY_STRIPE_SESSION_SQL = """
-            SELECT id, event_id, stripe_session_id, payment_intent_id, amount, currency, status, business_status, created_at
-            FROM orders
-            WHERE stripe_session_id = :stripeSessionId
-            LIMIT 1
+    private static final String ADVISORY_LOCK_SQL = """
+            SELECT pg_advisory_xact_lock(hashtextextended(:key, 0))
             """;
 
+    private static final int UPSERT_ATTEMPTS = 2;
+
     private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final DatabaseDialect databaseDialect;
     private final RowMapper<OrderRecord> rowMapper = this::mapOrder;
 
-    public OrderRepositoryImpl(NamedParameterJdbcTemplate jdbcTemplate) {
+    public OrderRepositoryImpl(NamedParameterJdbcTemplate jdbcTemplate, DatabaseDialect databaseDialect) {
         this.jdbcTemplate = jdbcTemplate;
+        this.databaseDialect = databaseDialect;
     }
 
     @Override
-    public OrderRecord upsert(OrderRecord candidate) {
+    public UpsertedOrder upsert(OrderRecord candidate) {
         MapSqlParameterSource params = toParams(candidate);
-        DataIntegrityViolationException insertException = null;
-
-        if (hasText(candidate.getPaymentIntentId())) {
-            int updatedByPaymentIntent = jdbcTemplate.update(UPDATE_BY_PAYMENT_INTENT_SQL, params);
-            if (updatedByPaymentIntent > 0) {
-                OrderRecord byPaymentIntent = findByPaymentIntent(candidate.getPaymentIntentId());
-                if (byPaymentIntent != null) {
-                    return byPaymentIntent;
-                }
-            }
-        }
-
-        int updatedBySession = jdbcTemplate.update(UPDATE_BY_STRIPE_SESSION_SQL, params);
-        if (updatedBySession > 0) {
-            OrderRecord bySession = findByStripeSession(candidate.getStripeSessionId());
-            if (bySession != null) {
-                return bySession;
-            }
-        }
-
-        try {
-            int inserted = jdbcTemplate.update(INSERT_SQL, params);
-            if (inserted > 0) {
-                OrderRecord insertedRow = findById(candidate.getId());
-                if (insertedRow != null) {
-                    return insertedRow;
-                }
+        for (int attempt = 0; attempt < UPSERT_ATTEMPTS; attempt++) {
+            UpsertedOrder upserted = databaseDialect.isPostgres() ? upsertReturning(params) : upsertPortable(params);
+            if (upserted != null) {
+                return upserted;
             }
-        } catch (DataIntegrityViolationException ex) {
-            // Parallel webhook may insert first; fallback lookup below handles it.
-            // Preserve exception so callers can handle FK retries when fallback misses.
-            insertException = ex;
-        }
-
-        OrderRecord fallback = findExisting(candidate);
-        if (fallback != null) {
-            return fallback;
         }
-
-        if (insertException != null) {
-            throw insertException;
-        }
-
         throw new IllegalStateException("Unable to upsert order for stripeSessionId=" + candidate.getStripeSessionId());
     }
 
-    private OrderRecord findExisting(OrderRecord candidate) {
-        OrderRecord byId = findById(candidate.getId());
-        if (byId != null) {
-            return byId;
-        }
+    @Override
+    public boolean assignEventIdIfMissing(UUID orderId, UUID eventId) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("id", orderId)
+                .addValue("eventId", eventId);
+        return jdbcTemplate.update(ASSIGN_EVENT_ID_SQL, params) > 0;
+    }
 
-        if (hasText(candidate.getPaymentIntentId())) {
-            OrderRecord byPaymentIntent = findByPaymentIntent(candidate.getPaymentIntentId());
-            if (byPaymentIntent != null) {
-                return byPaymentIntent;
-            }
+    // Blocks until no other transaction holds the key; released when the current transaction ends. H2 has no
+    // advisory locks, and a single test instance is already covered by StripeOrderLock's in-process lock.
+    @Override
+    public void lockOrderKey(String key) {
+        if (!databaseDialect.isPostgres()) {
+            return;
         }
-
-        return findByStripeSession(candidate.getStripeSessionId());
+        jdbcTemplate.query(ADVISORY_LOCK_SQL, new MapSqlParameterSource().addValue("key", key), rs -> {
+        });
     }
 
-    private OrderRecord findById(UUID id) {
-        if (id == null) {
-            return null;
-        }
-        MapSqlParameterSource params = new MapSqlParameterSource().addValue("id", id);
-        List<OrderRecord> rows = jdbcTemplate.query(FIND_BY_ID_SQL, params, rowMapper);
+    private UpsertedOrder upsertReturning(MapSqlParameterSource params) {
+        List<UpsertedOrder> rows = jdbcTemplate.query(UPSERT_RETURNING_SQL, params, (rs, rowNum) -> new UpsertedOrder(
+                mapOrder(rs, rowNum),
+                rs.getString("previous_status"),
+                toUuid(rs.getString("previous_event_id")),
+                rs.getBoolean("inserted")
+        ));
         return rows.isEmpty() ? null : rows.get(0);
     }
 
-    private OrderRecord findByPaymentIntent(String paymentIntentId) {
-        if (!hasText(paymentIntentId)) {
-            return null;
+    // H2 has no data-modifying CTEs: the same lookup, update or insert, and read back as separate statements.
+    private UpsertedOrder upsertPortable(MapSqlParameterSource params) {
+        List<OrderRecord> targets = jdbcTemplate.query(FIND_TARGET_SQL, params, rowMapper);
+        if (!targets.isEmpty()) {
+            OrderRecord previous = targets.get(0);
+            MapSqlParameterSource updateParams = new MapSqlParameterSource(params.getValues())
+                    .addValue("targetId", previous.getId());
+            jdbcTemplate.update(UPDATE_BY_ID_SQL, updateParams);
+            OrderRecord updated = findById(previous.getId());
+            return updated == null ? null : new UpsertedOrder(updated, previous.getStatus(), previous.getEventId(), false);
         }
-        MapSqlParameterSource params = new MapSqlParameterSource().addValue("paymentIntentId", paymentIntentId);
-        List<OrderRecord> rows = jdbcTemplate.query(FIND_BY_PAYMENT_INTENT_SQL, params, rowMapper);
-        return rows.isEmpty() ? null : rows.get(0);
-    }
 
-    private OrderRecord findByStripeSession(String stripeSessionId) {
-        if (!hasText(stripeSessionId)) {
+        if (jdbcTemplate.update(INSERT_SQL, params) == 0) {
             return null;
         }
-        MapSqlParameterSource params = new MapSqlParameterSource().addValue("stripeSessionId", stripeSessionId);
-        List<OrderRecord> rows = jdbcTemplate.query(FIND_BY_STRIPE_SESSION_SQL, params, rowMapper);
+        OrderRecord inserted = findById((UUID) params.getValue("id"));
+        return inserted == null ? null : new UpsertedOrder(inserted, null, null, true);
+    }
+
+    private OrderRecord findById(UUID id) {
+        MapSqlParameterSource params = new MapSqlParameterSource().addValue("id", id);
+        List<OrderRecord> rows = jdbcTemplate.query(FIND_BY_ID_SQL, params, rowMapper);
         return rows.isEmpty() ? null : rows.get(0);
     }
 
@@ -206,8 +227,4 @@ public class OrderRepositoryImpl implements OrderRepositoryCustom {
     private Instant toInstant(ResultSet rs, String column) throws SQLException {
         return rs.getTimestamp(column).toInstant();
     }
-
-    private boolean hasText(String value) {
-        return value != null && !value.isBlank();
-    }
 }
@@ -0,0 +1,14 @@
+package com.nocountry.api.repository;
+
+import java.time.Instant;
+import java.util.UUID;
+
+// An integration_outbox row claimed by a drain pass; lockedUntil doubles as the claim token.
+public record PendingIntegrationCall(
+        UUID id,
+        String integration,
+        String payload,
+        int attempts,
+        Instant lockedUntil
+) {
+}
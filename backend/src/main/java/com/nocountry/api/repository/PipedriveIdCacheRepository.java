@@ -0,0 +1,7 @@
+package com.nocountry.api.repository;
+
+import com.nocountry.api.entity.PipedriveIdCacheEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface PipedriveIdCacheRepository extends JpaRepository<PipedriveIdCacheEntry, PipedriveIdCacheEntry.Key>, PipedriveIdCacheRepositoryCustom {
+}
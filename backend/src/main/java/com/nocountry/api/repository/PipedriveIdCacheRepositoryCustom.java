@@ -0,0 +1,19 @@
+package com.nocountry.api.repository;
+
+import com.nocountry.api.entity.PipedriveIdCacheEntry;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface PipedriveIdCacheRepositoryCustom {
+
+    PipedriveIdCacheEntry findMapping(String kind, String lookupKey);
+
+    List<PipedriveIdCacheEntry> findVerifiedSince(Instant since, int limit);
+
+    void upsertMapping(String kind, String lookupKey, long pipedriveId, Instant verifiedAt);
+
+    boolean deleteMapping(String kind, String lookupKey, long pipedriveId);
+
+    int deleteVerifiedBefore(Instant cutoff);
+}
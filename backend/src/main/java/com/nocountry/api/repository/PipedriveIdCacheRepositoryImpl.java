@@ -0,0 +1,109 @@
+package com.nocountry.api.repository;
+
+import com.nocountry.api.entity.PipedriveIdCacheEntry;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public class PipedriveIdCacheRepositoryImpl implements PipedriveIdCacheRepositoryCustom {
+
+    private static final String FIND_SQL = """
+            SELECT kind, lookup_key, pipedrive_id, verified_at
+            FROM pipedrive_id_cache
+            WHERE kind = :kind AND lookup_key = :lookupKey
+            """;
+
+    private static final String FIND_VERIFIED_SINCE_SQL = """
+            SELECT kind, lookup_key, pipedrive_id, verified_at
+            FROM pipedrive_id_cache
+            WHERE verified_at > :since
+            ORDER BY verified_at DESC
+            LIMIT :limit
+            """;
+
+    private static final String UPSERT_SQL = """
+            INSERT INTO pipedrive_id_cache (kind, lookup_key, pipedrive_id, verified_at)
+            VALUES (:kind, :lookupKey, :pipedriveId, :verifiedAt)
+            ON CONFLICT (kind, lookup_key) DO UPDATE
+            SET pipedrive_id = EXCLUDED.pipedrive_id, verified_at = EXCLUDED.verified_at
+            """;
+
+    private static final String MERGE_SQL = """
+            MERGE INTO pipedrive_id_cache (kind, lookup_key, pipedrive_id, verified_at)
+            KEY (kind, lookup_key)
+            VALUES (:kind, :lookupKey, :pipedriveId, :verifiedAt)
+            """;
+
+    // Only removes the id that turned out stale, not one another replica resolved in the meantime.
+    private static final String DELETE_SQL = """
+            DELETE FROM pipedrive_id_cache
+            WHERE kind = :kind AND lookup_key = :lookupKey AND pipedrive_id = :pipedriveId
+            """;
+
+    private static final String DELETE_VERIFIED_BEFORE_SQL = """
+            DELETE FROM pipedrive_id_cache
+            WHERE verified_at < :cutoff
+            """;
+
+    private static final RowMapper<PipedriveIdCacheEntry> ROW_MAPPER = (rs, rowNum) -> {
+        PipedriveIdCacheEntry entry = new PipedriveIdCacheEntry();
+        entry.setKind(rs.getString("kind"));
+        entry.setLookupKey(rs.getString("lookup_key"));
+        entry.setPipedriveId(rs.getLong("pipedrive_id"));
+        entry.setVerifiedAt(rs.getTimestamp("verified_at").toInstant());
+        return entry;
+    };
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final DatabaseDialect databaseDialect;
+
+    public PipedriveIdCacheRepositoryImpl(NamedParameterJdbcTemplate jdbcTemplate, DatabaseDialect databaseDialect) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.databaseDialect = databaseDialect;
+    }
+
+    @Override
+    public PipedriveIdCacheEntry findMapping(String kind, String lookupKey) {
+        List<PipedriveIdCacheEntry> rows = jdbcTemplate.query(FIND_SQL, new MapSqlParameterSource()
+                .addValue("kind", kind)
+                .addValue("lookupKey", lookupKey), ROW_MAPPER);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    @Override
+    public List<PipedriveIdCacheEntry> findVerifiedSince(Instant since, int limit) {
+        return jdbcTemplate.query(FIND_VERIFIED_SINCE_SQL, new MapSqlParameterSource()
+                .addValue("since", Timestamp.from(since))
+                .addValue("limit", limit), ROW_MAPPER);
+    }
+
+    @Override
+    public void upsertMapping(String kind, String lookupKey, long pipedriveId, Instant verifiedAt) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("kind", kind)
+                .addValue("lookupKey", lookupKey)
+                .addValue("pipedriveId", pipedriveId)
+                .addValue("verifiedAt", Timestamp.from(verifiedAt));
+        jdbcTemplate.update(databaseDialect.isPostgres() ? UPSERT_SQL : MERGE_SQL, params);
+    }
+
+    @Override
+    public boolean deleteMapping(String kind, String lookupKey, long pipedriveId) {
+        return jdbcTemplate.update(DELETE_SQL, new MapSqlParameterSource()
+                .addValue("kind", kind)
+                .addValue("lookupKey", lookupKey)
+                .addValue("pipedriveId", pipedriveId)) > 0;
+    }
+
+    @Override
+    public int deleteVerifiedBefore(Instant cutoff) {
+        return jdbcTemplate.update(DELETE_VERIFIED_BEFORE_SQL, new MapSqlParameterSource()
+                .addValue("cutoff", Timestamp.from(cutoff)));
+    }
+}
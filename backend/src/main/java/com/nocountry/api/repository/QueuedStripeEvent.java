@@ -0,0 +1,14 @@
+package com.nocountry.api.repository;
+
+import java.time.Instant;
+
+// A stripe_webhook_event row claimed by an inbox worker; lockedUntil doubles as the claim token.
+public record QueuedStripeEvent(
+        String stripeEventId,
+        String payload,
+        String userAgent,
+        String clientIp,
+        int attempts,
+        Instant lockedUntil
+) {
+}
@@ -0,0 +1,76 @@
+package com.nocountry.api.repository;
+
+import com.nocountry.api.config.AppProperties;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public class RateLimitBucketRepository {
+
+    // Refills the shared bucket from the elapsed database time, then grants up to :requested milli-tokens.
+    // SET expressions all read the old row, and last_grant carries the grant back through RETURNING.
+    private static final String ACQUIRE_SQL = """
+            INSERT INTO rate_limit_bucket AS b (key_high, key_low, milli_tokens, last_grant, refilled_at)
+            VALUES (:keyHigh, :keyLow, :capacityMilli - :requested, :requested, LOCALTIMESTAMP)
+            ON CONFLICT (key_high, key_low) DO UPDATE
+            SET last_grant = LEAST(:requested, LEAST(:capacityMilli, b.milli_tokens
+                    + CAST(EXTRACT(EPOCH FROM (LOCALTIMESTAMP - b.refilled_at)) * 1000 * :refillPerSecond AS BIGINT))),
+                milli_tokens = LEAST(:capacityMilli, b.milli_tokens
+                    + CAST(EXTRACT(EPOCH FROM (LOCALTIMESTAMP - b.refilled_at)) * 1000 * :refillPerSecond AS BIGINT))
+                    - LEAST(:requested, LEAST(:capacityMilli, b.milli_tokens
+                    + CAST(EXTRACT(EPOCH FROM (LOCALTIMESTAMP - b.refilled_at)) * 1000 * :refillPerSecond AS BIGINT))),
+                refilled_at = LOCALTIMESTAMP
+            RETURNING last_grant
+            """;
+
+    private static final String PURGE_SQL = """
+            DELETE FROM rate_limit_bucket WHERE refilled_at < LOCALTIMESTAMP - (:idleSeconds * INTERVAL '1 second')
+            """;
+
+    // Hikari resets connection timeouts below 250 ms to its 30 s default.
+    private static final long MIN_CONNECTION_TIMEOUT_MS = 250;
+
+    private final HikariDataSource dataSource;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    // Own small pool and template so neither a stalled database nor an exhausted application pool holds request
+    // threads: both fail the lease fast and the limiter falls back to local buckets. The pool only opens
+    // connections once the shared limiter is used.
+    public RateLimitBucketRepository(DataSourceProperties dataSourceProperties, AppProperties appProperties) {
+        AppProperties.Tracking config = appProperties.getTracking();
+        this.dataSource = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("rate-limit");
+        dataSource.setMaximumPoolSize(Math.max(1, config.getRateLimitSharedPoolSize()));
+        dataSource.setMinimumIdle(0);
+        dataSource.setConnectionTimeout(Math.max(MIN_CONNECTION_TIMEOUT_MS, config.getRateLimitSharedSlowMs()));
+
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        template.setQueryTimeout(1);
+        this.jdbcTemplate = new NamedParameterJdbcTemplate(template);
+    }
+
+    @PreDestroy
+    void close() {
+        dataSource.close();
+    }
+
+    public long acquire(long keyHigh, long keyLow, long requested, long capacityMilli, int refillPerSecond) {
+        Long granted = jdbcTemplate.queryForObject(ACQUIRE_SQL, new MapSqlParameterSource()
+                .addValue("keyHigh", keyHigh)
+                .addValue("keyLow", keyLow)
+                .addValue("requested", requested)
+                .addValue("capacityMilli", capacityMilli)
+                .addValue("refillPerSecond", refillPerSecond), Long.class);
+        return granted == null ? 0 : granted;
+    }
+
+    // Rows idle long enough to have refilled completely are equivalent to missing rows.
+    public int purgeIdleLongerThan(long idleSeconds) {
+        return jdbcTemplate.update(PURGE_SQL, new MapSqlParameterSource("idleSeconds", idleSeconds));
+    }
+}
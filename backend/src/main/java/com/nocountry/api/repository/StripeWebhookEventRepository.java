@@ -3,5 +3,5 @@ package com.nocountry.api.repository;
 import com.nocountry.api.entity.StripeWebhookEvent;
 import org.springframework.data.jpa.repository.JpaRepository;
 
-public interface StripeWebhookEventRepository extends JpaRepository<StripeWebhookEvent, String> {
+public interface StripeWebhookEventRepository extends JpaRepository<StripeWebhookEvent, String>, StripeWebhookEventRepositoryCustom {
 }
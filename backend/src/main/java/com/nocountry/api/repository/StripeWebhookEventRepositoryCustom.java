@@ -0,0 +1,24 @@
+package com.nocountry.api.repository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+public interface StripeWebhookEventRepositoryCustom {
+
+    // Stores a verified payload for the inbox workers. False when the event is already queued or processed.
+    boolean enqueue(String stripeEventId, String payload, String orderingKey, String userAgent, String clientIp, Instant receivedAt);
+
+    List<QueuedStripeEvent> claim(int batchSize, Instant now, Instant lockedUntil);
+
+    boolean markProcessed(QueuedStripeEvent event, UUID eventId, Instant processedAt);
+
+    boolean markRetry(QueuedStripeEvent event, String error, Instant nextAttemptAt);
+
+    boolean markFailed(QueuedStripeEvent event, String error, Instant failedAt);
+
+    InboxBacklog inboxBacklog();
+
+    record InboxBacklog(long pending, Instant oldestReceivedAt) {
+    }
+}
@@ -0,0 +1,197 @@
+package com.nocountry.api.repository;
+
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public class StripeWebhookEventRepositoryImpl implements StripeWebhookEventRepositoryCustom {
+
+    private static final String INSERT_QUEUED_SQL = """
+            INSERT INTO stripe_webhook_event (stripe_event_id, received_at, status, payload, ordering_key,
+                                              user_agent, client_ip, attempts, next_attempt_at)
+            VALUES (:stripeEventId, :receivedAt, 'QUEUED', :payload, :orderingKey,
+                    :userAgent, :clientIp, 0, :receivedAt)
+            ON CONFLICT DO NOTHING
+            """;
+
+    // Redeliveries of events that were never queued (synchronous mode) or that exhausted their attempts get a fresh run.
+    private static final String REQUEUE_SQL = """
+            UPDATE stripe_webhook_event
+            SET status = 'QUEUED', payload = :payload, ordering_key = :orderingKey, user_agent = :userAgent,
+                client_ip = :clientIp, attempts = 0, next_attempt_at = :receivedAt, locked_until = NULL, error = NULL
+            WHERE stripe_event_id = :stripeEventId
+              AND status IN ('RECEIVED', 'FAILED')
+            """;
+
+    // A row is only claimable once no earlier pending row shares its ordering key (the payment intent),
+    // so events of one payment are handled in arrival order even with several workers.
+    private static final String CLAIMABLE_WHERE = """
+            p.status IN ('QUEUED', 'RETRY')
+              AND (p.next_attempt_at IS NULL OR p.next_attempt_at <= :now)
+              AND (p.locked_until IS NULL OR p.locked_until <= :now)
+              AND NOT EXISTS (
+                  SELECT 1 FROM stripe_webhook_event b
+                  WHERE b.ordering_key = p.ordering_key
+                    AND b.status IN ('QUEUED', 'RETRY')
+                    AND (b.received_at < p.received_at
+                         OR (b.received_at = p.received_at AND b.stripe_event_id < p.stripe_event_id))
+              )
+            """;
+
+    private static final String CLAIM_SKIP_LOCKED_SQL = """
+            UPDATE stripe_webhook_event e
+            SET locked_until = :lockedUntil, attempts = e.attempts + 1
+            FROM (
+                SELECT p.stripe_event_id
+                FROM stripe_webhook_event p
+                WHERE %s
+                ORDER BY p.received_at, p.stripe_event_id
+                LIMIT :batchSize
+                FOR UPDATE SKIP LOCKED
+            ) c
+            WHERE e.stripe_event_id = c.stripe_event_id
+            RETURNING e.stripe_event_id, e.payload, e.user_agent, e.client_ip, e.attempts
+            """.formatted(CLAIMABLE_WHERE);
+
+    private static final String CLAIM_CANDIDATES_SQL = """
+            SELECT p.stripe_event_id
+            FROM stripe_webhook_event p
+            WHERE %s
+            ORDER BY p.received_at, p.stripe_event_id
+            LIMIT :batchSize
+            """.formatted(CLAIMABLE_WHERE);
+
+    // Re-checks the whole claimable predicate, ordering included: an earlier event of the same payment may
+    // have been requeued since the candidates were read.
+    private static final String CLAIM_ONE_SQL = """
+            UPDATE stripe_webhook_event p
+            SET locked_until = :lockedUntil, attempts = p.attempts + 1
+            WHERE p.stripe_event_id = :stripeEventId
+              AND %s
+            """.formatted(CLAIMABLE_WHERE);
+
+    private static final String LOAD_CLAIMED_SQL = """
+            SELECT stripe_event_id, payload, user_agent, client_ip, attempts
+            FROM stripe_webhook_event
+            WHERE stripe_event_id = :stripeEventId
+            """;
+
+    // Every outcome is fenced on the claim token so a worker whose lock expired cannot overwrite a newer claim.
+    private static final String MARK_PROCESSED_SQL = """
+            UPDATE stripe_webhook_event
+            SET status = 'PROCESSED', processed_at = :at, event_id = COALESCE(:eventId, event_id),
+                error = NULL, locked_until = NULL, payload = NULL
+            WHERE stripe_event_id = :stripeEventId AND locked_until = :lockedUntil
+            """;
+
+    private static final String MARK_RETRY_SQL = """
+            UPDATE stripe_webhook_event
+            SET status = 'RETRY', next_attempt_at = :at, error = :error, locked_until = NULL
+            WHERE stripe_event_id = :stripeEventId AND locked_until = :lockedUntil
+            """;
+
+    private static final String MARK_FAILED_SQL = """
+            UPDATE stripe_webhook_event
+            SET status = 'FAILED', processed_at = :at, error = :error, locked_until = NULL
+            WHERE stripe_event_id = :stripeEventId AND locked_until = :lockedUntil
+            """;
+
+    private static final String BACKLOG_SQL = """
+            SELECT COUNT(*) AS pending, MIN(received_at) AS oldest
+            FROM stripe_webhook_event
+            WHERE status IN ('QUEUED', 'RETRY')
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final DatabaseDialect databaseDialect;
+
+    public StripeWebhookEventRepositoryImpl(NamedParameterJdbcTemplate jdbcTemplate, DatabaseDialect databaseDialect) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.databaseDialect = databaseDialect;
+    }
+
+    @Override
+    public boolean enqueue(String stripeEventId, String payload, String orderingKey, String userAgent, String clientIp, Instant receivedAt) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("stripeEventId", stripeEventId)
+                .addValue("payload", payload)
+                .addValue("orderingKey", orderingKey)
+                .addValue("userAgent", userAgent)
+                .addValue("clientIp", clientIp)
+                .addValue("receivedAt", Timestamp.from(receivedAt));
+        return jdbcTemplate.update(INSERT_QUEUED_SQL, params) > 0
+                || jdbcTemplate.update(REQUEUE_SQL, params) > 0;
+    }
+
+    @Override
+    public List<QueuedStripeEvent> claim(int batchSize, Instant now, Instant lockedUntil) {
+        // Truncated so the token survives the round trip through a TIMESTAMP column unchanged.
+        Instant token = lockedUntil.truncatedTo(ChronoUnit.MILLIS);
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("batchSize", batchSize)
+                .addValue("now", Timestamp.from(now))
+                .addValue("lockedUntil", Timestamp.from(token));
+        RowMapper<QueuedStripeEvent> mapper = (rs, rowNum) -> new QueuedStripeEvent(
+                rs.getString("stripe_event_id"),
+                rs.getString("payload"),
+                rs.getString("user_agent"),
+                rs.getString("client_ip"),
+                rs.getInt("attempts"),
+                token
+        );
+
+        if (databaseDialect.isPostgres()) {
+            return jdbcTemplate.query(CLAIM_SKIP_LOCKED_SQL, params, mapper);
+        }
+
+        // Portable fallback: pick candidates, then claim each one with a conditional update so concurrent
+        // workers never both win the same row.
+        List<QueuedStripeEvent> claimed = new ArrayList<>();
+        for (String stripeEventId : jdbcTemplate.queryForList(CLAIM_CANDIDATES_SQL, params, String.class)) {
+            params.addValue("stripeEventId", stripeEventId);
+            if (jdbcTemplate.update(CLAIM_ONE_SQL, params) > 0) {
+                claimed.addAll(jdbcTemplate.query(LOAD_CLAIMED_SQL, params, mapper));
+            }
+        }
+        return claimed;
+    }
+
+    @Override
+    public boolean markProcessed(QueuedStripeEvent event, UUID eventId, Instant processedAt) {
+        return jdbcTemplate.update(MARK_PROCESSED_SQL, outcomeParams(event, processedAt).addValue("eventId", eventId)) > 0;
+    }
+
+    @Override
+    public boolean markRetry(QueuedStripeEvent event, String error, Instant nextAttemptAt) {
+        return jdbcTemplate.update(MARK_RETRY_SQL, outcomeParams(event, nextAttemptAt).addValue("error", error)) > 0;
+    }
+
+    @Override
+    public boolean markFailed(QueuedStripeEvent event, String error, Instant failedAt) {
+        return jdbcTemplate.update(MARK_FAILED_SQL, outcomeParams(event, failedAt).addValue("error", error)) > 0;
+    }
+
+    @Override
+    public InboxBacklog inboxBacklog() {
+        return jdbcTemplate.queryForObject(BACKLOG_SQL, new MapSqlParameterSource(), (rs, rowNum) -> {
+            Timestamp oldest = rs.getTimestamp("oldest");
+            return new InboxBacklog(rs.getLong("pending"), oldest == null ? null : oldest.toInstant());
+        });
+    }
+
+    private MapSqlParameterSource outcomeParams(QueuedStripeEvent event, Instant at) {
+        return new MapSqlParameterSource()
+                .addValue("stripeEventId", event.stripeEventId())
+                .addValue("lockedUntil", Timestamp.from(event.lockedUntil()))
+                .addValue("at", Timestamp.from(at));
+    }
+}
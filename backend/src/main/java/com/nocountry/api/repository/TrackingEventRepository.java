@@ -5,5 +5,5 @@ import org.springframework.data.jpa.repository.JpaRepository;
 
 import java.util.UUID;
 
-public interface TrackingEventRepository extends JpaRepository<TrackingEvent, UUID> {
+public interface TrackingEventRepository extends JpaRepository<TrackingEvent, UUID>, TrackingEventRepositoryCustom {
 }
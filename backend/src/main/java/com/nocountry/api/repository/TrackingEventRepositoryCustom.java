@@ -0,0 +1,17 @@
+package com.nocountry.api.repository;
+
+import com.nocountry.api.entity.TrackingEvent;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+public interface TrackingEventRepositoryCustom {
+
+    boolean insertIfAbsent(TrackingEvent event);
+
+    int insertAllIgnoringDuplicates(List<TrackingEvent> events);
+
+    Set<UUID> findExistingIds(Collection<UUID> ids);
+}
@@ -0,0 +1,74 @@
+package com.nocountry.api.repository;
+
+import com.nocountry.api.entity.TrackingEvent;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+@Repository
+public class TrackingEventRepositoryImpl implements TrackingEventRepositoryCustom {
+
+    private static final String INSERT_IGNORE_SQL = """
+            INSERT INTO tracking_event (id, event_id, event_type, created_at, currency, value, payload_json)
+            VALUES (:id, :eventId, :eventType, :createdAt, :currency, :value, :payloadJson)
+            ON CONFLICT DO NOTHING
+            """;
+
+    private static final String EXISTING_IDS_SQL = """
+            SELECT id FROM tracking_event WHERE id IN (:ids)
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public TrackingEventRepositoryImpl(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public boolean insertIfAbsent(TrackingEvent event) {
+        return jdbcTemplate.update(INSERT_IGNORE_SQL, toParams(event)) > 0;
+    }
+
+    @Override
+    public int insertAllIgnoringDuplicates(List<TrackingEvent> events) {
+        if (events.isEmpty()) {
+            return 0;
+        }
+
+        SqlParameterSource[] params = events.stream()
+                .map(this::toParams)
+                .toArray(SqlParameterSource[]::new);
+        int inserted = 0;
+        for (int count : jdbcTemplate.batchUpdate(INSERT_IGNORE_SQL, params)) {
+            inserted += Math.max(count, 0);
+        }
+        return inserted;
+    }
+
+    @Override
+    public Set<UUID> findExistingIds(Collection<UUID> ids) {
+        if (ids.isEmpty()) {
+            return Set.of();
+        }
+        return new HashSet<>(jdbcTemplate.queryForList(EXISTING_IDS_SQL, new MapSqlParameterSource("ids", ids), UUID.class));
+    }
+
+    private MapSqlParameterSource toParams(TrackingEvent event) {
+        return new MapSqlParameterSource()
+                .addValue("id", event.getId())
+                .addValue("eventId", event.getEventId())
+                .addValue("eventType", event.getEventType())
+                .addValue("createdAt", event.getCreatedAt() == null ? null : Timestamp.from(event.getCreatedAt()))
+                .addValue("currency", event.getCurrency())
+                .addValue("value", event.getValue())
+                .addValue("payloadJson", event.getPayloadJson());
+    }
+}
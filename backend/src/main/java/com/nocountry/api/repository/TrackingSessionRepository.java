@@ -5,5 +5,5 @@ import org.springframework.data.jpa.repository.JpaRepository;
 
 import java.util.UUID;
 
-public interface TrackingSessionRepository extends JpaRepository<TrackingSession, UUID> {
+public interface TrackingSessionRepository extends JpaRepository<TrackingSession, UUID>, TrackingSessionRepositoryCustom {
 }
@@ -0,0 +1,17 @@
+package com.nocountry.api.repository;
+
+import com.nocountry.api.entity.TrackingSession;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+public interface TrackingSessionRepositoryCustom {
+
+    void upsert(TrackingSession session);
+
+    void upsertAll(List<TrackingSession> sessions);
+
+    void touchLastSeen(Map<UUID, Instant> lastSeenByEventId);
+}
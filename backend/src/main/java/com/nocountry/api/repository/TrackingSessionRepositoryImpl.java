@@ -0,0 +1,200 @@
+package com.nocountry.api.repository;
+
+import com.nocountry.api.entity.TrackingSession;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.UUID;
+
+@Repository
+public class TrackingSessionRepositoryImpl implements TrackingSessionRepositoryCustom {
+
+    // First-touch semantics: a stored value is only replaced while it is still blank. Existing rows are only
+    // rewritten when at least one blank column gets filled; last_seen_at alone goes through touchLastSeen.
+    private static final String UPSERT_SQL = """
+            INSERT INTO tracking_session (event_id, created_at, last_seen_at, utm_source, utm_medium, utm_campaign,
+                                          utm_term, utm_content, gclid, fbclid, landing_path, user_agent, ip_hash)
+            VALUES (:eventId, :createdAt, :lastSeenAt, :utmSource, :utmMedium, :utmCampaign,
+                    :utmTerm, :utmContent, :gclid, :fbclid, :landingPath, :userAgent, :ipHash)
+            ON CONFLICT (event_id) DO UPDATE
+            SET utm_source = CASE WHEN tracking_session.utm_source IS NULL OR TRIM(tracking_session.utm_source) = '' THEN EXCLUDED.utm_source ELSE tracking_session.utm_source END,
+                utm_medium = CASE WHEN tracking_session.utm_medium IS NULL OR TRIM(tracking_session.utm_medium) = '' THEN EXCLUDED.utm_medium ELSE tracking_session.utm_medium END,
+                utm_campaign = CASE WHEN tracking_session.utm_campaign IS NULL OR TRIM(tracking_session.utm_campaign) = '' THEN EXCLUDED.utm_campaign ELSE tracking_session.utm_campaign END,
+                utm_term = CASE WHEN tracking_session.utm_term IS NULL OR TRIM(tracking_session.utm_term) = '' THEN EXCLUDED.utm_term ELSE tracking_session.utm_term END,
+                utm_content = CASE WHEN tracking_session.utm_content IS NULL OR TRIM(tracking_session.utm_content) = '' THEN EXCLUDED.utm_content ELSE tracking_session.utm_content END,
+                gclid = CASE WHEN tracking_session.gclid IS NULL OR TRIM(tracking_session.gclid) = '' THEN EXCLUDED.gclid ELSE tracking_session.gclid END,
+                fbclid = CASE WHEN tracking_session.fbclid IS NULL OR TRIM(tracking_session.fbclid) = '' THEN EXCLUDED.fbclid ELSE tracking_session.fbclid END,
+                landing_path = CASE WHEN tracking_session.landing_path IS NULL OR TRIM(tracking_session.landing_path) = '' THEN EXCLUDED.landing_path ELSE tracking_session.landing_path END,
+                user_agent = CASE WHEN tracking_session.user_agent IS NULL OR TRIM(tracking_session.user_agent) = '' THEN EXCLUDED.user_agent ELSE tracking_session.user_agent END,
+                ip_hash = CASE WHEN tracking_session.ip_hash IS NULL OR TRIM(tracking_session.ip_hash) = '' THEN EXCLUDED.ip_hash ELSE tracking_session.ip_hash END,
+                last_seen_at = GREATEST(tracking_session.last_seen_at, EXCLUDED.last_seen_at)
+            WHERE ((tracking_session.utm_source IS NULL OR TRIM(tracking_session.utm_source) = '') AND TRIM(EXCLUDED.utm_source) <> '')
+               OR ((tracking_session.utm_medium IS NULL OR TRIM(tracking_session.utm_medium) = '') AND TRIM(EXCLUDED.utm_medium) <> '')
+               OR ((tracking_session.utm_campaign IS NULL OR TRIM(tracking_session.utm_campaign) = '') AND TRIM(EXCLUDED.utm_campaign) <> '')
+               OR ((tracking_session.utm_term IS NULL OR TRIM(tracking_session.utm_term) = '') AND TRIM(EXCLUDED.utm_term) <> '')
+               OR ((tracking_session.utm_content IS NULL OR TRIM(tracking_session.utm_content) = '') AND TRIM(EXCLUDED.utm_content) <> '')
+               OR ((tracking_session.gclid IS NULL OR TRIM(tracking_session.gclid) = '') AND TRIM(EXCLUDED.gclid) <> '')
+               OR ((tracking_session.fbclid IS NULL OR TRIM(tracking_session.fbclid) = '') AND TRIM(EXCLUDED.fbclid) <> '')
+               OR ((tracking_session.landing_path IS NULL OR TRIM(tracking_session.landing_path) = '') AND TRIM(EXCLUDED.landing_path) <> '')
+               OR ((tracking_session.user_agent IS NULL OR TRIM(tracking_session.user_agent) = '') AND TRIM(EXCLUDED.user_agent) <> '')
+               OR ((tracking_session.ip_hash IS NULL OR TRIM(tracking_session.ip_hash) = '') AND TRIM(EXCLUDED.ip_hash) <> '')
+            """;
+
+    // Portable two-statement form of UPSERT_SQL for databases without ON CONFLICT ... DO UPDATE.
+    private static final String INSERT_IGNORE_SQL = """
+            INSERT INTO tracking_session (event_id, created_at, last_seen_at, utm_source, utm_medium, utm_campaign,
+                                          utm_term, utm_content, gclid, fbclid, landing_path, user_agent, ip_hash)
+            VALUES (:eventId, :createdAt, :lastSeenAt, :utmSource, :utmMedium, :utmCampaign,
+                    :utmTerm, :utmContent, :gclid, :fbclid, :landingPath, :userAgent, :ipHash)
+            ON CONFLICT DO NOTHING
+            """;
+
+    private static final String MERGE_FIRST_TOUCH_SQL = """
+            UPDATE tracking_session
+            SET utm_source = CASE WHEN utm_source IS NULL OR TRIM(utm_source) = '' THEN :utmSource ELSE utm_source END,
+                utm_medium = CASE WHEN utm_medium IS NULL OR TRIM(utm_medium) = '' THEN :utmMedium ELSE utm_medium END,
+                utm_campaign = CASE WHEN utm_campaign IS NULL OR TRIM(utm_campaign) = '' THEN :utmCampaign ELSE utm_campaign END,
+                utm_term = CASE WHEN utm_term IS NULL OR TRIM(utm_term) = '' THEN :utmTerm ELSE utm_term END,
+                utm_content = CASE WHEN utm_content IS NULL OR TRIM(utm_content) = '' THEN :utmContent ELSE utm_content END,
+                gclid = CASE WHEN gclid IS NULL OR TRIM(gclid) = '' THEN :gclid ELSE gclid END,
+                fbclid = CASE WHEN fbclid IS NULL OR TRIM(fbclid) = '' THEN :fbclid ELSE fbclid END,
+                landing_path = CASE WHEN landing_path IS NULL OR TRIM(landing_path) = '' THEN :landingPath ELSE landing_path END,
+                user_agent = CASE WHEN user_agent IS NULL OR TRIM(user_agent) = '' THEN :userAgent ELSE user_agent END,
+                ip_hash = CASE WHEN ip_hash IS NULL OR TRIM(ip_hash) = '' THEN :ipHash ELSE ip_hash END,
+                last_seen_at = GREATEST(last_seen_at, :lastSeenAt)
+            WHERE event_id = :eventId
+              AND (((utm_source IS NULL OR TRIM(utm_source) = '') AND TRIM(CAST(:utmSource AS VARCHAR)) <> '')
+                OR ((utm_medium IS NULL OR TRIM(utm_medium) = '') AND TRIM(CAST(:utmMedium AS VARCHAR)) <> '')
+                OR ((utm_campaign IS NULL OR TRIM(utm_campaign) = '') AND TRIM(CAST(:utmCampaign AS VARCHAR)) <> '')
+                OR ((utm_term IS NULL OR TRIM(utm_term) = '') AND TRIM(CAST(:utmTerm AS VARCHAR)) <> '')
+                OR ((utm_content IS NULL OR TRIM(utm_content) = '') AND TRIM(CAST(:utmContent AS VARCHAR)) <> '')
+                OR ((gclid IS NULL OR TRIM(gclid) = '') AND TRIM(CAST(:gclid AS VARCHAR)) <> '')
+                OR ((fbclid IS NULL OR TRIM(fbclid) = '') AND TRIM(CAST(:fbclid AS VARCHAR)) <> '')
+                OR ((landing_path IS NULL OR TRIM(landing_path) = '') AND TRIM(CAST(:landingPath AS VARCHAR)) <> '')
+                OR ((user_agent IS NULL OR TRIM(user_agent) = '') AND TRIM(CAST(:userAgent AS VARCHAR)) <> '')
+                OR ((ip_hash IS NULL OR TRIM(ip_hash) = '') AND TRIM(CAST(:ipHash AS VARCHAR)) <> ''))
+            """;
+
+    private static final String TOUCH_LAST_SEEN_SQL = """
+            UPDATE tracking_session
+            SET last_seen_at = :lastSeenAt
+            WHERE event_id = :eventId AND last_seen_at < :lastSeenAt
+            """;
+
+    private static final String TOUCH_LAST_SEEN_VALUES_SQL = """
+            UPDATE tracking_session s
+            SET last_seen_at = v.last_seen_at
+            FROM (VALUES %s) AS v(event_id, last_seen_at)
+            WHERE s.event_id = v.event_id AND s.last_seen_at < v.last_seen_at
+            """;
+
+    private static final int TOUCH_CHUNK_SIZE = 500;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final DatabaseDialect databaseDialect;
+
+    public TrackingSessionRepositoryImpl(NamedParameterJdbcTemplate jdbcTemplate, DatabaseDialect databaseDialect) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.databaseDialect = databaseDialect;
+    }
+
+    @Override
+    public void upsert(TrackingSession session) {
+        upsertAll(List.of(session));
+    }
+
+    @Override
+    public void upsertAll(List<TrackingSession> sessions) {
+        if (sessions.isEmpty()) {
+            return;
+        }
+
+        SqlParameterSource[] params = sessions.stream()
+                .map(this::toParams)
+                .toArray(SqlParameterSource[]::new);
+        if (databaseDialect.isPostgres()) {
+            if (params.length == 1) {
+                jdbcTemplate.update(UPSERT_SQL, params[0]);
+            } else {
+                jdbcTemplate.batchUpdate(UPSERT_SQL, params);
+            }
+            return;
+        }
+
+        int[] inserted = jdbcTemplate.batchUpdate(INSERT_IGNORE_SQL, params);
+
+        // Rows the insert skipped already exist; only those need the first-touch merge.
+        List<SqlParameterSource> existing = new ArrayList<>();
+        for (int i = 0; i < params.length; i++) {
+            if (inserted[i] == 0 || inserted[i] == Statement.SUCCESS_NO_INFO) {
+                existing.add(params[i]);
+            }
+        }
+        if (!existing.isEmpty()) {
+            jdbcTemplate.batchUpdate(MERGE_FIRST_TOUCH_SQL, existing.toArray(SqlParameterSource[]::new));
+        }
+    }
+
+    @Override
+    public void touchLastSeen(Map<UUID, Instant> lastSeenByEventId) {
+        if (lastSeenByEventId.isEmpty()) {
+            return;
+        }
+
+        // Sorted so concurrent flushes from several instances lock rows in the same order.
+        List<Map.Entry<UUID, Instant>> entries = lastSeenByEventId.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .toList();
+        if (!databaseDialect.isPostgres()) {
+            SqlParameterSource[] params = entries.stream()
+                    .map(entry -> new MapSqlParameterSource()
+                            .addValue("eventId", entry.getKey())
+                            .addValue("lastSeenAt", toTimestamp(entry.getValue())))
+                    .toArray(SqlParameterSource[]::new);
+            jdbcTemplate.batchUpdate(TOUCH_LAST_SEEN_SQL, params);
+            return;
+        }
+
+        for (int from = 0; from < entries.size(); from += TOUCH_CHUNK_SIZE) {
+            List<Map.Entry<UUID, Instant>> chunk = entries.subList(from, Math.min(entries.size(), from + TOUCH_CHUNK_SIZE));
+            StringJoiner values = new StringJoiner(", ");
+            Object[] args = new Object[chunk.size() * 2];
+            for (int i = 0; i < chunk.size(); i++) {
+                values.add("(CAST(? AS uuid), CAST(? AS timestamp))");
+                args[i * 2] = chunk.get(i).getKey();
+                args[i * 2 + 1] = toTimestamp(chunk.get(i).getValue());
+            }
+            jdbcTemplate.getJdbcOperations().update(TOUCH_LAST_SEEN_VALUES_SQL.formatted(values), args);
+        }
+    }
+
+    private MapSqlParameterSource toParams(TrackingSession session) {
+        return new MapSqlParameterSource()
+                .addValue("eventId", session.getEventId())
+                .addValue("createdAt", toTimestamp(session.getCreatedAt()))
+                .addValue("lastSeenAt", toTimestamp(session.getLastSeenAt()))
+                .addValue("utmSource", session.getUtmSource())
+                .addValue("utmMedium", session.getUtmMedium())
+                .addValue("utmCampaign", session.getUtmCampaign())
+                .addValue("utmTerm", session.getUtmTerm())
+                .addValue("utmContent", session.getUtmContent())
+                .addValue("gclid", session.getGclid())
+                .addValue("fbclid", session.getFbclid())
+                .addValue("landingPath", session.getLandingPath())
+                .addValue("userAgent", session.getUserAgent())
+                .addValue("ipHash", session.getIpHash());
+    }
+
+    private Timestamp toTimestamp(Instant value) {
+        return value == null ? null : Timestamp.from(value);
+    }
+}
@@ -0,0 +1,10 @@
+package com.nocountry.api.repository;
+
+import com.nocountry.api.entity.OrderRecord;
+
+import java.util.UUID;
+
+// The order as written, plus what it looked like before: previousStatus and previousEventId are null when the
+// row was inserted.
+public record UpsertedOrder(OrderRecord order, String previousStatus, UUID previousEventId, boolean inserted) {
+}
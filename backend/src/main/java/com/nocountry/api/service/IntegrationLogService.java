@@ -2,37 +2,98 @@ package com.nocountry.api.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.nocountry.api.config.AppProperties;
 import com.nocountry.api.entity.IntegrationLog;
+import com.nocountry.api.entity.IntegrationSkipRollup;
 import com.nocountry.api.repository.IntegrationLogRepository;
-import jakarta.transaction.Transactional;
+import com.nocountry.api.repository.IntegrationSkipRollupRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+// Callers only enqueue: rows are serialized and written by a background writer in multi-row inserts, so
+// logging never needs a second database connection or JSON work on the integration thread. When the buffer
+// is full new rows are dropped and counted rather than blocking the caller.
+// With the skipped rollup on, SKIPPED outcomes become per-minute counters in integration_skip_rollup; only the
+// first skip of each reference keeps a full row.
 @Service
 public class IntegrationLogService {
 
     private static final Logger log = LoggerFactory.getLogger(IntegrationLogService.class);
+    private static final long SHUTDOWN_TIMEOUT_MS = 10_000;
+    private static final String SKIPPED = "SKIPPED";
+    private static final int SKIPPED_REFERENCES_MAX_SIZE = 100_000;
+    private static final Duration SKIPPED_REFERENCES_TTL = Duration.ofHours(1);
 
     private final IntegrationLogRepository integrationLogRepository;
+    private final IntegrationSkipRollupRepository integrationSkipRollupRepository;
     private final ObjectMapper objectMapper;
     private final Clock clock;
+    private final AppProperties.Integrations config;
+    private final ConcurrentLinkedQueue<PendingLog> buffer = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger buffered = new AtomicInteger();
+    private final Counter dropped;
+    private final Counter failed;
+    private final MeterRegistry meterRegistry;
+    private final Map<IntegrationSkipRollup.Key, Long> skippedByBucket = new ConcurrentHashMap<>();
+    private final Map<String, Counter> skippedCounters = new ConcurrentHashMap<>();
+    private final Cache<String, Boolean> skippedReferences = Caffeine.newBuilder()
+            .maximumSize(SKIPPED_REFERENCES_MAX_SIZE)
+            .expireAfterWrite(SKIPPED_REFERENCES_TTL)
+            .build();
+
+    private ScheduledExecutorService writer;
 
     public IntegrationLogService(
             IntegrationLogRepository integrationLogRepository,
+            IntegrationSkipRollupRepository integrationSkipRollupRepository,
             ObjectMapper objectMapper,
-            Clock clock
+            Clock clock,
+            AppProperties appProperties,
+            MeterRegistry meterRegistry
     ) {
         this.integrationLogRepository = integrationLogRepository;
+        this.integrationSkipRollupRepository = integrationSkipRollupRepository;
         this.objectMapper = objectMapper;
         this.clock = clock;
+        this.config = appProperties.getIntegrations();
+        this.meterRegistry = meterRegistry;
+
+        Gauge.builder("integrations.log.buffer.depth", buffered, AtomicInteger::get)
+                .description("Integration log rows waiting to be written")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("integrations.log.dropped")
+                .description("Integration log rows dropped because the buffer was full")
+                .register(meterRegistry);
+        this.failed = Counter.builder("integrations.log.failed")
+                .description("Integration log rows lost because they could not be written")
+                .register(meterRegistry);
     }
 
-    @Transactional(Transactional.TxType.REQUIRES_NEW)
     public void log(
             String integration,
             UUID eventId,
@@ -55,7 +116,6 @@ public class IntegrationLogService {
         );
     }
 
-    @Transactional(Transactional.TxType.REQUIRES_NEW)
     public void logWithReference(
             String integration,
             String referenceId,
@@ -66,25 +126,148 @@ public class IntegrationLogService {
             Object responsePayload,
             String errorMessage
     ) {
+        if (SKIPPED.equals(status) && config.isLogSkippedRollupEnabled() && !countSkip(integration, referenceId)) {
+            return;
+        }
+
+        // Reserve a slot before adding so the buffer never grows past its capacity, even under contention.
+        if (buffered.incrementAndGet() > Math.max(1, config.getLogBufferCapacity())) {
+            buffered.decrementAndGet();
+            dropped.increment();
+            log.debug("integration_log status=dropped integration={} referenceId={} logStatus={}",
+                    integration, referenceId, status);
+            return;
+        }
+        buffer.offer(new PendingLog(
+                integration,
+                referenceId,
+                status,
+                httpStatus,
+                latencyMs,
+                requestPayload,
+                responsePayload,
+                errorMessage,
+                Instant.now(clock)
+        ));
+    }
+
+    @PostConstruct
+    void start() {
+        writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "integration-log-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMs = Math.max(1, config.getLogFlushIntervalMs());
+        writer.scheduleWithFixedDelay(this::flush, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Beans that log are destroyed before this one, so whatever they logged on the way out is still written.
+    @PreDestroy
+    void stop() {
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                log.warn("integration_log shutdown_timeout pending={}", buffered.get());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    synchronized void flush() {
+        flushSkipRollup();
+        int batchSize = Math.max(1, config.getLogBatchSize());
+        List<IntegrationLog> rows = new ArrayList<>(batchSize);
+        do {
+            rows.clear();
+            PendingLog pending;
+            while (rows.size() < batchSize && (pending = buffer.poll()) != null) {
+                buffered.decrementAndGet();
+                rows.add(toRow(pending));
+            }
+            write(rows);
+        } while (rows.size() == batchSize);
+    }
+
+    private void write(List<IntegrationLog> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        try {
+            integrationLogRepository.insertAll(rows);
+        } catch (Exception ex) {
+            log.warn("integration_log status=batch_failed size={} error={}", rows.size(), ex.getMessage());
+            writeOneByOne(rows);
+        }
+    }
+
+    // One bad row fails the whole multi-row insert, so the batch is retried row by row to keep the others.
+    // Chunks committed before the failure come back as duplicate ids, which means the row is already stored.
+    private void writeOneByOne(List<IntegrationLog> rows) {
+        for (IntegrationLog row : rows) {
+            try {
+                integrationLogRepository.insertAll(List.of(row));
+            } catch (DuplicateKeyException ignored) {
+                // written by an earlier chunk of the same batch
+            } catch (Exception ex) {
+                failed.increment();
+                log.warn("integration_log status=failed_to_persist integration={} referenceId={} error={}",
+                        row.getIntegration(), row.getReferenceId(), ex.getMessage());
+            }
+        }
+    }
+
+    // Counts the skip and returns true when it is the first one seen for the reference, which still gets a row.
+    private boolean countSkip(String integration, String referenceId) {
+        Instant bucketStart = Instant.now(clock).truncatedTo(ChronoUnit.MINUTES);
+        skippedByBucket.merge(new IntegrationSkipRollup.Key(integration, bucketStart), 1L, Long::sum);
+        skippedCounters.computeIfAbsent(integration, key -> Counter.builder("integrations.skipped")
+                .tag("integration", key)
+                .description("Integration calls skipped because the integration is disabled or not configured")
+                .register(meterRegistry)).increment();
+        return referenceId == null || skippedReferences.asMap().putIfAbsent(referenceId, Boolean.TRUE) == null;
+    }
+
+    private void flushSkipRollup() {
+        if (skippedByBucket.isEmpty()) {
+            return;
+        }
+
+        // remove() takes each count atomically; skips counted meanwhile start a new entry for the next flush.
+        Map<IntegrationSkipRollup.Key, Long> counts = new HashMap<>();
+        for (IntegrationSkipRollup.Key key : skippedByBucket.keySet()) {
+            Long skipped = skippedByBucket.remove(key);
+            if (skipped != null) {
+                counts.put(key, skipped);
+            }
+        }
+
         try {
-            IntegrationLog row = new IntegrationLog();
-            row.setId(UUID.randomUUID());
-            row.setIntegration(integration);
-            row.setReferenceId(trimReference(referenceId));
-            row.setStatus(status);
-            row.setHttpStatus(httpStatus);
-            row.setLatencyMs(latencyMs);
-            row.setRequestPayload(serializeSafe(requestPayload));
-            row.setResponsePayload(serializeSafe(responsePayload));
-            row.setErrorMessage(trim(errorMessage));
-            row.setCreatedAt(Instant.now(clock));
-            integrationLogRepository.save(row);
+            integrationSkipRollupRepository.addAll(counts);
         } catch (Exception ex) {
-            log.warn("integration_log status=failed_to_persist integration={} referenceId={} error={}",
-                    integration, referenceId, ex.getMessage());
+            counts.forEach((key, skipped) -> skippedByBucket.merge(key, skipped, Long::sum));
+            log.warn("integration_log status=skip_rollup_failed buckets={} error={}", counts.size(), ex.getMessage());
         }
     }
 
+    private IntegrationLog toRow(PendingLog pending) {
+        IntegrationLog row = new IntegrationLog();
+        row.setId(UUID.randomUUID());
+        row.setIntegration(pending.integration());
+        row.setReferenceId(trimReference(pending.referenceId()));
+        row.setStatus(pending.status());
+        row.setHttpStatus(pending.httpStatus());
+        row.setLatencyMs(pending.latencyMs());
+        row.setRequestPayload(serializeSafe(pending.requestPayload()));
+        row.setResponsePayload(serializeSafe(pending.responsePayload()));
+        row.setErrorMessage(trim(pending.errorMessage()));
+        row.setCreatedAt(pending.createdAt());
+        return row;
+    }
+
     private String serializeSafe(Object payload) {
         if (payload == null) {
             return null;
@@ -113,4 +296,17 @@ public class IntegrationLogService {
         }
         return value.length() > 255 ? value.substring(0, 255) : value;
     }
+
+    private record PendingLog(
+            String integration,
+            String referenceId,
+            String status,
+            Integer httpStatus,
+            Integer latencyMs,
+            Object requestPayload,
+            Object responsePayload,
+            String errorMessage,
+            Instant createdAt
+    ) {
+    }
 }
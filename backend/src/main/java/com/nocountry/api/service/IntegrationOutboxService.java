@@ -0,0 +1,246 @@
+package com.nocountry.api.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nocountry.api.config.AppProperties;
+import com.nocountry.api.entity.IntegrationOutboxEntry;
+import com.nocountry.api.integration.IntegrationOutcome;
+import com.nocountry.api.integration.PurchaseIntegrationDispatcher;
+import com.nocountry.api.integration.PurchaseIntegrationPayload;
+import com.nocountry.api.repository.IntegrationOutboxRepository;
+import com.nocountry.api.repository.PendingIntegrationCall;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Purchase integrations as durable work: StripeWebhookService writes one row per integration in the
+// transaction that records the order, and a drain loop sends them through PurchaseIntegrationDispatcher.
+// Retryable failures back off exponentially with jitter; permanent failures and rows that exhaust their
+// integration's max attempts end up DEAD. Calls deferred by an open circuit breaker wait out the open period
+// without using up an attempt.
+@Service
+public class IntegrationOutboxService {
+
+    private static final Logger log = LoggerFactory.getLogger(IntegrationOutboxService.class);
+    private static final long SHUTDOWN_TIMEOUT_MS = 10_000;
+
+    private final IntegrationOutboxRepository integrationOutboxRepository;
+    private final PurchaseIntegrationDispatcher purchaseIntegrationDispatcher;
+    private final ObjectMapper objectMapper;
+    private final AppProperties.Integrations config;
+    private final Clock clock;
+    private final Counter sent;
+    private final Counter skipped;
+    private final Counter retried;
+    private final Counter deferred;
+    private final Counter dead;
+
+    private ScheduledExecutorService drainer;
+
+    public IntegrationOutboxService(
+            IntegrationOutboxRepository integrationOutboxRepository,
+            PurchaseIntegrationDispatcher purchaseIntegrationDispatcher,
+            ObjectMapper objectMapper,
+            AppProperties appProperties,
+            Clock clock,
+            MeterRegistry meterRegistry
+    ) {
+        this.integrationOutboxRepository = integrationOutboxRepository;
+        this.purchaseIntegrationDispatcher = purchaseIntegrationDispatcher;
+        this.objectMapper = objectMapper;
+        this.config = appProperties.getIntegrations();
+        this.clock = clock;
+        this.sent = outcomeCounter(meterRegistry, "sent");
+        this.skipped = outcomeCounter(meterRegistry, "skipped");
+        this.retried = outcomeCounter(meterRegistry, "retry");
+        this.deferred = outcomeCounter(meterRegistry, "deferred");
+        this.dead = outcomeCounter(meterRegistry, "dead");
+    }
+
+    public boolean isEnabled() {
+        return config.isOutboxEnabled();
+    }
+
+    // Must run inside the transaction that writes the order so both commit or neither does.
+    public void enqueue(PurchaseIntegrationPayload payload) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Unable to serialize integration payload", ex);
+        }
+
+        Instant now = Instant.now(clock);
+        String referenceId = payload.eventId() != null ? payload.eventId().toString() : payload.stripeSessionId();
+        List<IntegrationOutboxEntry> entries = new ArrayList<>();
+        for (String integration : purchaseIntegrationDispatcher.integrations()) {
+            IntegrationOutboxEntry entry = new IntegrationOutboxEntry();
+            entry.setId(UUID.randomUUID());
+            entry.setIntegration(integration);
+            entry.setReferenceId(referenceId);
+            entry.setPayload(json);
+            entry.setNextAttemptAt(now);
+            entry.setCreatedAt(now);
+            entries.add(entry);
+        }
+        integrationOutboxRepository.insertAll(entries);
+        log.info("integration_outbox status=queued referenceId={} integrations={}", referenceId, entries.size());
+    }
+
+    @PostConstruct
+    void start() {
+        if (!isEnabled() || !config.isOutboxDrainerEnabled()) {
+            return;
+        }
+
+        drainer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "integration-outbox");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMs = Math.max(1, config.getOutboxPollIntervalMs());
+        drainer.scheduleWithFixedDelay(this::drain, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        log.info("integration_outbox started batchSize={} pollIntervalMs={}", config.getOutboxBatchSize(), intervalMs);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (drainer == null) {
+            return;
+        }
+
+        drainer.shutdown();
+        try {
+            if (!drainer.awaitTermination(SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                log.warn("integration_outbox shutdown_timeout");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public void drain() {
+        try {
+            // Keep going while batches come back full so a backlog does not wait one poll interval per batch.
+            int batchSize;
+            int claimed;
+            do {
+                // With the outbox on, only the drainer dispatches. A batch no larger than the slots every
+                // integration has free is never rejected by a bulkhead, even when every row targets the same
+                // integration. Calls still running past their timeout hold slots, so the batch can be empty.
+                batchSize = Math.min(Math.max(1, config.getOutboxBatchSize()),
+                        purchaseIntegrationDispatcher.availableSlots());
+                if (batchSize == 0) {
+                    return;
+                }
+                claimed = drainBatch(batchSize);
+            } while (claimed == batchSize && (drainer == null || !drainer.isShutdown()));
+        } catch (Exception ex) {
+            log.warn("integration_outbox status=drain_failed error={}", ex.getMessage());
+        }
+    }
+
+    private int drainBatch(int batchSize) {
+        Instant now = Instant.now(clock);
+        List<PendingIntegrationCall> calls = integrationOutboxRepository.claim(
+                batchSize,
+                now,
+                now.plusSeconds(Math.max(1, config.getOutboxLockSeconds()))
+        );
+
+        // The whole batch goes out at once; the dispatcher's bulkheads bound the calls per integration.
+        List<CompletableFuture<IntegrationOutcome>> outcomes = new ArrayList<>(calls.size());
+        for (PendingIntegrationCall call : calls) {
+            outcomes.add(send(call));
+        }
+        for (int i = 0; i < calls.size(); i++) {
+            record(calls.get(i), outcomes.get(i).join());
+        }
+        return calls.size();
+    }
+
+    private CompletableFuture<IntegrationOutcome> send(PendingIntegrationCall call) {
+        try {
+            PurchaseIntegrationPayload payload = objectMapper.readValue(call.payload(), PurchaseIntegrationPayload.class);
+            return purchaseIntegrationDispatcher.dispatch(call.integration(), payload);
+        } catch (JsonProcessingException ex) {
+            log.warn("integration_outbox status=unreadable id={} error={}", call.id(), ex.getMessage());
+            return CompletableFuture.completedFuture(IntegrationOutcome.PERMANENT_FAILURE);
+        }
+    }
+
+    private void record(PendingIntegrationCall call, IntegrationOutcome outcome) {
+        Instant now = Instant.now(clock);
+        switch (outcome) {
+            case SENT -> {
+                integrationOutboxRepository.markCompleted(call, "SENT", now);
+                sent.increment();
+            }
+            case SKIPPED -> {
+                integrationOutboxRepository.markCompleted(call, "SKIPPED", now);
+                skipped.increment();
+            }
+            case PERMANENT_FAILURE -> markDead(call, "permanent failure", now);
+            case RETRYABLE_FAILURE -> {
+                if (call.attempts() >= maxAttempts(call.integration())) {
+                    markDead(call, "max attempts reached", now);
+                    return;
+                }
+                long delaySeconds = backoffSeconds(call.attempts());
+                integrationOutboxRepository.markRetry(call, "retryable failure", now.plusSeconds(delaySeconds));
+                retried.increment();
+                log.info("integration_outbox status=retry id={} integration={} attempts={} delaySeconds={}",
+                        call.id(), call.integration(), call.attempts(), delaySeconds);
+            }
+            case DEFERRED -> {
+                // The circuit was open: try again once it may have recovered, without spending an attempt.
+                integrationOutboxRepository.markDeferred(call, now.plusSeconds(Math.max(1, config.getCircuitOpenSeconds())));
+                deferred.increment();
+            }
+        }
+    }
+
+    private void markDead(PendingIntegrationCall call, String reason, Instant now) {
+        integrationOutboxRepository.markDead(call, reason, now);
+        dead.increment();
+        log.warn("integration_outbox status=dead id={} integration={} attempts={} reason={}",
+                call.id(), call.integration(), call.attempts(), reason);
+    }
+
+    private int maxAttempts(String integration) {
+        Integer configured = config.getOutboxMaxAttemptsByIntegration().get(integration);
+        return configured != null ? configured : config.getOutboxMaxAttempts();
+    }
+
+    // Exponential backoff with equal jitter: half the delay is fixed, the other half random, so rows that
+    // failed together (e.g. during a provider outage) do not all come due in the same instant.
+    private long backoffSeconds(int attempts) {
+        long base = Math.max(0, config.getOutboxBackoffBaseSeconds());
+        long cap = Math.max(base, config.getOutboxBackoffMaxSeconds());
+        long delay = Math.min(cap, base << Math.min(Math.max(0, attempts - 1), 30));
+        long half = delay / 2;
+        return half + ThreadLocalRandom.current().nextLong(delay - half + 1);
+    }
+
+    private static Counter outcomeCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("integrations.outbox.calls")
+                .tag("result", result)
+                .description("Integration outbox rows by drain outcome")
+                .register(meterRegistry);
+    }
+}
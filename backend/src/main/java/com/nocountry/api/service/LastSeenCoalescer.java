@@ -0,0 +1,95 @@
+package com.nocountry.api.service;
+
+import com.nocountry.api.config.AppProperties;
+import com.nocountry.api.repository.TrackingSessionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+@Component
+public class LastSeenCoalescer {
+
+    private static final Logger log = LoggerFactory.getLogger(LastSeenCoalescer.class);
+
+    private final TrackingSessionRepository trackingSessionRepository;
+    private final AppProperties.Tracking config;
+    private final ConcurrentHashMap<UUID, Instant> pending = new ConcurrentHashMap<>();
+    private final Timer flushLatency;
+    private final Counter flushed;
+
+    public LastSeenCoalescer(
+            TrackingSessionRepository trackingSessionRepository,
+            AppProperties appProperties,
+            MeterRegistry meterRegistry
+    ) {
+        this.trackingSessionRepository = trackingSessionRepository;
+        this.config = appProperties.getTracking();
+
+        Gauge.builder("tracking.last_seen.pending", pending, Map::size)
+                .description("Sessions with a last_seen_at update waiting to be flushed")
+                .register(meterRegistry);
+        this.flushLatency = Timer.builder("tracking.last_seen.flush.latency")
+                .description("Time spent writing one batch of last_seen_at updates")
+                .register(meterRegistry);
+        this.flushed = Counter.builder("tracking.last_seen.flushed")
+                .description("Sessions whose last_seen_at was sent to the database")
+                .register(meterRegistry);
+    }
+
+    public void record(UUID eventId, Instant seenAt) {
+        if (!config.isLastSeenCoalescingEnabled()) {
+            trackingSessionRepository.touchLastSeen(Map.of(eventId, seenAt));
+            return;
+        }
+        pending.merge(eventId, seenAt, (current, incoming) -> incoming.isAfter(current) ? incoming : current);
+    }
+
+    @Scheduled(fixedDelayString = "${app.tracking.last-seen-flush-interval-ms:1000}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        Map<UUID, Instant> batch = new HashMap<>();
+        for (UUID eventId : pending.keySet()) {
+            Instant seenAt = pending.remove(eventId);
+            if (seenAt != null) {
+                batch.put(eventId, seenAt);
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        long startNanos = System.nanoTime();
+        try {
+            trackingSessionRepository.touchLastSeen(batch);
+            flushed.increment(batch.size());
+        } catch (Exception ex) {
+            // Put the timestamps back so the next flush retries them, unless a newer one arrived meanwhile.
+            batch.forEach((eventId, seenAt) -> pending.merge(eventId, seenAt,
+                    (current, restored) -> restored.isAfter(current) ? restored : current));
+            log.warn("last_seen_flush status=failed size={} error={}", batch.size(), ex.getMessage());
+        } finally {
+            flushLatency.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flush();
+    }
+}
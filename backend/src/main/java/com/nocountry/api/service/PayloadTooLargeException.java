@@ -0,0 +1,8 @@
+package com.nocountry.api.service;
+
+public class PayloadTooLargeException extends RuntimeException {
+
+    public PayloadTooLargeException(String message) {
+        super(message);
+    }
+}
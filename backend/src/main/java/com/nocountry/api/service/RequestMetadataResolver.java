@@ -1,42 +1,95 @@
 package com.nocountry.api.service;
 
+import com.nocountry.api.config.AppProperties;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.stereotype.Component;
 
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
 @Component
 public class RequestMetadataResolver {
 
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 algorithm unavailable", ex);
+        }
+    });
+
+    // Null when no secret is configured; a keyed hash keeps ip_hash from being reversed by hashing all IPs.
+    private final ThreadLocal<Mac> hmac;
+
+    public RequestMetadataResolver(AppProperties appProperties) {
+        String secret = appProperties.getTracking().getIpHashSecret();
+        if (secret == null || secret.isBlank()) {
+            this.hmac = null;
+            return;
+        }
+
+        SecretKeySpec key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+        this.hmac = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance("HmacSHA256");
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException ex) {
+                throw new IllegalStateException("HmacSHA256 unavailable", ex);
+            }
+        });
+        hmac.get();
+    }
+
     public RequestMetadata resolve(HttpServletRequest request) {
         String userAgent = request.getHeader("User-Agent");
         String clientIp = extractClientIp(request);
-        String ipHash = sha256Hex(clientIp == null ? "unknown" : clientIp);
+        String ipHash = hashHex(clientIp == null ? "unknown" : clientIp);
         return new RequestMetadata(userAgent, clientIp, ipHash);
     }
 
     private String extractClientIp(HttpServletRequest request) {
-        String forwardedFor = request.getHeader("X-Forwarded-For");
-        if (forwardedFor != null && !forwardedFor.isBlank()) {
-            return forwardedFor.split(",")[0].trim();
+        String firstHop = firstForwardedHop(request.getHeader("X-Forwarded-For"));
+        if (firstHop != null) {
+            return firstHop;
         }
         String remoteAddr = request.getRemoteAddr();
         return (remoteAddr == null || remoteAddr.isBlank()) ? null : remoteAddr;
     }
 
-    private String sha256Hex(String value) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(value.getBytes(StandardCharsets.UTF_8));
-            StringBuilder builder = new StringBuilder(hash.length * 2);
-            for (byte b : hash) {
-                builder.append(String.format("%02x", b));
-            }
-            return builder.toString();
-        } catch (NoSuchAlgorithmException ex) {
-            throw new IllegalStateException("SHA-256 algorithm unavailable", ex);
+    // Trimmed text before the first comma, or null when the header has no usable first hop.
+    private static String firstForwardedHop(String forwardedFor) {
+        if (forwardedFor == null) {
+            return null;
+        }
+        int end = forwardedFor.indexOf(',');
+        if (end < 0) {
+            end = forwardedFor.length();
+        }
+        int start = 0;
+        while (start < end && Character.isWhitespace(forwardedFor.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(forwardedFor.charAt(end - 1))) {
+            end--;
+        }
+        return start == end ? null : forwardedFor.substring(start, end);
+    }
+
+    private String hashHex(String value) {
+        byte[] input = value.getBytes(StandardCharsets.UTF_8);
+        byte[] hash = hmac != null ? hmac.get().doFinal(input) : SHA256.get().digest(input);
+        char[] hex = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            hex[i * 2] = HEX[(hash[i] >> 4) & 0x0f];
+            hex[i * 2 + 1] = HEX[hash[i] & 0x0f];
         }
+        return new String(hex);
     }
 }
@@ -0,0 +1,8 @@
+package com.nocountry.api.service;
+
+public class ServiceUnavailableException extends RuntimeException {
+
+    public ServiceUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,84 @@
+package com.nocountry.api.service;
+
+import com.nocountry.api.repository.OrderRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+// Serializes Stripe events that write the same order, e.g. checkout.session.completed and
+// payment_intent.succeeded delivered within milliseconds of each other. A striped lock covers this instance
+// and, on Postgres, a transaction-scoped advisory lock on the same key covers the other replicas, so a
+// conflicting write waits for the first one to commit instead of failing on a unique key.
+// An event may hold several keys of its order (session id and payment intent id); they are always taken in
+// the same order so two events sharing more than one key cannot deadlock.
+@Component
+public class StripeOrderLock {
+
+    private static final int STRIPES = 64;
+    private static final String ADVISORY_KEY_PREFIX = "stripe_order|";
+
+    private final OrderRepository orderRepository;
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    private final Timer localWait;
+    private final Timer advisoryWait;
+
+    public StripeOrderLock(OrderRepository orderRepository, MeterRegistry meterRegistry) {
+        this.orderRepository = orderRepository;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.localWait = waitTimer(meterRegistry, "local");
+        this.advisoryWait = waitTimer(meterRegistry, "advisory");
+    }
+
+    // Wrap the whole transaction, so the lock is only released once the order has been committed, and nothing
+    // after it: whatever the action does runs with a stripe shared by unrelated orders held.
+    public <T> T callWithLock(List<String> keys, Supplier<T> action) {
+        if (keys.isEmpty()) {
+            return action.get();
+        }
+
+        int[] indexes = keys.stream()
+                .mapToInt(key -> Math.floorMod(key.hashCode(), STRIPES))
+                .distinct()
+                .sorted()
+                .toArray();
+        long startNanos = System.nanoTime();
+        int locked = 0;
+        try {
+            for (int index : indexes) {
+                stripes[index].lock();
+                locked++;
+            }
+            localWait.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            return action.get();
+        } finally {
+            while (locked > 0) {
+                stripes[indexes[--locked]].unlock();
+            }
+        }
+    }
+
+    // Must run inside the transaction that writes the order; the lock is held until it commits or rolls back.
+    public void lockInTransaction(List<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        long startNanos = System.nanoTime();
+        keys.stream().distinct().sorted().forEach(key -> orderRepository.lockOrderKey(ADVISORY_KEY_PREFIX + key));
+        advisoryWait.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static Timer waitTimer(MeterRegistry meterRegistry, String lock) {
+        return Timer.builder("stripe.order.lock.wait")
+                .tag("lock", lock)
+                .description("Time spent waiting for another Stripe event of the same order")
+                .register(meterRegistry);
+    }
+}
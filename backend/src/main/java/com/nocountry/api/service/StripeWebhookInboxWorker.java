@@ -0,0 +1,216 @@
+package com.nocountry.api.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.nocountry.api.config.AppProperties;
+import com.nocountry.api.repository.QueuedStripeEvent;
+import com.nocountry.api.repository.StripeWebhookEventRepository;
+import com.nocountry.api.repository.StripeWebhookEventRepositoryCustom.InboxBacklog;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Processes Stripe events stored by the webhook in inbox mode. Each worker claims a batch of due rows,
+// handles them one by one and records the outcome; failures are retried with exponential backoff until
+// app.stripe.inbox-max-attempts, after which the row stays FAILED for manual replay.
+@Service
+public class StripeWebhookInboxWorker {
+
+    private static final Logger log = LoggerFactory.getLogger(StripeWebhookInboxWorker.class);
+    private static final long SHUTDOWN_TIMEOUT_MS = 10_000;
+    private static final long MAX_BACKOFF_SECONDS = 300;
+
+    private final StripeWebhookService stripeWebhookService;
+    private final StripeWebhookEventRepository stripeWebhookEventRepository;
+    private final AppProperties.Stripe config;
+    private final Clock clock;
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicLong lagSeconds = new AtomicLong();
+    private final Counter processed;
+    private final Counter retried;
+    private final Counter failed;
+
+    private ExecutorService workers;
+    private volatile boolean running;
+
+    public StripeWebhookInboxWorker(
+            StripeWebhookService stripeWebhookService,
+            StripeWebhookEventRepository stripeWebhookEventRepository,
+            AppProperties appProperties,
+            Clock clock,
+            MeterRegistry meterRegistry
+    ) {
+        this.stripeWebhookService = stripeWebhookService;
+        this.stripeWebhookEventRepository = stripeWebhookEventRepository;
+        this.config = appProperties.getStripe();
+        this.clock = clock;
+
+        Gauge.builder("stripe.inbox.pending", pending, AtomicLong::get)
+                .description("Stripe events stored by the webhook and not yet processed")
+                .register(meterRegistry);
+        Gauge.builder("stripe.inbox.lag.seconds", lagSeconds, AtomicLong::get)
+                .description("Age of the oldest Stripe event still waiting in the inbox")
+                .register(meterRegistry);
+        this.processed = Counter.builder("stripe.inbox.events")
+                .tag("result", "processed")
+                .description("Stripe inbox events by processing outcome")
+                .register(meterRegistry);
+        this.retried = Counter.builder("stripe.inbox.events")
+                .tag("result", "retry")
+                .description("Stripe inbox events by processing outcome")
+                .register(meterRegistry);
+        this.failed = Counter.builder("stripe.inbox.events")
+                .tag("result", "failed")
+                .description("Stripe inbox events by processing outcome")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        if (!config.isInboxEnabled()) {
+            return;
+        }
+
+        int threads = Math.max(1, config.getInboxWorkers());
+        AtomicInteger sequence = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "stripe-inbox-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        running = true;
+        for (int i = 0; i < threads; i++) {
+            workers.execute(this::pollLoop);
+        }
+        log.info("stripe_inbox started workers={} batchSize={} maxAttempts={}",
+                threads, config.getInboxBatchSize(), config.getInboxMaxAttempts());
+    }
+
+    @PreDestroy
+    void stop() {
+        if (workers == null) {
+            return;
+        }
+
+        // Rows claimed but not finished become claimable again once their lock expires.
+        running = false;
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                log.warn("stripe_inbox shutdown_timeout");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Scheduled(fixedDelay = 5_000)
+    void refreshBacklog() {
+        if (!config.isInboxEnabled()) {
+            return;
+        }
+
+        try {
+            InboxBacklog backlog = stripeWebhookEventRepository.inboxBacklog();
+            pending.set(backlog.pending());
+            lagSeconds.set(backlog.oldestReceivedAt() == null
+                    ? 0
+                    : Math.max(0, Duration.between(backlog.oldestReceivedAt(), Instant.now(clock)).toSeconds()));
+        } catch (Exception ex) {
+            log.warn("stripe_inbox backlog_refresh_failed error={}", ex.getMessage());
+        }
+    }
+
+    private int drainOnce() {
+        Instant now = Instant.now(clock);
+        List<QueuedStripeEvent> claimed = stripeWebhookEventRepository.claim(
+                Math.max(1, config.getInboxBatchSize()),
+                now,
+                now.plusSeconds(Math.max(1, config.getInboxLockSeconds()))
+        );
+        for (QueuedStripeEvent event : claimed) {
+            handle(event);
+        }
+        return claimed.size();
+    }
+
+    private void pollLoop() {
+        long pollIntervalMs = Math.max(1, config.getInboxPollIntervalMs());
+        while (running) {
+            try {
+                if (drainOnce() == 0) {
+                    Thread.sleep(pollIntervalMs);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception ex) {
+                log.warn("stripe_inbox status=claim_failed error={}", ex.getMessage());
+                try {
+                    Thread.sleep(pollIntervalMs);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void handle(QueuedStripeEvent event) {
+        UUID resolvedEventId;
+        try {
+            resolvedEventId = stripeWebhookService.processQueued(event);
+        } catch (Exception ex) {
+            onFailure(event, ex);
+            return;
+        }
+
+        if (stripeWebhookEventRepository.markProcessed(event, resolvedEventId, Instant.now(clock))) {
+            processed.increment();
+        } else {
+            log.warn("stripe_inbox status=claim_lost stripeEventId={}", event.stripeEventId());
+        }
+    }
+
+    private void onFailure(QueuedStripeEvent event, Exception ex) {
+        String error = trimError(ex.getMessage());
+        // A malformed or unparseable event will not get better on retry.
+        boolean permanent = ex instanceof IllegalArgumentException || ex instanceof JsonProcessingException;
+        if (permanent || event.attempts() >= config.getInboxMaxAttempts()) {
+            stripeWebhookEventRepository.markFailed(event, error, Instant.now(clock));
+            failed.increment();
+            log.warn("stripe_inbox status=failed stripeEventId={} attempts={} error={}",
+                    event.stripeEventId(), event.attempts(), ex.getMessage());
+            return;
+        }
+
+        long backoffSeconds = Math.min(MAX_BACKOFF_SECONDS, 1L << Math.min(event.attempts(), 20));
+        stripeWebhookEventRepository.markRetry(event, error, Instant.now(clock).plusSeconds(backoffSeconds));
+        retried.increment();
+        log.warn("stripe_inbox status=retry stripeEventId={} attempts={} backoffSeconds={} error={}",
+                event.stripeEventId(), event.attempts(), backoffSeconds, ex.getMessage());
+    }
+
+    private String trimError(String error) {
+        if (error == null) {
+            return null;
+        }
+        return error.length() > 1500 ? error.substring(0, 1500) : error;
+    }
+}
@@ -1,28 +1,32 @@
 package com.nocountry.api.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.nocountry.api.config.AppProperties;
 import com.nocountry.api.entity.OrderRecord;
 import com.nocountry.api.entity.StripeWebhookEvent;
 import com.nocountry.api.integration.PurchaseIntegrationDispatcher;
 import com.nocountry.api.integration.PurchaseIntegrationPayload;
+import com.nocountry.api.integration.stripe.StripeEvent;
+import com.nocountry.api.integration.stripe.StripeEventParser;
 import com.nocountry.api.integration.stripe.StripeSignatureVerifier;
 import com.nocountry.api.repository.OrderRepository;
+import com.nocountry.api.repository.QueuedStripeEvent;
 import com.nocountry.api.repository.StripeWebhookEventRepository;
+import com.nocountry.api.repository.UpsertedOrder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.nio.charset.StandardCharsets;
 import java.time.Clock;
 import java.time.Instant;
+import java.util.List;
 import java.util.Locale;
-import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Service
 public class StripeWebhookService {
@@ -33,9 +37,12 @@ public class StripeWebhookService {
     private final OrderRepository orderRepository;
     private final TrackingService trackingService;
     private final StripeSignatureVerifier stripeSignatureVerifier;
-    private final ObjectMapper objectMapper;
+    private final StripeEventParser stripeEventParser;
     private final AppProperties appProperties;
     private final PurchaseIntegrationDispatcher purchaseIntegrationDispatcher;
+    private final IntegrationOutboxService integrationOutboxService;
+    private final TransactionTemplate transactionTemplate;
+    private final StripeOrderLock stripeOrderLock;
     private final Clock clock;
 
     public StripeWebhookService(
@@ -43,23 +50,37 @@ public class StripeWebhookService {
             OrderRepository orderRepository,
             TrackingService trackingService,
             StripeSignatureVerifier stripeSignatureVerifier,
-            ObjectMapper objectMapper,
+            StripeEventParser stripeEventParser,
             AppProperties appProperties,
             PurchaseIntegrationDispatcher purchaseIntegrationDispatcher,
+            IntegrationOutboxService integrationOutboxService,
+            TransactionTemplate transactionTemplate,
+            StripeOrderLock stripeOrderLock,
             Clock clock
     ) {
         this.stripeWebhookEventRepository = stripeWebhookEventRepository;
         this.orderRepository = orderRepository;
         this.trackingService = trackingService;
         this.stripeSignatureVerifier = stripeSignatureVerifier;
-        this.objectMapper = objectMapper;
+        this.stripeEventParser = stripeEventParser;
         this.appProperties = appProperties;
         this.purchaseIntegrationDispatcher = purchaseIntegrationDispatcher;
+        this.integrationOutboxService = integrationOutboxService;
+        this.transactionTemplate = transactionTemplate;
+        this.stripeOrderLock = stripeOrderLock;
         this.clock = clock;
     }
 
-    public void process(String payload, String signatureHeader, RequestMetadata metadata) {
-        String stripeEventId = extractStripeEventId(payload);
+    // Works on the raw body: the signature and the parser read the bytes, and they are only decoded to a String
+    // where they are stored (the purchase tracking event, or the inbox row).
+    public void process(byte[] payload, String signatureHeader, RequestMetadata metadata) {
+        if (appProperties.getStripe().isInboxEnabled() && enqueue(payload, signatureHeader, metadata)) {
+            return;
+        }
+
+        // Parsed once, before the signature check, because the event id is needed to detect duplicates.
+        StripeEvent event = parseOrNull(payload);
+        String stripeEventId = event != null ? event.id() : null;
         StripeWebhookEvent webhookEvent = null;
         UUID resolvedEventId = null;
 
@@ -70,29 +91,18 @@ public class StripeWebhookService {
                 return;
             }
 
-            boolean validSignature = stripeSignatureVerifier.verify(payload, signatureHeader, appProperties.getStripe().getWebhookSecret());
+            boolean validSignature = stripeSignatureVerifier.verify(payload, signatureHeader);
             if (!validSignature) {
                 throw new IllegalArgumentException("Invalid Stripe signature");
             }
 
-            JsonNode root = objectMapper.readTree(payload);
-            String eventType = text(root, "type");
-            resolvedEventId = extractTrackingEventIdFromRoot(root, eventType);
-
-            if ("checkout.session.completed".equals(eventType)) {
-                UUID handledEventId = handleCheckoutCompleted(root, payload, metadata);
-                if (handledEventId != null) {
-                    resolvedEventId = handledEventId;
-                }
-            } else if ("payment_intent.succeeded".equals(eventType)
-                    || "payment_intent.payment_failed".equals(eventType)
-                    || "payment_intent.requires_action".equals(eventType)
-                    || "payment_intent.processing".equals(eventType)) {
-                UUID handledEventId = handlePaymentIntent(root, payload, metadata);
-                if (handledEventId != null) {
-                    resolvedEventId = handledEventId;
-                }
+            if (event == null) {
+                // Parse again only to surface the original error.
+                event = stripeEventParser.parse(payload);
             }
+            String eventType = event.type();
+            resolvedEventId = extractTrackingEventIdFromEvent(event);
+            resolvedEventId = handleEvent(event, payload, metadata, resolvedEventId);
 
             if (webhookEvent != null) {
                 webhookEvent.setStatus("PROCESSED");
@@ -123,193 +133,229 @@ public class StripeWebhookService {
         }
     }
 
-    private UUID handleCheckoutCompleted(JsonNode root, String rawPayload, RequestMetadata metadata) {
-        JsonNode session = root.path("data").path("object");
+    // Runs an event stored by the inbox. Failures propagate so the worker can schedule a retry.
+    public UUID processQueued(QueuedStripeEvent queued) throws IOException {
+        byte[] payload = queued.payload().getBytes(StandardCharsets.UTF_8);
+        StripeEvent event = stripeEventParser.parse(payload);
+        RequestMetadata metadata = new RequestMetadata(queued.userAgent(), queued.clientIp(), null);
+        UUID resolvedEventId = handleEvent(event, payload, metadata, extractTrackingEventIdFromEvent(event));
+        log.info("stripe_webhook status=processed stripeEventId={} type={} attempt={}",
+                queued.stripeEventId(), event.type(), queued.attempts());
+        return resolvedEventId;
+    }
 
-        String stripeSessionId = text(session, "id");
-        if (stripeSessionId == null || stripeSessionId.isBlank()) {
-            throw new IllegalArgumentException("Missing checkout session id");
+    // Inbox mode: only the signature is checked on the request thread; the payload is stored and handled by
+    // StripeWebhookInboxWorker. Returns false when the event cannot be queued and must be processed inline.
+    private boolean enqueue(byte[] payload, String signatureHeader, RequestMetadata metadata) {
+        if (!stripeSignatureVerifier.verify(payload, signatureHeader)) {
+            log.warn("stripe_webhook status=failed error=Invalid Stripe signature");
+            throw new IllegalArgumentException("Invalid Stripe signature");
         }
 
-        String paymentIntentId = text(session, "payment_intent");
-        String currency = uppercaseOrDefault(text(session, "currency"), "USD");
-        BigDecimal amount = amountFromMinorUnits(session.path("amount_total").asLong(0));
-        String status = uppercaseOrDefault(text(session, "payment_status"), "UNKNOWN");
-        String businessStatus = toBusinessStatusFromCheckoutPaymentStatus(status);
-
-        UUID eventId = extractTrackingEventId(session);
-        String clientId = text(session.path("metadata"), "client_id");
-        String customerEmail = extractCheckoutCustomerEmail(session);
-        String customerName = extractCheckoutCustomerName(session);
-
-        if (!isBlank(paymentIntentId)) {
-            Optional<OrderRecord> existingByPaymentIntent = orderRepository.findByPaymentIntentId(paymentIntentId);
-            if (existingByPaymentIntent.isPresent()) {
-                OrderRecord existingOrder = existingByPaymentIntent.get();
-                boolean wasSuccessful = isSuccessfulStatus(existingOrder.getStatus());
-                boolean gainedEventId = false;
-                upsertStripeSessionId(existingOrder, stripeSessionId, paymentIntentId);
-                existingOrder.setPaymentIntentId(coalesce(existingOrder.getPaymentIntentId(), paymentIntentId));
-                existingOrder.setStatus(status);
-                existingOrder.setBusinessStatus(businessStatus);
-                existingOrder.setCurrency(currency);
-                existingOrder.setAmount(amount);
-                if (existingOrder.getEventId() == null && eventId != null) {
-                    existingOrder.setEventId(eventId);
-                    gainedEventId = true;
-                }
-                saveOrderResilient(existingOrder, paymentIntentId, stripeSessionId);
-
-                if (shouldDispatchSuccessfulPayment(wasSuccessful, status, gainedEventId)) {
-                    processSuccessfulPayment(existingOrder, rawPayload, metadata, clientId, customerEmail, customerName);
-                } else {
-                    log.info("stripe_order duplicate paymentIntentId={} status={}", paymentIntentId, status);
-                }
-                return existingOrder.getEventId();
-            }
+        StripeEvent event = parseOrNull(payload);
+        if (event == null || event.id() == null) {
+            return false;
         }
 
-        Optional<OrderRecord> existing = orderRepository.findByStripeSessionId(stripeSessionId);
-        if (existing.isPresent()) {
-            OrderRecord existingOrder = existing.get();
-            boolean wasSuccessful = isSuccessfulStatus(existingOrder.getStatus());
-            boolean gainedEventId = false;
-            existingOrder.setPaymentIntentId(coalesce(existingOrder.getPaymentIntentId(), paymentIntentId));
-            existingOrder.setStatus(status);
-            existingOrder.setBusinessStatus(businessStatus);
-            existingOrder.setCurrency(currency);
-            existingOrder.setAmount(amount);
-            if (existingOrder.getEventId() == null && eventId != null) {
-                existingOrder.setEventId(eventId);
-                gainedEventId = true;
-            }
-            saveOrderResilient(existingOrder, paymentIntentId, stripeSessionId);
+        String stripeEventId = event.id();
+        String eventType = event.type();
+        boolean queued = stripeWebhookEventRepository.enqueue(
+                stripeEventId,
+                new String(payload, StandardCharsets.UTF_8),
+                orderingKey(event),
+                metadata.userAgent(),
+                metadata.clientIp(),
+                Instant.now(clock)
+        );
+        log.info("stripe_webhook status={} stripeEventId={} type={}", queued ? "queued" : "duplicate", stripeEventId, eventType);
+        return true;
+    }
 
-            if (shouldDispatchSuccessfulPayment(wasSuccessful, status, gainedEventId)) {
-                processSuccessfulPayment(existingOrder, rawPayload, metadata, clientId, customerEmail, customerName);
-            } else {
-                log.info("stripe_order duplicate stripeSessionId={} status={}", stripeSessionId, status);
+    // The order, the purchase event and the outbox rows commit together. Events of the same order are
+    // serialized on its lock keys for the whole transaction.
+    // Integrations that are not queued in the outbox are called only after the transaction has committed and
+    // the lock is released, so the HTTP calls hold neither a pooled connection nor a lock stripe.
+    private UUID handleEvent(StripeEvent event, byte[] payload, RequestMetadata metadata, UUID resolvedEventId) {
+        String eventType = event.type();
+        List<String> lockKeys = orderLockKeys(event);
+        HandledEvent handled = stripeOrderLock.callWithLock(lockKeys, () -> transactionTemplate.execute(status -> {
+            stripeOrderLock.lockInTransaction(lockKeys);
+            if ("checkout.session.completed".equals(eventType)) {
+                return handleCheckoutCompleted(event.object(), payload, metadata);
+            }
+            if (isPaymentIntentEvent(eventType)) {
+                return handlePaymentIntent(event.object(), payload, metadata);
             }
-            return existingOrder.getEventId();
+            return null;
+        }));
+        if (handled == null) {
+            return resolvedEventId;
+        }
+        if (handled.pendingDispatch() != null) {
+            purchaseIntegrationDispatcher.dispatchPurchase(handled.pendingDispatch());
         }
+        return handled.eventId() != null ? handled.eventId() : resolvedEventId;
+    }
 
-        OrderRecord orderRecord = new OrderRecord();
-        orderRecord.setId(UUID.randomUUID());
-        orderRecord.setEventId(eventId);
-        orderRecord.setStripeSessionId(stripeSessionId);
-        orderRecord.setPaymentIntentId(paymentIntentId);
-        orderRecord.setAmount(amount);
-        orderRecord.setCurrency(currency);
-        orderRecord.setStatus(status);
-        orderRecord.setBusinessStatus(businessStatus);
-        orderRecord.setCreatedAt(Instant.now(clock));
-        OrderRecord persistedOrder = saveOrderResilient(orderRecord, paymentIntentId, stripeSessionId);
-
-        if (!orderRecord.getId().equals(persistedOrder.getId())) {
-            boolean wasSuccessful = isSuccessfulStatus(persistedOrder.getStatus());
-            boolean gainedEventId = false;
-            persistedOrder.setPaymentIntentId(coalesce(persistedOrder.getPaymentIntentId(), paymentIntentId));
-            persistedOrder.setStatus(status);
-            persistedOrder.setBusinessStatus(businessStatus);
-            persistedOrder.setCurrency(currency);
-            persistedOrder.setAmount(amount);
-            if (persistedOrder.getEventId() == null && eventId != null) {
-                persistedOrder.setEventId(eventId);
-                gainedEventId = true;
-            }
-            saveOrderResilient(persistedOrder, paymentIntentId, stripeSessionId);
+    private boolean isPaymentIntentEvent(String eventType) {
+        return "payment_intent.succeeded".equals(eventType)
+                || "payment_intent.payment_failed".equals(eventType)
+                || "payment_intent.requires_action".equals(eventType)
+                || "payment_intent.processing".equals(eventType);
+    }
 
-            if (shouldDispatchSuccessfulPayment(wasSuccessful, status, gainedEventId)) {
-                processSuccessfulPayment(persistedOrder, rawPayload, metadata, clientId, customerEmail, customerName);
-            } else {
-                log.info("stripe_order duplicate stripeSessionId={} status={}", stripeSessionId, status);
-            }
-            return persistedOrder.getEventId();
+    // Events of the same payment share a key so the inbox handles them in arrival order. Checkout sessions
+    // without a payment intent fall back to their own id.
+    private String orderingKey(StripeEvent event) {
+        StripeEvent.DataObject object = event.object();
+        if ("checkout.session.completed".equals(event.type())) {
+            return object.paymentIntent() != null ? object.paymentIntent() : object.id();
         }
+        if (isPaymentIntentEvent(event.type())) {
+            return object.id();
+        }
+        return null;
+    }
 
-        if (isSuccessfulStatus(status)) {
-            processSuccessfulPayment(persistedOrder, rawPayload, metadata, clientId, customerEmail, customerName);
+    // A checkout carries its session id and usually its payment intent; a payment intent carries its own id and
+    // usually metadata.checkout_session_id. Locking every id the event knows means two events of one order
+    // always share a key, even when one of them lacks the other id.
+    private List<String> orderLockKeys(StripeEvent event) {
+        StripeEvent.DataObject object = event.object();
+        String stripeSessionId;
+        String paymentIntentId;
+        if ("checkout.session.completed".equals(event.type())) {
+            stripeSessionId = object.id();
+            paymentIntentId = object.paymentIntent();
+        } else if (isPaymentIntentEvent(event.type())) {
+            stripeSessionId = object.metadata("checkout_session_id");
+            paymentIntentId = object.id();
         } else {
-            log.info("stripe_order pending stripeSessionId={} status={}", stripeSessionId, status);
+            return List.of();
         }
-        return persistedOrder.getEventId();
+        return Stream.of(stripeSessionId, paymentIntentId)
+                .filter(key -> !isBlank(key))
+                .distinct()
+                .toList();
     }
 
-    private UUID handlePaymentIntent(JsonNode root, String rawPayload, RequestMetadata metadata) {
-        JsonNode paymentIntent = root.path("data").path("object");
+    private HandledEvent handleCheckoutCompleted(StripeEvent.DataObject session, byte[] rawPayload, RequestMetadata metadata) {
+        String stripeSessionId = session.id();
+        if (stripeSessionId == null || stripeSessionId.isBlank()) {
+            throw new IllegalArgumentException("Missing checkout session id");
+        }
+
+        String paymentIntentId = session.paymentIntent();
+        String currency = uppercaseOrDefault(session.currency(), "USD");
+        BigDecimal amount = amountFromMinorUnits(session.amountTotal() != null ? session.amountTotal() : 0);
+        String status = uppercaseOrDefault(session.paymentStatus(), "UNKNOWN");
+        String businessStatus = toBusinessStatusFromCheckoutPaymentStatus(status);
+
+        UUID eventId = extractTrackingEventId(session);
+        SavedOrder saved = saveOrder(
+                newOrder(eventId, stripeSessionId, paymentIntentId, amount, currency, status, businessStatus),
+                rawPayload,
+                metadata,
+                session.metadata("client_id"),
+                extractCheckoutCustomerEmail(session),
+                extractCheckoutCustomerName(session)
+        );
+        return new HandledEvent(saved.order().getEventId(), saved.pendingDispatch());
+    }
 
-        String paymentIntentId = text(paymentIntent, "id");
+    private HandledEvent handlePaymentIntent(StripeEvent.DataObject paymentIntent, byte[] rawPayload, RequestMetadata metadata) {
+        String paymentIntentId = paymentIntent.id();
         if (isBlank(paymentIntentId)) {
             throw new IllegalArgumentException("Missing payment intent id");
         }
 
-        String stripeSessionId = text(paymentIntent.path("metadata"), "checkout_session_id");
+        String stripeSessionId = paymentIntent.metadata("checkout_session_id");
         if (isBlank(stripeSessionId)) {
             stripeSessionId = paymentIntentId;
         }
 
-        String currency = uppercaseOrDefault(text(paymentIntent, "currency"), "USD");
-        long amountMinorUnits = paymentIntent.path("amount_received").asLong(paymentIntent.path("amount").asLong(0));
+        String currency = uppercaseOrDefault(paymentIntent.currency(), "USD");
+        long amountMinorUnits = paymentIntent.amountReceived() != null ? paymentIntent.amountReceived()
+                : paymentIntent.amount() != null ? paymentIntent.amount() : 0;
         BigDecimal amount = amountFromMinorUnits(amountMinorUnits);
-        String status = uppercaseOrDefault(text(paymentIntent, "status"), "SUCCEEDED");
+        String status = uppercaseOrDefault(paymentIntent.status(), "SUCCEEDED");
         String businessStatus = toBusinessStatus(status);
-        UUID eventId = extractTrackingEventIdFromMetadata(paymentIntent.path("metadata"));
-        String clientId = text(paymentIntent.path("metadata"), "client_id");
-        String customerEmail = extractPaymentIntentCustomerEmail(paymentIntent);
-        String customerName = extractPaymentIntentCustomerName(paymentIntent);
-
-        Optional<OrderRecord> existingByPaymentIntent = orderRepository.findByPaymentIntentId(paymentIntentId);
-        if (existingByPaymentIntent.isPresent()) {
-            OrderRecord existingOrder = existingByPaymentIntent.get();
-            boolean wasSuccessful = isSuccessfulStatus(existingOrder.getStatus());
-            boolean gainedEventId = false;
-            eventId = resolveEventIdWithOrphanFallback(eventId, existingOrder.getEventId(), paymentIntentId, businessStatus);
-            existingOrder.setStatus(status);
-            existingOrder.setBusinessStatus(businessStatus);
-            existingOrder.setAmount(amount);
-            existingOrder.setCurrency(currency);
-            upsertStripeSessionId(existingOrder, stripeSessionId, paymentIntentId);
-            if (existingOrder.getEventId() == null && eventId != null) {
-                existingOrder.setEventId(eventId);
-                gainedEventId = true;
-            }
-            saveOrderResilient(existingOrder, paymentIntentId, stripeSessionId);
+        UUID eventId = extractTrackingEventIdFromMetadata(paymentIntent);
+
+        SavedOrder saved = saveOrder(
+                newOrder(eventId, stripeSessionId, paymentIntentId, amount, currency, status, businessStatus),
+                rawPayload,
+                metadata,
+                paymentIntent.metadata("client_id"),
+                extractPaymentIntentCustomerEmail(paymentIntent),
+                extractPaymentIntentCustomerName(paymentIntent)
+        );
+        OrderRecord order = saved.order();
+        if (order.getEventId() == null) {
+            assignOrphanEventId(order, paymentIntentId, businessStatus);
+        }
+        return new HandledEvent(order.getEventId(), saved.pendingDispatch());
+    }
 
-            if (shouldDispatchSuccessfulPayment(wasSuccessful, status, gainedEventId)) {
-                processSuccessfulPayment(existingOrder, rawPayload, metadata, clientId, customerEmail, customerName);
-            } else {
-                log.info("stripe_order duplicate paymentIntentId={} status={}", paymentIntentId, status);
-            }
-            return existingOrder.getEventId();
-        }
-
-        Optional<OrderRecord> existingBySession = orderRepository.findByStripeSessionId(stripeSessionId);
-        if (existingBySession.isPresent()) {
-            OrderRecord existingOrder = existingBySession.get();
-            boolean wasSuccessful = isSuccessfulStatus(existingOrder.getStatus());
-            boolean gainedEventId = false;
-            eventId = resolveEventIdWithOrphanFallback(eventId, existingOrder.getEventId(), paymentIntentId, businessStatus);
-            existingOrder.setPaymentIntentId(coalesce(existingOrder.getPaymentIntentId(), paymentIntentId));
-            existingOrder.setStatus(status);
-            existingOrder.setBusinessStatus(businessStatus);
-            existingOrder.setAmount(amount);
-            existingOrder.setCurrency(currency);
-            if (existingOrder.getEventId() == null && eventId != null) {
-                existingOrder.setEventId(eventId);
-                gainedEventId = true;
-            }
-            saveOrderResilient(existingOrder, paymentIntentId, stripeSessionId);
+    // Writes the order in one upsert, then records the purchase when this event is the one that made it
+    // successful, or gave an already successful order its tracking event id.
+    private SavedOrder saveOrder(
+            OrderRecord candidate,
+            byte[] rawPayload,
+            RequestMetadata metadata,
+            String clientId,
+            String customerEmail,
+            String customerName
+    ) {
+        // Created up front: inside the handler transaction a failed insert cannot be retried on Postgres.
+        trackingService.ensureSessionExists(candidate.getEventId());
+        UpsertedOrder upserted = orderRepository.upsert(candidate);
+        OrderRecord order = upserted.order();
+        boolean wasSuccessful = isSuccessfulStatus(upserted.previousStatus());
+        boolean gainedEventId = !upserted.inserted() && upserted.previousEventId() == null && order.getEventId() != null;
+
+        if (shouldDispatchSuccessfulPayment(wasSuccessful, order.getStatus(), gainedEventId)) {
+            return new SavedOrder(order,
+                    processSuccessfulPayment(order, rawPayload, metadata, clientId, customerEmail, customerName));
+        }
+        log.info("stripe_order {} stripeSessionId={} paymentIntentId={} status={}",
+                upserted.inserted() ? "pending" : "duplicate",
+                order.getStripeSessionId(), order.getPaymentIntentId(), order.getStatus());
+        return new SavedOrder(order, null);
+    }
 
-            if (shouldDispatchSuccessfulPayment(wasSuccessful, status, gainedEventId)) {
-                processSuccessfulPayment(existingOrder, rawPayload, metadata, clientId, customerEmail, customerName);
-            } else {
-                log.info("stripe_order duplicate stripeSessionId={} status={}", stripeSessionId, status);
-            }
-            return existingOrder.getEventId();
+    // Failed or pending payments that never carried a tracking event id still get a stable synthetic one,
+    // so they show up in the funnel.
+    private void assignOrphanEventId(OrderRecord order, String paymentIntentId, String businessStatus) {
+        if (!"FAILED".equalsIgnoreCase(businessStatus) && !"PENDING".equalsIgnoreCase(businessStatus)) {
+            return;
+        }
+
+        UUID syntheticEventId = UUID.nameUUIDFromBytes(
+                ("stripe_orphan|" + paymentIntentId).getBytes(StandardCharsets.UTF_8)
+        );
+        trackingService.ensureSessionExists(syntheticEventId);
+        if (orderRepository.assignEventIdIfMissing(order.getId(), syntheticEventId)) {
+            order.setEventId(syntheticEventId);
+            log.info(
+                    "stripe_order generated_orphan_event_id paymentIntentId={} businessStatus={} eventId={}",
+                    paymentIntentId,
+                    businessStatus,
+                    syntheticEventId
+            );
         }
+    }
 
+    private OrderRecord newOrder(
+            UUID eventId,
+            String stripeSessionId,
+            String paymentIntentId,
+            BigDecimal amount,
+            String currency,
+            String status,
+            String businessStatus
+    ) {
         OrderRecord orderRecord = new OrderRecord();
-        eventId = resolveEventIdWithOrphanFallback(eventId, null, paymentIntentId, businessStatus);
         orderRecord.setId(UUID.randomUUID());
         orderRecord.setEventId(eventId);
         orderRecord.setStripeSessionId(stripeSessionId);
@@ -319,66 +365,7 @@ public class StripeWebhookService {
         orderRecord.setStatus(status);
         orderRecord.setBusinessStatus(businessStatus);
         orderRecord.setCreatedAt(Instant.now(clock));
-        OrderRecord persistedOrder = saveOrderResilient(orderRecord, paymentIntentId, stripeSessionId);
-
-        if (!orderRecord.getId().equals(persistedOrder.getId())) {
-            boolean wasSuccessful = isSuccessfulStatus(persistedOrder.getStatus());
-            boolean gainedEventId = false;
-            eventId = resolveEventIdWithOrphanFallback(eventId, persistedOrder.getEventId(), paymentIntentId, businessStatus);
-            persistedOrder.setPaymentIntentId(coalesce(persistedOrder.getPaymentIntentId(), paymentIntentId));
-            persistedOrder.setStatus(status);
-            persistedOrder.setBusinessStatus(businessStatus);
-            persistedOrder.setAmount(amount);
-            persistedOrder.setCurrency(currency);
-            upsertStripeSessionId(persistedOrder, stripeSessionId, paymentIntentId);
-            if (persistedOrder.getEventId() == null && eventId != null) {
-                persistedOrder.setEventId(eventId);
-                gainedEventId = true;
-            }
-            saveOrderResilient(persistedOrder, paymentIntentId, stripeSessionId);
-
-            if (shouldDispatchSuccessfulPayment(wasSuccessful, status, gainedEventId)) {
-                processSuccessfulPayment(persistedOrder, rawPayload, metadata, clientId, customerEmail, customerName);
-            } else {
-                log.info("stripe_order duplicate paymentIntentId={} status={}", paymentIntentId, status);
-            }
-            return persistedOrder.getEventId();
-        }
-
-        if (isSuccessfulStatus(status)) {
-            processSuccessfulPayment(persistedOrder, rawPayload, metadata, clientId, customerEmail, customerName);
-        } else {
-            log.info("stripe_order pending paymentIntentId={} status={}", paymentIntentId, status);
-        }
-        return persistedOrder.getEventId();
-    }
-
-    private UUID resolveEventIdWithOrphanFallback(
-            UUID webhookEventId,
-            UUID existingOrderEventId,
-            String paymentIntentId,
-            String businessStatus
-    ) {
-        if (existingOrderEventId != null) {
-            return existingOrderEventId;
-        }
-        if (webhookEventId != null) {
-            return webhookEventId;
-        }
-        if (("FAILED".equalsIgnoreCase(businessStatus) || "PENDING".equalsIgnoreCase(businessStatus))
-                && !isBlank(paymentIntentId)) {
-            UUID syntheticEventId = UUID.nameUUIDFromBytes(
-                    ("stripe_orphan|" + paymentIntentId).getBytes(StandardCharsets.UTF_8)
-            );
-            log.info(
-                    "stripe_order generated_orphan_event_id paymentIntentId={} businessStatus={} eventId={}",
-                    paymentIntentId,
-                    businessStatus,
-                    syntheticEventId
-            );
-            return syntheticEventId;
-        }
-        return null;
+        return orderRecord;
     }
 
     private StripeWebhookEvent findOrCreateEvent(String stripeEventId) {
@@ -396,33 +383,25 @@ public class StripeWebhookService {
                 });
     }
 
-    private UUID extractTrackingEventIdFromRoot(JsonNode root, String eventType) {
-        JsonNode objectNode = root.path("data").path("object");
-        if (objectNode.isMissingNode() || objectNode.isNull()) {
-            return null;
-        }
-
-        if ("checkout.session.completed".equals(eventType)) {
-            return extractTrackingEventId(objectNode);
+    private UUID extractTrackingEventIdFromEvent(StripeEvent event) {
+        if ("checkout.session.completed".equals(event.type())) {
+            return extractTrackingEventId(event.object());
         }
 
-        if ("payment_intent.succeeded".equals(eventType)
-                || "payment_intent.payment_failed".equals(eventType)
-                || "payment_intent.requires_action".equals(eventType)
-                || "payment_intent.processing".equals(eventType)) {
-            return extractTrackingEventIdFromMetadata(objectNode.path("metadata"));
+        if (isPaymentIntentEvent(event.type())) {
+            return extractTrackingEventIdFromMetadata(event.object());
         }
 
         return null;
     }
 
-    private UUID extractTrackingEventId(JsonNode session) {
-        UUID fromMetadata = extractTrackingEventIdFromMetadata(session.path("metadata"));
+    private UUID extractTrackingEventId(StripeEvent.DataObject session) {
+        UUID fromMetadata = extractTrackingEventIdFromMetadata(session);
         if (fromMetadata != null) {
             return fromMetadata;
         }
 
-        String clientReferenceId = text(session, "client_reference_id");
+        String clientReferenceId = session.clientReferenceId();
         if (!isBlank(clientReferenceId)) {
             return parseUuid(clientReferenceId);
         }
@@ -430,10 +409,10 @@ public class StripeWebhookService {
         return null;
     }
 
-    private UUID extractTrackingEventIdFromMetadata(JsonNode metadata) {
+    private UUID extractTrackingEventIdFromMetadata(StripeEvent.DataObject object) {
         String[] keys = {"eventId", "event_id", "client_reference_id", "tracking_event_id"};
         for (String key : keys) {
-            String candidate = text(metadata, key);
+            String candidate = object.metadata(key);
             if (!isBlank(candidate)) {
                 UUID parsed = parseUuid(candidate);
                 if (parsed != null) {
@@ -457,24 +436,14 @@ public class StripeWebhookService {
                 .divide(BigDecimal.valueOf(100), 2, RoundingMode.HALF_UP);
     }
 
-    private String extractStripeEventId(String payload) {
+    private StripeEvent parseOrNull(byte[] payload) {
         try {
-            JsonNode root = objectMapper.readTree(payload);
-            return text(root, "id");
+            return stripeEventParser.parse(payload);
         } catch (Exception ex) {
             return null;
         }
     }
 
-    private String text(JsonNode node, String fieldName) {
-        JsonNode child = node.path(fieldName);
-        if (child.isMissingNode() || child.isNull()) {
-            return null;
-        }
-        String value = child.asText();
-        return value == null || value.isBlank() ? null : value;
-    }
-
     private String uppercaseOrDefault(String value, String fallback) {
         return (value == null || value.isBlank())
                 ? fallback
@@ -492,46 +461,44 @@ public class StripeWebhookService {
         return error.length() > 1500 ? error.substring(0, 1500) : error;
     }
 
-    private String extractCheckoutCustomerEmail(JsonNode session) {
-        String email = text(session.path("customer_details"), "email");
+    private String extractCheckoutCustomerEmail(StripeEvent.DataObject session) {
+        String email = session.customerDetailsEmail();
         if (!isBlank(email)) {
             return email;
         }
-        email = text(session, "customer_email");
+        email = session.customerEmail();
         if (!isBlank(email)) {
             return email;
         }
-        return text(session.path("metadata"), "customer_email");
+        return session.metadata("customer_email");
     }
 
-    private String extractCheckoutCustomerName(JsonNode session) {
-        String name = text(session.path("customer_details"), "name");
+    private String extractCheckoutCustomerName(StripeEvent.DataObject session) {
+        String name = session.customerDetailsName();
         if (!isBlank(name)) {
             return name;
         }
-        return text(session.path("metadata"), "customer_name");
+        return session.metadata("customer_name");
     }
 
-    private String extractPaymentIntentCustomerEmail(JsonNode paymentIntent) {
-        String email = text(paymentIntent, "receipt_email");
+    private String extractPaymentIntentCustomerEmail(StripeEvent.DataObject paymentIntent) {
+        String email = paymentIntent.receiptEmail();
         if (!isBlank(email)) {
             return email;
         }
-        JsonNode firstCharge = paymentIntent.path("charges").path("data").path(0);
-        email = text(firstCharge.path("billing_details"), "email");
+        email = paymentIntent.billingEmail();
         if (!isBlank(email)) {
             return email;
         }
-        return text(paymentIntent.path("metadata"), "customer_email");
+        return paymentIntent.metadata("customer_email");
     }
 
-    private String extractPaymentIntentCustomerName(JsonNode paymentIntent) {
-        JsonNode firstCharge = paymentIntent.path("charges").path("data").path(0);
-        String name = text(firstCharge.path("billing_details"), "name");
+    private String extractPaymentIntentCustomerName(StripeEvent.DataObject paymentIntent) {
+        String name = paymentIntent.billingName();
         if (!isBlank(name)) {
             return name;
         }
-        return text(paymentIntent.path("metadata"), "customer_name");
+        return paymentIntent.metadata("customer_name");
     }
 
     private boolean isSuccessfulStatus(String status) {
@@ -586,13 +553,6 @@ public class StripeWebhookService {
         return toBusinessStatus(normalized);
     }
 
-    private String coalesce(String current, String candidate) {
-        if (current == null || current.isBlank()) {
-            return candidate;
-        }
-        return current;
-    }
-
     private boolean shouldDispatchSuccessfulPayment(boolean wasSuccessful, String newStatus, boolean gainedEventId) {
         if (!isSuccessfulStatus(newStatus)) {
             return false;
@@ -600,65 +560,10 @@ public class StripeWebhookService {
         return !wasSuccessful || gainedEventId;
     }
 
-    private void upsertStripeSessionId(OrderRecord order, String stripeSessionId, String paymentIntentId) {
-        if (isBlank(stripeSessionId)) {
-            return;
-        }
-        String current = order.getStripeSessionId();
-        if (isBlank(current) || current.equals(paymentIntentId)) {
-            order.setStripeSessionId(stripeSessionId);
-        }
-    }
-
-    private OrderRecord saveOrderResilient(OrderRecord candidate, String paymentIntentId, String stripeSessionId) {
-        try {
-            return orderRepository.upsert(candidate);
-        } catch (DataIntegrityViolationException ex) {
-            DataIntegrityViolationException effectiveException = ex;
-
-            if (candidate.getEventId() != null && isMissingTrackingSessionForeignKey(ex)) {
-                trackingService.ensureSessionExists(candidate.getEventId());
-                try {
-                    return orderRepository.upsert(candidate);
-                } catch (DataIntegrityViolationException retryEx) {
-                    effectiveException = retryEx;
-                }
-            }
-
-            if (!isBlank(paymentIntentId)) {
-                Optional<OrderRecord> byPaymentIntent = orderRepository.findByPaymentIntentId(paymentIntentId);
-                if (byPaymentIntent.isPresent()) {
-                    log.info("stripe_order concurrent_duplicate paymentIntentId={} stripeSessionId={}", paymentIntentId, stripeSessionId);
-                    return byPaymentIntent.get();
-                }
-            }
-
-            Optional<OrderRecord> bySession = orderRepository.findByStripeSessionId(stripeSessionId);
-            if (bySession.isPresent()) {
-                log.info("stripe_order concurrent_duplicate stripeSessionId={} paymentIntentId={}", stripeSessionId, paymentIntentId);
-                return bySession.get();
-            }
-            throw effectiveException;
-        }
-    }
-
-    private boolean isMissingTrackingSessionForeignKey(DataIntegrityViolationException ex) {
-        Throwable cursor = ex;
-        while (cursor != null) {
-            String message = cursor.getMessage();
-            if (message != null &&
-                    (message.contains("orders_event_id_fkey")
-                            || message.contains("is not present in table \"tracking_session\""))) {
-                return true;
-            }
-            cursor = cursor.getCause();
-        }
-        return false;
-    }
-
-    private void processSuccessfulPayment(
+    // Returns the payload to dispatch once the transaction has committed, or null when it went to the outbox.
+    private PurchaseIntegrationPayload processSuccessfulPayment(
             OrderRecord orderRecord,
-            String rawPayload,
+            byte[] rawPayload,
             RequestMetadata metadata,
             String clientId,
             String customerEmail,
@@ -689,6 +594,16 @@ public class StripeWebhookService {
                 customerEmail,
                 customerName
         );
-        purchaseIntegrationDispatcher.dispatchPurchase(integrationPayload);
+        if (integrationOutboxService.isEnabled()) {
+            integrationOutboxService.enqueue(integrationPayload);
+            return null;
+        }
+        return integrationPayload;
+    }
+
+    private record SavedOrder(OrderRecord order, PurchaseIntegrationPayload pendingDispatch) {
+    }
+
+    private record HandledEvent(UUID eventId, PurchaseIntegrationPayload pendingDispatch) {
     }
 }
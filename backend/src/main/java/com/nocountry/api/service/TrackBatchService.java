@@ -0,0 +1,141 @@
+package com.nocountry.api.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nocountry.api.config.AppProperties;
+import com.nocountry.api.dto.TrackBatchItemResult;
+import com.nocountry.api.dto.TrackBatchResponse;
+import com.nocountry.api.dto.TrackRequest;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+@Service
+public class TrackBatchService {
+
+    private static final Logger log = LoggerFactory.getLogger(TrackBatchService.class);
+    private static final String MALFORMED_EVENT = "event could not be read as a tracking event";
+    private static final String QUEUE_FULL = "tracking ingest queue is full";
+
+    private final TrackingService trackingService;
+    private final TrackingIngestQueue trackingIngestQueue;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final AppProperties appProperties;
+
+    public TrackBatchService(
+            TrackingService trackingService,
+            TrackingIngestQueue trackingIngestQueue,
+            Validator validator,
+            ObjectMapper objectMapper,
+            AppProperties appProperties
+    ) {
+        this.trackingService = trackingService;
+        this.trackingIngestQueue = trackingIngestQueue;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.appProperties = appProperties;
+    }
+
+    public List<JsonNode> read(InputStream body, boolean ndjson) throws IOException {
+        int maxSize = Math.max(1, appProperties.getTracking().getBatchMaxSize());
+        List<JsonNode> items = new ArrayList<>();
+
+        if (ndjson) {
+            try (MappingIterator<JsonNode> lines = objectMapper.readerFor(JsonNode.class).readValues(body)) {
+                while (lines.hasNextValue()) {
+                    items.add(lines.nextValue());
+                    ensureWithinLimit(items.size(), maxSize);
+                }
+            }
+        } else {
+            // Read element by element so an oversized array is rejected before it is built in memory.
+            try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+                if (parser.nextToken() != JsonToken.START_ARRAY) {
+                    throw new IllegalArgumentException("Batch body must be a JSON array");
+                }
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    ensureWithinLimit(items.size() + 1, maxSize);
+                    items.add(objectMapper.readTree(parser));
+                }
+            }
+        }
+
+        if (items.isEmpty()) {
+            throw new IllegalArgumentException("Batch must contain at least one event");
+        }
+        return items;
+    }
+
+    public TrackBatchResponse track(List<JsonNode> items, RequestMetadata metadata) {
+        TrackBatchItemResult[] results = new TrackBatchItemResult[items.size()];
+        List<TrackingCommand> commands = new ArrayList<>(items.size());
+        List<Integer> commandIndexes = new ArrayList<>(items.size());
+
+        for (int i = 0; i < items.size(); i++) {
+            try {
+                TrackRequest request = objectMapper.treeToValue(items.get(i), TrackRequest.class);
+                List<String> errors = validate(request);
+                if (!errors.isEmpty()) {
+                    results[i] = new TrackBatchItemResult(i, "INVALID", null, errors);
+                    continue;
+                }
+                commands.add(trackingService.toCommand(request, metadata));
+                commandIndexes.add(i);
+            } catch (Exception ex) {
+                log.debug("track_batch_item invalid index={} error={}", i, ex.getMessage());
+                results[i] = new TrackBatchItemResult(i, "INVALID", null, List.of(MALFORMED_EVENT));
+            }
+        }
+
+        if (trackingIngestQueue.isEnabled()) {
+            for (int c = 0; c < commands.size(); c++) {
+                TrackingCommand command = commands.get(c);
+                int index = commandIndexes.get(c);
+                try {
+                    trackingIngestQueue.enqueue(command);
+                    results[index] = new TrackBatchItemResult(index, "ACCEPTED", command.eventId().toString(), List.of());
+                } catch (ServiceUnavailableException ex) {
+                    results[index] = new TrackBatchItemResult(index, "REJECTED", command.eventId().toString(), List.of(QUEUE_FULL));
+                }
+            }
+        } else {
+            trackingService.trackBatch(commands);
+            for (int c = 0; c < commands.size(); c++) {
+                int index = commandIndexes.get(c);
+                results[index] = new TrackBatchItemResult(index, "ACCEPTED", commands.get(c).eventId().toString(), List.of());
+            }
+        }
+
+        int accepted = (int) Arrays.stream(results).filter(r -> "ACCEPTED".equals(r.status())).count();
+        log.info("track_batch_request size={} accepted={}", items.size(), accepted);
+        return new TrackBatchResponse(accepted, results.length - accepted, List.of(results));
+    }
+
+    private List<String> validate(TrackRequest request) {
+        Set<ConstraintViolation<TrackRequest>> violations = validator.validate(request);
+        return violations.stream()
+                .map(v -> v.getPropertyPath() + " " + v.getMessage())
+                .sorted(Comparator.naturalOrder())
+                .toList();
+    }
+
+    private void ensureWithinLimit(int size, int maxSize) {
+        if (size > maxSize) {
+            throw new IllegalArgumentException("Batch exceeds maximum size of " + maxSize + " events");
+        }
+    }
+}
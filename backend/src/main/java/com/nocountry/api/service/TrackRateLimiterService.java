@@ -1,45 +1,340 @@
 package com.nocountry.api.service;
 
 import com.nocountry.api.config.AppProperties;
+import com.nocountry.api.repository.DatabaseDialect;
+import com.nocountry.api.repository.RateLimitBucketRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class TrackRateLimiterService {
 
-    private final ConcurrentHashMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private static final Logger log = LoggerFactory.getLogger(TrackRateLimiterService.class);
+
+    // Bucket state is one long updated by CAS: milli-tokens in the high 24 bits, last refill (ms since origin)
+    // in the low 40. Callers sharing one key (NAT, missing X-Forwarded-For) retry instead of blocking.
+    private static final int TIME_BITS = 40;
+    private static final long TIME_MASK = (1L << TIME_BITS) - 1;
+    private static final long MAX_MILLI_TOKENS = (1L << (Long.SIZE - TIME_BITS)) - 1;
+    private static final int MAX_CAPACITY = (int) (MAX_MILLI_TOKENS / 1000);
+    // Never a valid state: it would encode more milli-tokens than MAX_CAPACITY allows.
+    private static final long RETIRED = -1L;
+    private static final int EVICTION_SAMPLE_SIZE = 8;
+
+    private final ConcurrentHashMap<BucketKey, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<BucketKey, Lease> leases = new ConcurrentHashMap<>();
+    private final RateLimitBucketRepository rateLimitBucketRepository;
+    private final DatabaseDialect databaseDialect;
+    private final Clock clock;
+    private final long originMs;
     private final int capacity;
+    private final long capacityMilli;
     private final int refillPerSecond;
+    private final int maxBuckets;
+    private final Counter idleEvictions;
+    private final Counter capacityEvictions;
+    private final boolean sharedEnabled;
+    private final long leaseBlockMilli;
+    private final long leaseTtlMs;
+    private final long sharedSlowMs;
+    private final long sharedBackoffMs;
+    private final Timer sharedAcquireLatency;
+    private final Counter sharedFallbacks;
+
+    private volatile long sharedDegradedUntil;
 
-    public TrackRateLimiterService(AppProperties appProperties) {
-        this.capacity = Math.max(1, appProperties.getTracking().getRateLimitCapacity());
-        this.refillPerSecond = Math.max(1, appProperties.getTracking().getRateLimitRefillPerSecond());
+    public TrackRateLimiterService(
+            AppProperties appProperties,
+            Clock clock,
+            MeterRegistry meterRegistry,
+            RateLimitBucketRepository rateLimitBucketRepository,
+            DatabaseDialect databaseDialect
+    ) {
+        AppProperties.Tracking config = appProperties.getTracking();
+        this.rateLimitBucketRepository = rateLimitBucketRepository;
+        this.databaseDialect = databaseDialect;
+        this.clock = clock;
+        this.originMs = clock.millis();
+        this.capacity = Math.min(MAX_CAPACITY, Math.max(1, config.getRateLimitCapacity()));
+        this.capacityMilli = capacity * 1000L;
+        this.refillPerSecond = Math.max(1, config.getRateLimitRefillPerSecond());
+        this.maxBuckets = Math.max(1, config.getRateLimitMaxBuckets());
+        this.sharedEnabled = config.isRateLimitSharedEnabled();
+        this.leaseBlockMilli = Math.min(capacity, Math.max(1, config.getRateLimitLeaseBlock())) * 1000L;
+        this.leaseTtlMs = Math.max(1, config.getRateLimitLeaseTtlMs());
+        this.sharedSlowMs = Math.max(1, config.getRateLimitSharedSlowMs());
+        this.sharedBackoffMs = Math.max(0, config.getRateLimitSharedBackoffSeconds()) * 1000L;
+
+        Gauge.builder("tracking.rate_limit.buckets", buckets, Map::size)
+                .description("Rate limit buckets currently held in memory")
+                .register(meterRegistry);
+        this.idleEvictions = Counter.builder("tracking.rate_limit.evictions")
+                .tag("reason", "idle")
+                .description("Rate limit buckets dropped from memory")
+                .register(meterRegistry);
+        this.capacityEvictions = Counter.builder("tracking.rate_limit.evictions")
+                .tag("reason", "capacity")
+                .description("Rate limit buckets dropped from memory")
+                .register(meterRegistry);
+        this.sharedAcquireLatency = Timer.builder("tracking.rate_limit.shared.acquire")
+                .description("Round trips to the shared rate limit table to lease a block of tokens")
+                .register(meterRegistry);
+        this.sharedFallbacks = Counter.builder("tracking.rate_limit.shared.fallback")
+                .description("Times the shared limiter was slow or failing and local-only limiting took over")
+                .register(meterRegistry);
     }
 
     public boolean allow(String key) {
-        Bucket bucket = buckets.computeIfAbsent(key, ignored -> new Bucket(capacity));
-        synchronized (bucket) {
-            long now = System.nanoTime();
-            double elapsedSeconds = (now - bucket.lastRefillNanos) / 1_000_000_000.0;
-            bucket.tokens = Math.min(capacity, bucket.tokens + (elapsedSeconds * refillPerSecond));
-            bucket.lastRefillNanos = now;
-
-            if (bucket.tokens >= 1) {
-                bucket.tokens -= 1;
+        return allow(key, 1);
+    }
+
+    public boolean allow(String key, int permits) {
+        if (permits > capacity) {
+            return false;
+        }
+
+        BucketKey bucketKey = BucketKey.of(key);
+        long cost = permits * 1000L;
+        if (sharedEnabled && clock.millis() >= sharedDegradedUntil) {
+            try {
+                if (databaseDialect.isPostgres()) {
+                    return allowShared(bucketKey, cost);
+                }
+            } catch (DataAccessException ex) {
+                degradeShared("error", ex.getMessage());
+            }
+        }
+        return allowLocal(bucketKey, cost);
+    }
+
+    private boolean allowLocal(BucketKey bucketKey, long cost) {
+        while (true) {
+            long now = nowMs();
+            AtomicLong bucket = buckets.get(bucketKey);
+            if (bucket == null) {
+                bucket = new AtomicLong(pack(capacityMilli, now));
+                AtomicLong existing = buckets.putIfAbsent(bucketKey, bucket);
+                if (existing != null) {
+                    bucket = existing;
+                } else if (buckets.size() > maxBuckets) {
+                    evictOne(bucketKey);
+                }
+            }
+
+            while (true) {
+                long state = bucket.get();
+                if (state == RETIRED) {
+                    break;
+                }
+                long tokens = refill(state, now);
+                boolean allowed = tokens >= cost;
+                long next = pack(allowed ? tokens - cost : tokens, Math.max(now, lastRefill(state)));
+                if (bucket.compareAndSet(state, next)) {
+                    return allowed;
+                }
+            }
+            // Evicted between lookup and update; start again with whatever is mapped now.
+        }
+    }
+
+    // Spends a locally leased block first; only an empty or expired lease goes to the database, so the table sees
+    // about one statement per block of requests. A denial is remembered until a block could have refilled (at
+    // most one lease TTL), so a client flooding past its limit costs no more statements than one within it.
+    // Partial grants add up in the lease; leftovers of an expired lease are simply not returned.
+    private boolean allowShared(BucketKey bucketKey, long cost) {
+        long now = clock.millis();
+        Lease lease = leases.computeIfAbsent(bucketKey, key -> new Lease());
+        if (lease.tryTake(cost, now)) {
+            return true;
+        }
+        if (lease.isDenying(now)) {
+            return false;
+        }
+
+        long requested = Math.max(cost, leaseBlockMilli);
+        long startNanos = System.nanoTime();
+        long granted = rateLimitBucketRepository.acquire(
+                bucketKey.high(), bucketKey.low(), requested, capacityMilli, refillPerSecond);
+        long elapsedNanos = System.nanoTime() - startNanos;
+        sharedAcquireLatency.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        if (TimeUnit.NANOSECONDS.toMillis(elapsedNanos) > sharedSlowMs) {
+            degradeShared("slow", TimeUnit.NANOSECONDS.toMillis(elapsedNanos) + "ms");
+        }
+
+        return lease.settle(granted, cost, requested, now);
+    }
+
+    private void degradeShared(String reason, String detail) {
+        sharedFallbacks.increment();
+        sharedDegradedUntil = clock.millis() + sharedBackoffMs;
+        log.warn("rate_limit shared=degraded reason={} detail={} backoffMs={}", reason, detail, sharedBackoffMs);
+    }
+
+    @Scheduled(fixedDelay = 300_000)
+    public void purgeSharedBuckets() {
+        if (!sharedEnabled || clock.millis() < sharedDegradedUntil) {
+            return;
+        }
+        try {
+            if (databaseDialect.isPostgres()) {
+                long refillSeconds = capacityMilli / (refillPerSecond * 1000L) + 1;
+                rateLimitBucketRepository.purgeIdleLongerThan(refillSeconds + 60);
+            }
+        } catch (DataAccessException ex) {
+            log.warn("rate_limit shared=purge_failed error={}", ex.getMessage());
+        }
+    }
+
+    // A bucket that has refilled completely behaves exactly like a new one, so dropping it is invisible.
+    @Scheduled(fixedDelay = 30_000)
+    public void evictIdle() {
+        long now = nowMs();
+        for (Map.Entry<BucketKey, AtomicLong> entry : buckets.entrySet()) {
+            AtomicLong bucket = entry.getValue();
+            long state = bucket.get();
+            if (state == RETIRED || refill(state, now) < capacityMilli || !bucket.compareAndSet(state, RETIRED)) {
+                continue;
+            }
+            if (buckets.remove(entry.getKey(), bucket)) {
+                idleEvictions.increment();
+            }
+        }
+
+        long wallNow = clock.millis();
+        leases.values().removeIf(lease -> lease.isIdle(wallNow));
+    }
+
+    int bucketCount() {
+        return buckets.size();
+    }
+
+    // Over the hard cap: drop the least recently refilled of a few sampled buckets.
+    private void evictOne(BucketKey justAdded) {
+        BucketKey victimKey = null;
+        AtomicLong victim = null;
+        long oldest = Long.MAX_VALUE;
+        Iterator<Map.Entry<BucketKey, AtomicLong>> iterator = buckets.entrySet().iterator();
+        for (int sampled = 0; sampled < EVICTION_SAMPLE_SIZE && iterator.hasNext(); ) {
+            Map.Entry<BucketKey, AtomicLong> entry = iterator.next();
+            if (entry.getKey().equals(justAdded)) {
+                continue;
+            }
+            sampled++;
+            long sampledState = entry.getValue().get();
+            if (sampledState != RETIRED && lastRefill(sampledState) < oldest) {
+                oldest = lastRefill(sampledState);
+                victimKey = entry.getKey();
+                victim = entry.getValue();
+            }
+        }
+        if (victim == null) {
+            return;
+        }
+
+        long state = victim.get();
+        if (state == RETIRED || !victim.compareAndSet(state, RETIRED)) {
+            return;
+        }
+        if (buckets.remove(victimKey, victim)) {
+            capacityEvictions.increment();
+        }
+    }
+
+    private long refill(long state, long now) {
+        long elapsed = Math.max(0, now - lastRefill(state));
+        // Bounded so the multiplication cannot overflow on long idle periods.
+        long refillable = Math.min(elapsed, capacityMilli / refillPerSecond + 1);
+        return Math.min(capacityMilli, tokens(state) + refillable * refillPerSecond);
+    }
+
+    private long nowMs() {
+        return Math.max(0, clock.millis() - originMs) & TIME_MASK;
+    }
+
+    private static long pack(long milliTokens, long timeMs) {
+        return (milliTokens << TIME_BITS) | (timeMs & TIME_MASK);
+    }
+
+    private static long tokens(long state) {
+        return state >>> TIME_BITS;
+    }
+
+    private static long lastRefill(long state) {
+        return state & TIME_MASK;
+    }
+
+    // Guarded by its own monitor: only requests of one client contend on it, and the slow path is a database
+    // round trip anyway.
+    private final class Lease {
+
+        private long milliTokens;
+        private long expiresAt;
+        private long denyUntil;
+
+        private synchronized boolean tryTake(long cost, long now) {
+            if (now >= expiresAt || milliTokens < cost) {
+                return false;
+            }
+            milliTokens -= cost;
+            return true;
+        }
+
+        private synchronized boolean isDenying(long now) {
+            return now < denyUntil;
+        }
+
+        private synchronized boolean isIdle(long now) {
+            return now >= expiresAt && now >= denyUntil;
+        }
+
+        // Adds a grant to what is still held, so concurrent or partial grants are never overwritten.
+        private synchronized boolean settle(long granted, long cost, long requested, long now) {
+            milliTokens = (now < expiresAt ? milliTokens : 0) + granted;
+            expiresAt = now + leaseTtlMs;
+            if (milliTokens >= cost) {
+                milliTokens -= cost;
+                denyUntil = 0;
                 return true;
             }
+            // refillPerSecond tokens per second is the same number of milli-tokens per millisecond.
+            long refillMs = (requested - milliTokens + refillPerSecond - 1) / refillPerSecond;
+            denyUntil = now + Math.min(leaseTtlMs, Math.max(1, refillMs));
             return false;
         }
     }
 
-    private static final class Bucket {
-        private double tokens;
-        private long lastRefillNanos;
+    // Keys are SHA-256 hex ip hashes; their first 128 bits are as unique as the whole string.
+    private record BucketKey(long high, long low) {
 
-        private Bucket(int initialTokens) {
-            this.tokens = initialTokens;
-            this.lastRefillNanos = System.nanoTime();
+        static BucketKey of(String key) {
+            if (key != null && key.length() >= 32) {
+                try {
+                    return new BucketKey(
+                            Long.parseUnsignedLong(key, 0, 16, 16),
+                            Long.parseUnsignedLong(key, 16, 32, 16)
+                    );
+                } catch (NumberFormatException ignored) {
+                    // Not a hex hash; fall through.
+                }
+            }
+            UUID hashed = UUID.nameUUIDFromBytes(String.valueOf(key).getBytes(StandardCharsets.UTF_8));
+            return new BucketKey(hashed.getMostSignificantBits(), hashed.getLeastSignificantBits());
         }
     }
 }
@@ -0,0 +1,9 @@
+package com.nocountry.api.service;
+
+import com.nocountry.api.dto.TrackRequest;
+
+import java.time.Instant;
+import java.util.UUID;
+
+public record TrackingCommand(UUID eventId, TrackRequest request, RequestMetadata metadata, Instant receivedAt) {
+}
@@ -0,0 +1,154 @@
+package com.nocountry.api.service;
+
+import com.nocountry.api.config.AppProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Bloom filter of recently written tracking_event ids, split into two time slices so old ids age out
+// without a per-entry expiry. A miss is definite; a hit still has to be confirmed against the table.
+@Component
+public class TrackingEventFilter {
+
+    private static final int HASH_FUNCTIONS = 4;
+
+    private final Clock clock;
+    private final boolean enabled;
+    private final int wordsPerSlice;
+    private final long sliceMillis;
+    private final Counter misses;
+    private final Counter duplicates;
+    private final Counter falsePositives;
+
+    private volatile Slice current;
+    private volatile Slice previous;
+
+    public TrackingEventFilter(AppProperties appProperties, Clock clock, MeterRegistry meterRegistry) {
+        AppProperties.Tracking config = appProperties.getTracking();
+        this.clock = clock;
+        this.enabled = config.getDedupFilterMemoryKb() > 0;
+        // Half of the budget per slice, rounded down to a power of two so bit positions can be masked.
+        long budgetWords = Math.max(2L, config.getDedupFilterMemoryKb() * 1024L / Long.BYTES);
+        this.wordsPerSlice = Integer.highestOneBit((int) Math.min(Integer.MAX_VALUE, budgetWords / 2));
+        // Each slice covers half the window, so an id is remembered for between one and two halves of it.
+        this.sliceMillis = Math.max(1000L, config.getDedupFilterWindowSeconds() * 1000L / 2);
+
+        long now = clock.millis();
+        this.current = new Slice(enabled ? wordsPerSlice : 1, now);
+        this.previous = new Slice(1, now);
+
+        this.misses = Counter.builder("tracking.dedup.filter.checks")
+                .tag("result", "miss")
+                .description("Tracking event ids checked against the recent-event filter")
+                .register(meterRegistry);
+        this.duplicates = Counter.builder("tracking.dedup.filter.checks")
+                .tag("result", "duplicate")
+                .description("Tracking event ids checked against the recent-event filter")
+                .register(meterRegistry);
+        this.falsePositives = Counter.builder("tracking.dedup.filter.checks")
+                .tag("result", "false_positive")
+                .description("Tracking event ids checked against the recent-event filter")
+                .register(meterRegistry);
+        Gauge.builder("tracking.dedup.filter.false_positive_rate", this, TrackingEventFilter::falsePositiveRate)
+                .description("Share of new tracking events the filter wrongly reported as already written")
+                .register(meterRegistry);
+    }
+
+    public boolean mightContain(UUID id) {
+        if (!enabled) {
+            return false;
+        }
+        rotateIfDue();
+        long h1 = mix(id.getMostSignificantBits());
+        long h2 = mix(id.getLeastSignificantBits()) | 1L;
+        return current.contains(h1, h2) || previous.contains(h1, h2);
+    }
+
+    public void put(UUID id) {
+        if (!enabled) {
+            return;
+        }
+        rotateIfDue();
+        current.add(mix(id.getMostSignificantBits()), mix(id.getLeastSignificantBits()) | 1L);
+    }
+
+    public void recordMiss() {
+        misses.increment();
+    }
+
+    public void recordDuplicate() {
+        duplicates.increment();
+    }
+
+    public void recordFalsePositive() {
+        falsePositives.increment();
+    }
+
+    double falsePositiveRate() {
+        double wrong = falsePositives.count();
+        double fresh = wrong + misses.count();
+        return fresh == 0 ? 0.0 : wrong / fresh;
+    }
+
+    private void rotateIfDue() {
+        long now = clock.millis();
+        if (now - current.startedAt < sliceMillis) {
+            return;
+        }
+        synchronized (this) {
+            if (now - current.startedAt >= sliceMillis) {
+                previous = current;
+                current = new Slice(wordsPerSlice, now);
+            }
+        }
+    }
+
+    // 64-bit finalizer from MurmurHash3.
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    private static final class Slice {
+
+        private final AtomicLongArray words;
+        private final long bitMask;
+        private final long startedAt;
+
+        private Slice(int wordCount, long startedAt) {
+            this.words = new AtomicLongArray(wordCount);
+            this.bitMask = (long) wordCount * Long.SIZE - 1;
+            this.startedAt = startedAt;
+        }
+
+        private boolean contains(long h1, long h2) {
+            for (int i = 0; i < HASH_FUNCTIONS; i++) {
+                long bit = (h1 + i * h2) & bitMask;
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void add(long h1, long h2) {
+            for (int i = 0; i < HASH_FUNCTIONS; i++) {
+                long bit = (h1 + i * h2) & bitMask;
+                long mask = 1L << bit;
+                int index = (int) (bit >>> 6);
+                if ((words.get(index) & mask) == 0) {
+                    words.getAndAccumulate(index, mask, (existing, added) -> existing | added);
+                }
+            }
+        }
+    }
+}
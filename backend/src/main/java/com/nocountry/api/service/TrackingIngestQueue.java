@@ -0,0 +1,201 @@
+package com.nocountry.api.service;
+
+import com.nocountry.api.config.AppProperties;
+import com.nocountry.api.dto.TrackRequest;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Service
+public class TrackingIngestQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(TrackingIngestQueue.class);
+    private static final long SHUTDOWN_TIMEOUT_MS = 10_000;
+
+    private final TrackingService trackingService;
+    private final AppProperties.Tracking config;
+    private final BlockingQueue<TrackingCommand> queue;
+    private final DistributionSummary batchSize;
+    private final Timer flushLatency;
+    private final Counter rejected;
+    private final Counter failed;
+
+    private ExecutorService writers;
+    private volatile boolean running;
+
+    public TrackingIngestQueue(TrackingService trackingService, AppProperties appProperties, MeterRegistry meterRegistry) {
+        this.trackingService = trackingService;
+        this.config = appProperties.getTracking();
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, config.getIngestQueueCapacity()));
+
+        Gauge.builder("tracking.ingest.queue.depth", queue, BlockingQueue::size)
+                .description("Tracking events waiting to be persisted")
+                .register(meterRegistry);
+        this.batchSize = DistributionSummary.builder("tracking.ingest.batch.size")
+                .description("Tracking events persisted per flush")
+                .register(meterRegistry);
+        this.flushLatency = Timer.builder("tracking.ingest.flush.latency")
+                .description("Time spent persisting one tracking batch")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("tracking.ingest.rejected")
+                .description("Tracking events rejected because the queue was full")
+                .register(meterRegistry);
+        this.failed = Counter.builder("tracking.ingest.failed")
+                .description("Tracking events lost because they could not be persisted")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return config.isAsyncIngestEnabled();
+    }
+
+    public UUID enqueue(TrackRequest request, RequestMetadata metadata) {
+        TrackingCommand command = trackingService.toCommand(request, metadata);
+        enqueue(command);
+        return command.eventId();
+    }
+
+    public void enqueue(TrackingCommand command) {
+        if (!config.isEnabled()) {
+            log.info("track_event disabled=true eventId={} eventType={}", command.eventId(), command.request().getEventType());
+            return;
+        }
+        if (!running || !queue.offer(command)) {
+            rejected.increment();
+            throw new ServiceUnavailableException("Tracking ingest queue is full");
+        }
+    }
+
+    @PostConstruct
+    void start() {
+        if (!isEnabled()) {
+            return;
+        }
+
+        int threads = Math.max(1, config.getIngestWriterThreads());
+        AtomicInteger sequence = new AtomicInteger();
+        writers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "track-ingest-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        running = true;
+        for (int i = 0; i < threads; i++) {
+            writers.execute(this::drainLoop);
+        }
+        log.info("track_ingest started writers={} capacity={} batchSize={}",
+                threads, queue.remainingCapacity(), config.getIngestBatchSize());
+    }
+
+    @PreDestroy
+    void stop() {
+        if (writers == null) {
+            return;
+        }
+
+        running = false;
+        writers.shutdown();
+        try {
+            if (!writers.awaitTermination(SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                log.warn("track_ingest shutdown_timeout pending={}", queue.size());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drainLoop() {
+        int maxBatch = Math.max(1, config.getIngestBatchSize());
+        long flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, config.getIngestFlushIntervalMs()));
+        List<TrackingCommand> batch = new ArrayList<>(maxBatch);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                TrackingCommand first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                // Flush when the batch is full or the first event has waited one flush interval.
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < maxBatch) {
+                    queue.drainTo(batch, maxBatch - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= maxBatch || remaining <= 0 || !running) {
+                        break;
+                    }
+                    TrackingCommand next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                flush(batch);
+            } catch (InterruptedException ex) {
+                queue.drainTo(batch);
+                flush(batch);
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<TrackingCommand> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        long startNanos = System.nanoTime();
+        try {
+            trackingService.trackBatch(batch);
+            batchSize.record(batch.size());
+        } catch (Exception ex) {
+            log.warn("track_ingest status=flush_failed size={} error={}", batch.size(), ex.getMessage());
+            flushOneByOne(batch);
+        } finally {
+            flushLatency.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // A batch that fails as a whole is retried event by event, so one bad row only loses itself.
+    private void flushOneByOne(List<TrackingCommand> batch) {
+        if (batch.size() == 1) {
+            failed.increment();
+            return;
+        }
+
+        int persisted = 0;
+        for (TrackingCommand command : batch) {
+            try {
+                trackingService.trackBatch(List.of(command));
+                persisted++;
+            } catch (Exception ex) {
+                failed.increment();
+                log.warn("track_ingest status=event_failed eventId={} eventType={} error={}",
+                        command.eventId(), command.request().getEventType(), ex.getMessage());
+            }
+        }
+        batchSize.record(persisted);
+    }
+}
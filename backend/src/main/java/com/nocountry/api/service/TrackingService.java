@@ -11,14 +11,19 @@ import com.nocountry.api.repository.TrackingSessionRepository;
 import jakarta.transaction.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
 import java.time.Clock;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Service
 public class TrackingService {
@@ -30,19 +35,28 @@ public class TrackingService {
     private final ObjectMapper objectMapper;
     private final Clock clock;
     private final AppProperties appProperties;
+    private final TrackingSessionCache trackingSessionCache;
+    private final LastSeenCoalescer lastSeenCoalescer;
+    private final TrackingEventFilter trackingEventFilter;
 
     public TrackingService(
             TrackingSessionRepository trackingSessionRepository,
             TrackingEventRepository trackingEventRepository,
             ObjectMapper objectMapper,
             Clock clock,
-            AppProperties appProperties
+            AppProperties appProperties,
+            TrackingSessionCache trackingSessionCache,
+            LastSeenCoalescer lastSeenCoalescer,
+            TrackingEventFilter trackingEventFilter
     ) {
         this.trackingSessionRepository = trackingSessionRepository;
         this.trackingEventRepository = trackingEventRepository;
         this.objectMapper = objectMapper;
         this.clock = clock;
         this.appProperties = appProperties;
+        this.trackingSessionCache = trackingSessionCache;
+        this.lastSeenCoalescer = lastSeenCoalescer;
+        this.trackingEventFilter = trackingEventFilter;
     }
 
     @Transactional
@@ -55,22 +69,7 @@ public class TrackingService {
         }
 
         Instant now = Instant.now(clock);
-
-        TrackingSession session = trackingSessionRepository.findById(eventId)
-                .orElseGet(() -> newSession(eventId, now, request, metadata));
-
-        if (session.getCreatedAt() == null) {
-            session = newSession(eventId, now, request, metadata);
-        } else {
-            applyFirstTouch(session, request);
-            applyMetadataIfMissing(session, metadata);
-            if (isBlank(session.getLandingPath())) {
-                session.setLandingPath(request.getLandingPath());
-            }
-            session.setLastSeenAt(now);
-        }
-
-        saveSessionWithRetry(session, eventId, request, metadata, now);
+        writeSession(newSession(eventId, now, request, metadata));
 
         TrackingEvent event = new TrackingEvent();
         event.setId(buildEventIdempotencyId(eventId, request.getEventType()));
@@ -84,25 +83,85 @@ public class TrackingService {
         return eventId;
     }
 
+    public TrackingCommand toCommand(TrackRequest request, RequestMetadata metadata) {
+        return new TrackingCommand(parseOrGenerateEventId(request.getEventId()), request, metadata, Instant.now(clock));
+    }
+
     @Transactional
-    public void recordPurchaseEvent(UUID eventId, BigDecimal amount, String currency, String payloadJson) {
-        if (eventId == null || !appProperties.getTracking().isEnabled()) {
+    public void trackBatch(List<TrackingCommand> commands) {
+        if (commands.isEmpty() || !appProperties.getTracking().isEnabled()) {
             return;
         }
 
-        Instant now = Instant.now(clock);
+        // Events for the same eventId are folded into one session row before hitting the database.
+        Map<UUID, TrackingSession> sessions = new LinkedHashMap<>();
+        Map<UUID, TrackingEvent> events = new LinkedHashMap<>();
+        for (TrackingCommand command : commands) {
+            TrackRequest request = command.request();
+            TrackingSession session = sessions.get(command.eventId());
+            if (session == null) {
+                sessions.put(command.eventId(), newSession(command.eventId(), command.receivedAt(), request, command.metadata()));
+            } else {
+                applyFirstTouch(session, request);
+                applyMetadataIfMissing(session, command.metadata());
+                if (isBlank(session.getLandingPath())) {
+                    session.setLandingPath(request.getLandingPath());
+                }
+                if (command.receivedAt().isAfter(session.getLastSeenAt())) {
+                    session.setLastSeenAt(command.receivedAt());
+                }
+            }
+
+            TrackingEvent event = new TrackingEvent();
+            event.setId(buildEventIdempotencyId(command.eventId(), request.getEventType()));
+            event.setEventId(command.eventId());
+            event.setEventType(request.getEventType());
+            event.setCreatedAt(command.receivedAt());
+            event.setPayloadJson(serializeSafe(request));
+            events.putIfAbsent(event.getId(), event);
+        }
 
-        TrackingSession session = trackingSessionRepository.findById(eventId)
-                .orElseGet(() -> {
-                    TrackingSession s = new TrackingSession();
-                    s.setEventId(eventId);
-                    s.setCreatedAt(now);
-                    s.setLastSeenAt(now);
-                    return s;
-                });
+        List<TrackingSession> changed = new ArrayList<>(sessions.size());
+        for (TrackingSession session : sessions.values()) {
+            if (!trackingSessionCache.isUpToDate(session)) {
+                changed.add(session);
+            }
+        }
+        trackingSessionRepository.upsertAll(changed);
+        changed.forEach(trackingSessionCache::remember);
+        sessions.values().forEach(session -> lastSeenCoalescer.record(session.getEventId(), session.getLastSeenAt()));
+
+        // Only ids the filter may have seen need an existence check; the rest are new for sure.
+        Set<UUID> probable = events.keySet().stream()
+                .filter(trackingEventFilter::mightContain)
+                .collect(Collectors.toSet());
+        Set<UUID> existing = trackingEventRepository.findExistingIds(probable);
+        List<TrackingEvent> fresh = new ArrayList<>(events.size());
+        for (TrackingEvent event : events.values()) {
+            if (existing.contains(event.getId())) {
+                trackingEventFilter.recordDuplicate();
+                continue;
+            }
+            if (probable.contains(event.getId())) {
+                trackingEventFilter.recordFalsePositive();
+            } else {
+                trackingEventFilter.recordMiss();
+            }
+            fresh.add(event);
+        }
+        int inserted = trackingEventRepository.insertAllIgnoringDuplicates(fresh);
+        fresh.forEach(event -> trackingEventFilter.put(event.getId()));
+        log.info("track_batch size={} sessions={} inserted={}", commands.size(), sessions.size(), inserted);
+    }
 
-        session.setLastSeenAt(now);
-        savePurchaseSessionWithRetry(session, eventId, now);
+    @Transactional
+    public void recordPurchaseEvent(UUID eventId, BigDecimal amount, String currency, byte[] payloadJson) {
+        if (eventId == null || !appProperties.getTracking().isEnabled()) {
+            return;
+        }
+
+        Instant now = Instant.now(clock);
+        writeSession(minimalSession(eventId, now));
 
         TrackingEvent purchaseEvent = new TrackingEvent();
         purchaseEvent.setId(buildEventIdempotencyId(eventId, "purchase"));
@@ -111,7 +170,7 @@ public class TrackingService {
         purchaseEvent.setCreatedAt(now);
         purchaseEvent.setCurrency(currency);
         purchaseEvent.setValue(amount);
-        purchaseEvent.setPayloadJson(payloadJson);
+        purchaseEvent.setPayloadJson(new String(payloadJson, StandardCharsets.UTF_8));
         saveEventIdempotent(purchaseEvent, eventId, "purchase");
 
         log.info("track_event eventId={} eventType=purchase", eventId);
@@ -123,17 +182,24 @@ public class TrackingService {
             return;
         }
 
-        Instant now = Instant.now(clock);
-        TrackingSession session = trackingSessionRepository.findById(eventId)
-                .orElseGet(() -> {
-                    TrackingSession s = new TrackingSession();
-                    s.setEventId(eventId);
-                    s.setCreatedAt(now);
-                    s.setLastSeenAt(now);
-                    return s;
-                });
+        writeSession(minimalSession(eventId, Instant.now(clock)));
+    }
+
+    // The row is only written synchronously when it may gain first-touch data; last_seen_at is coalesced.
+    private void writeSession(TrackingSession session) {
+        if (!trackingSessionCache.isUpToDate(session)) {
+            trackingSessionRepository.upsert(session);
+            trackingSessionCache.remember(session);
+        }
+        lastSeenCoalescer.record(session.getEventId(), session.getLastSeenAt());
+    }
+
+    private TrackingSession minimalSession(UUID eventId, Instant now) {
+        TrackingSession session = new TrackingSession();
+        session.setEventId(eventId);
+        session.setCreatedAt(now);
         session.setLastSeenAt(now);
-        savePurchaseSessionWithRetry(session, eventId, now);
+        return session;
     }
 
     private TrackingSession newSession(UUID eventId, Instant now, TrackRequest request, RequestMetadata metadata) {
@@ -200,47 +266,22 @@ public class TrackingService {
         }
     }
 
-    private void saveSessionWithRetry(
-            TrackingSession session,
-            UUID eventId,
-            TrackRequest request,
-            RequestMetadata metadata,
-            Instant now
-    ) {
-        try {
-            trackingSessionRepository.saveAndFlush(session);
-        } catch (DataIntegrityViolationException ex) {
-            TrackingSession existing = trackingSessionRepository.findById(eventId)
-                    .orElseThrow(() -> ex);
-            applyFirstTouch(existing, request);
-            applyMetadataIfMissing(existing, metadata);
-            if (isBlank(existing.getLandingPath())) {
-                existing.setLandingPath(request.getLandingPath());
+    private void saveEventIdempotent(TrackingEvent event, UUID eventId, String eventType) {
+        if (trackingEventFilter.mightContain(event.getId())) {
+            if (trackingEventRepository.existsById(event.getId())) {
+                trackingEventFilter.recordDuplicate();
+                log.info("track_event idempotent_event eventId={} eventType={}", eventId, eventType);
+                return;
             }
-            existing.setLastSeenAt(now);
-            trackingSessionRepository.saveAndFlush(existing);
-            log.info("track_event idempotent_session eventId={} eventType={}", eventId, request.getEventType());
-        }
-    }
-
-    private void savePurchaseSessionWithRetry(TrackingSession session, UUID eventId, Instant now) {
-        try {
-            trackingSessionRepository.saveAndFlush(session);
-        } catch (DataIntegrityViolationException ex) {
-            TrackingSession existing = trackingSessionRepository.findById(eventId)
-                    .orElseThrow(() -> ex);
-            existing.setLastSeenAt(now);
-            trackingSessionRepository.saveAndFlush(existing);
-            log.info("track_event idempotent_session eventId={} eventType=purchase", eventId);
+            trackingEventFilter.recordFalsePositive();
+        } else {
+            trackingEventFilter.recordMiss();
         }
-    }
 
-    private void saveEventIdempotent(TrackingEvent event, UUID eventId, String eventType) {
-        try {
-            trackingEventRepository.saveAndFlush(event);
-        } catch (DataIntegrityViolationException ex) {
+        if (!trackingEventRepository.insertIfAbsent(event)) {
             log.info("track_event idempotent_event eventId={} eventType={}", eventId, eventType);
         }
+        trackingEventFilter.put(event.getId());
     }
 
     private UUID buildEventIdempotencyId(UUID eventId, String eventType) {
@@ -0,0 +1,145 @@
+package com.nocountry.api.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.nocountry.api.config.AppProperties;
+import com.nocountry.api.entity.TrackingSession;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.UUID;
+
+@Component
+public class TrackingSessionCache {
+
+    private final Cache<UUID, Snapshot> cache;
+    private final boolean enabled;
+
+    public TrackingSessionCache(AppProperties appProperties, MeterRegistry meterRegistry) {
+        AppProperties.Tracking config = appProperties.getTracking();
+        this.enabled = config.getSessionCacheMaxSize() > 0;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(Math.max(0, config.getSessionCacheMaxSize()))
+                .expireAfterWrite(Duration.ofSeconds(Math.max(1, config.getSessionCacheTtlSeconds())))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "tracking.session");
+    }
+
+    // True when the session row is known to exist and already holds every non-blank value of the candidate,
+    // so writing it again could only move last_seen_at.
+    public boolean isUpToDate(TrackingSession candidate) {
+        if (!enabled) {
+            return false;
+        }
+        Snapshot snapshot = cache.getIfPresent(candidate.getEventId());
+        return snapshot != null && snapshot.persisted() && !snapshot.wouldChange(candidate);
+    }
+
+    // Records what the database holds once the current transaction commits. The pending entry makes
+    // concurrent writers of the same session still take the full upsert path until then.
+    public void remember(TrackingSession written) {
+        if (!enabled) {
+            return;
+        }
+
+        UUID eventId = written.getEventId();
+        Snapshot pending = Snapshot.merge(cache.getIfPresent(eventId), written);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            cache.put(eventId, pending.asPersisted());
+            return;
+        }
+
+        cache.put(eventId, pending);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    cache.asMap().replace(eventId, pending, pending.asPersisted());
+                } else {
+                    cache.asMap().remove(eventId, pending);
+                }
+            }
+        });
+    }
+
+    record Snapshot(
+            String utmSource,
+            String utmMedium,
+            String utmCampaign,
+            String utmTerm,
+            String utmContent,
+            String gclid,
+            String fbclid,
+            String landingPath,
+            String userAgent,
+            String ipHash,
+            boolean persisted
+    ) {
+
+        static Snapshot merge(Snapshot previous, TrackingSession written) {
+            if (previous == null) {
+                return new Snapshot(
+                        written.getUtmSource(),
+                        written.getUtmMedium(),
+                        written.getUtmCampaign(),
+                        written.getUtmTerm(),
+                        written.getUtmContent(),
+                        written.getGclid(),
+                        written.getFbclid(),
+                        written.getLandingPath(),
+                        written.getUserAgent(),
+                        written.getIpHash(),
+                        false
+                );
+            }
+            return new Snapshot(
+                    firstTouch(previous.utmSource, written.getUtmSource()),
+                    firstTouch(previous.utmMedium, written.getUtmMedium()),
+                    firstTouch(previous.utmCampaign, written.getUtmCampaign()),
+                    firstTouch(previous.utmTerm, written.getUtmTerm()),
+                    firstTouch(previous.utmContent, written.getUtmContent()),
+                    firstTouch(previous.gclid, written.getGclid()),
+                    firstTouch(previous.fbclid, written.getFbclid()),
+                    firstTouch(previous.landingPath, written.getLandingPath()),
+                    firstTouch(previous.userAgent, written.getUserAgent()),
+                    firstTouch(previous.ipHash, written.getIpHash()),
+                    false
+            );
+        }
+
+        Snapshot asPersisted() {
+            return new Snapshot(utmSource, utmMedium, utmCampaign, utmTerm, utmContent,
+                    gclid, fbclid, landingPath, userAgent, ipHash, true);
+        }
+
+        boolean wouldChange(TrackingSession candidate) {
+            return fills(utmSource, candidate.getUtmSource())
+                    || fills(utmMedium, candidate.getUtmMedium())
+                    || fills(utmCampaign, candidate.getUtmCampaign())
+                    || fills(utmTerm, candidate.getUtmTerm())
+                    || fills(utmContent, candidate.getUtmContent())
+                    || fills(gclid, candidate.getGclid())
+                    || fills(fbclid, candidate.getFbclid())
+                    || fills(landingPath, candidate.getLandingPath())
+                    || fills(userAgent, candidate.getUserAgent())
+                    || fills(ipHash, candidate.getIpHash());
+        }
+
+        private static boolean fills(String known, String incoming) {
+            return isBlank(known) && !isBlank(incoming);
+        }
+
+        private static String firstTouch(String known, String incoming) {
+            return isBlank(known) ? incoming : known;
+        }
+
+        private static boolean isBlank(String value) {
+            return value == null || value.isBlank();
+        }
+    }
+}
@@ -0,0 +1,10 @@
+-- Shared token buckets for the optional cluster-wide /api/track rate limiter.
+-- Keys are the first 128 bits of the client ip hash; rows that have fully refilled are purged periodically.
+CREATE TABLE IF NOT EXISTS rate_limit_bucket (
+    key_high BIGINT NOT NULL,
+    key_low BIGINT NOT NULL,
+    milli_tokens BIGINT NOT NULL,
+    last_grant BIGINT NOT NULL,
+    refilled_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (key_high, key_low)
+);
@@ -0,0 +1,18 @@
+-- Inbox mode: the webhook stores the verified payload and acks; workers process rows in the background.
+ALTER TABLE stripe_webhook_event
+    ADD COLUMN IF NOT EXISTS payload TEXT,
+    ADD COLUMN IF NOT EXISTS ordering_key VARCHAR(255),
+    ADD COLUMN IF NOT EXISTS user_agent VARCHAR(1024),
+    ADD COLUMN IF NOT EXISTS client_ip VARCHAR(64),
+    ADD COLUMN IF NOT EXISTS attempts INT NOT NULL DEFAULT 0,
+    ADD COLUMN IF NOT EXISTS next_attempt_at TIMESTAMP,
+    ADD COLUMN IF NOT EXISTS locked_until TIMESTAMP;
+
+-- Only pending rows are scanned by the claim query and the per-payment-intent ordering check.
+CREATE INDEX IF NOT EXISTS idx_stripe_webhook_event_pending
+    ON stripe_webhook_event(received_at)
+    WHERE status IN ('QUEUED', 'RETRY');
+
+CREATE INDEX IF NOT EXISTS idx_stripe_webhook_event_pending_ordering_key
+    ON stripe_webhook_event(ordering_key, received_at)
+    WHERE status IN ('QUEUED', 'RETRY');
@@ -0,0 +1,22 @@
+-- One row per integration call for a successful payment, written in the same transaction as the order.
+CREATE TABLE IF NOT EXISTS integration_outbox (
+    id UUID PRIMARY KEY,
+    integration VARCHAR(32) NOT NULL,
+    reference_id VARCHAR(255),
+    payload TEXT NOT NULL,
+    status VARCHAR(16) NOT NULL,
+    attempts INT NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP NOT NULL,
+    locked_until TIMESTAMP,
+    last_error TEXT,
+    created_at TIMESTAMP NOT NULL,
+    completed_at TIMESTAMP
+);
+
+-- Only PENDING rows are scanned by the drain query.
+CREATE INDEX IF NOT EXISTS idx_integration_outbox_pending
+    ON integration_outbox(next_attempt_at)
+    WHERE status = 'PENDING';
+
+CREATE INDEX IF NOT EXISTS idx_integration_outbox_reference_id
+    ON integration_outbox(reference_id);
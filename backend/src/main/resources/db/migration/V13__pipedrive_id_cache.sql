@@ -0,0 +1,12 @@
+-- Pipedrive person ids already resolved for a customer email (kind PERSON), so repeat customers skip the
+-- search endpoint. verified_at is when Pipedrive last confirmed the id; rows past the TTL are purged.
+CREATE TABLE IF NOT EXISTS pipedrive_id_cache (
+    kind VARCHAR(16) NOT NULL,
+    lookup_key VARCHAR(255) NOT NULL,
+    pipedrive_id BIGINT NOT NULL,
+    verified_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (kind, lookup_key)
+);
+
+CREATE INDEX IF NOT EXISTS idx_pipedrive_id_cache_verified_at
+    ON pipedrive_id_cache(verified_at);
@@ -0,0 +1,7 @@
+-- SKIPPED integration outcomes counted per integration and minute instead of one integrations_log row each.
+CREATE TABLE IF NOT EXISTS integration_skip_rollup (
+    integration VARCHAR(64) NOT NULL,
+    bucket_start TIMESTAMP NOT NULL,
+    skipped BIGINT NOT NULL,
+    PRIMARY KEY (integration, bucket_start)
+);
@@ -0,0 +1,80 @@
+package com.nocountry.api.benchmark;
+
+import com.nocountry.api.config.AppProperties;
+import com.nocountry.api.service.RequestMetadata;
+import com.nocountry.api.service.RequestMetadataResolver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+// Compares the resolver against the previous per-call MessageDigest / split / String.format implementation.
+// Run with -prof gc to see the allocation difference.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestMetadataResolverBenchmark {
+
+    private MockHttpServletRequest request;
+    private RequestMetadataResolver plainResolver;
+    private RequestMetadataResolver keyedResolver;
+
+    @Setup
+    public void setUp() {
+        request = new MockHttpServletRequest();
+        request.addHeader("User-Agent", "Mozilla/5.0 (Macintosh; Intel Mac OS X 14_4) AppleWebKit/605.1.15");
+        request.addHeader("X-Forwarded-For", "203.0.113.195, 70.41.3.18, 150.172.238.178");
+        request.setRemoteAddr("10.0.0.1");
+
+        plainResolver = new RequestMetadataResolver(new AppProperties());
+        AppProperties keyed = new AppProperties();
+        keyed.getTracking().setIpHashSecret("benchmark-secret");
+        keyedResolver = new RequestMetadataResolver(keyed);
+    }
+
+    @Benchmark
+    public RequestMetadata legacy() {
+        String userAgent = request.getHeader("User-Agent");
+        String clientIp = request.getHeader("X-Forwarded-For").split(",")[0].trim();
+        return new RequestMetadata(userAgent, clientIp, legacySha256Hex(clientIp));
+    }
+
+    @Benchmark
+    public RequestMetadata current() {
+        return plainResolver.resolve(request);
+    }
+
+    @Benchmark
+    public RequestMetadata currentKeyed() {
+        return keyedResolver.resolve(request);
+    }
+
+    private static String legacySha256Hex(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(value.getBytes(StandardCharsets.UTF_8));
+            StringBuilder builder = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                builder.append(String.format("%02x", b));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.nocountry.api.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nocountry.api.integration.stripe.StripeEvent;
+import com.nocountry.api.integration.stripe.StripeEventParser;
+import com.nocountry.api.support.TestPayloads;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Compares the streaming parser against the previous path, which built a full JsonNode tree twice per
+// webhook (once for the event id, once after the signature check). Run with -prof gc to see allocations.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StripeEventParserBenchmark {
+
+    @Param({"checkout_session", "payment_intent"})
+    public String kind;
+
+    private String payload;
+    private ObjectMapper objectMapper;
+    private StripeEventParser parser;
+
+    @Setup
+    public void setUp() {
+        payload = "checkout_session".equals(kind)
+                ? TestPayloads.checkoutSessionCompleted("evt_bench_001", "cs_bench_001", "pi_bench_001", "paid")
+                : TestPayloads.paymentIntentEvent("evt_bench_001", "payment_intent.succeeded", "pi_bench_001",
+                "cs_bench_001", "succeeded");
+        objectMapper = new ObjectMapper();
+        parser = new StripeEventParser(objectMapper);
+    }
+
+    @Benchmark
+    public void legacy(Blackhole blackhole) throws IOException {
+        blackhole.consume(objectMapper.readTree(payload).path("id").asText());
+        JsonNode root = objectMapper.readTree(payload);
+        JsonNode object = root.path("data").path("object");
+        blackhole.consume(root.path("type").asText());
+        blackhole.consume(object.path("id").asText());
+        blackhole.consume(object.path("payment_intent").asText());
+        blackhole.consume(object.path("currency").asText());
+        blackhole.consume(object.path("amount_total").asLong(object.path("amount_received").asLong(0)));
+        blackhole.consume(object.path("payment_status").asText());
+        blackhole.consume(object.path("metadata").path("client_id").asText());
+    }
+
+    @Benchmark
+    public StripeEvent current() throws IOException {
+        return parser.parse(payload);
+    }
+}
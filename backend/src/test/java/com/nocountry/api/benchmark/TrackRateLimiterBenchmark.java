@@ -0,0 +1,100 @@
+package com.nocountry.api.benchmark;
+
+import com.nocountry.api.config.AppProperties;
+import com.nocountry.api.service.TrackRateLimiterService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Clock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// All threads hit one key, the worst case for a shared NAT or a missing X-Forwarded-For header.
+// "monitor" reproduces the previous String-keyed map of synchronized double-based buckets.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrackRateLimiterBenchmark {
+
+    private static final String KEY = "ea3f6e8890630ff034f9906f0c2d429df551b6505c1d9d8d28b0262f650dbb68";
+    private static final int CAPACITY = 30;
+    private static final int REFILL_PER_SECOND = 10;
+
+    private TrackRateLimiterService limiter;
+    private ConcurrentHashMap<String, MonitorBucket> monitorBuckets;
+
+    @Setup
+    public void setUp() {
+        AppProperties appProperties = new AppProperties();
+        appProperties.getTracking().setRateLimitCapacity(CAPACITY);
+        appProperties.getTracking().setRateLimitRefillPerSecond(REFILL_PER_SECOND);
+        limiter = new TrackRateLimiterService(appProperties, Clock.systemUTC(), new SimpleMeterRegistry(), null, null);
+        monitorBuckets = new ConcurrentHashMap<>();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean cas1() {
+        return limiter.allow(KEY);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean cas8() {
+        return limiter.allow(KEY);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public boolean cas64() {
+        return limiter.allow(KEY);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean monitor1() {
+        return monitorBuckets.computeIfAbsent(KEY, ignored -> new MonitorBucket()).allow(1);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean monitor8() {
+        return monitorBuckets.computeIfAbsent(KEY, ignored -> new MonitorBucket()).allow(1);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public boolean monitor64() {
+        return monitorBuckets.computeIfAbsent(KEY, ignored -> new MonitorBucket()).allow(1);
+    }
+
+    private static final class MonitorBucket {
+        private double tokens = CAPACITY;
+        private long lastRefillNanos = System.nanoTime();
+
+        private synchronized boolean allow(int permits) {
+            long now = System.nanoTime();
+            double elapsedSeconds = (now - lastRefillNanos) / 1_000_000_000.0;
+            tokens = Math.min(CAPACITY, tokens + (elapsedSeconds * REFILL_PER_SECOND));
+            lastRefillNanos = now;
+            if (tokens >= permits) {
+                tokens -= permits;
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.nocountry.api.controller;
+
+import com.nocountry.api.entity.IntegrationOutboxEntry;
+import com.nocountry.api.integration.IntegrationOutcome;
+import com.nocountry.api.integration.ga4.Ga4MeasurementProtocolService;
+import com.nocountry.api.integration.meta.MetaCapiService;
+import com.nocountry.api.integration.pipedrive.PipedriveService;
+import com.nocountry.api.repository.IntegrationOutboxRepository;
+import com.nocountry.api.repository.OrderRepository;
+import com.nocountry.api.repository.StripeWebhookEventRepository;
+import com.nocountry.api.repository.TrackingEventRepository;
+import com.nocountry.api.repository.TrackingSessionRepository;
+import com.nocountry.api.service.IntegrationOutboxService;
+import com.nocountry.api.support.MutableClock;
+import com.nocountry.api.support.TestPayloads;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// The scheduled drainer is off and the clock is fixed: each drain() below is one deterministic pass, and
+// backoff only elapses when the test advances the clock.
+@SpringBootTest(properties = {
+        "app.integrations.outbox-enabled=true",
+        "app.integrations.outbox-drainer-enabled=false",
+        "app.integrations.outbox-backoff-base-seconds=4",
+        "app.integrations.outbox-max-attempts-by-integration[PIPEDRIVE]=2"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class IntegrationOutboxTest {
+
+    private static final String STRIPE_SECRET = "test_webhook_secret";
+    private static final long MAX_FIRST_BACKOFF_SECONDS = 4;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private IntegrationOutboxService integrationOutboxService;
+
+    @Autowired
+    private MutableClock clock;
+
+    @Autowired
+    private IntegrationOutboxRepository integrationOutboxRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private StripeWebhookEventRepository stripeWebhookEventRepository;
+
+    @Autowired
+    private TrackingSessionRepository trackingSessionRepository;
+
+    @Autowired
+    private TrackingEventRepository trackingEventRepository;
+
+    @MockBean
+    private MetaCapiService metaCapiService;
+
+    @MockBean
+    private Ga4MeasurementProtocolService ga4MeasurementProtocolService;
+
+    @MockBean
+    private PipedriveService pipedriveService;
+
+    @BeforeEach
+    void cleanDatabase() {
+        integrationOutboxRepository.deleteAll();
+        orderRepository.deleteAll();
+        stripeWebhookEventRepository.deleteAll();
+        trackingEventRepository.deleteAll();
+        trackingSessionRepository.deleteAll();
+    }
+
+    @Test
+    void shouldRetryRetryableFailuresAndDeadLetterPermanentOnes() throws Exception {
+        when(metaCapiService.sendPurchase(any()))
+                .thenReturn(IntegrationOutcome.RETRYABLE_FAILURE, IntegrationOutcome.SENT);
+        when(ga4MeasurementProtocolService.sendPurchase(any())).thenReturn(IntegrationOutcome.SENT);
+        when(pipedriveService.sendPurchase(any())).thenReturn(IntegrationOutcome.PERMANENT_FAILURE);
+
+        postCheckout("evt_outbox_001", "cs_outbox_001", "pi_outbox_001");
+
+        integrationOutboxService.drain();
+        Map<String, IntegrationOutboxEntry> rows = rows("cs_outbox_001");
+        assertEquals("PENDING", rows.get("META_CAPI").getStatus());
+        assertEquals(1, rows.get("META_CAPI").getAttempts());
+        assertEquals("SENT", rows.get("GA4_MP").getStatus());
+        assertEquals(1, rows.get("GA4_MP").getAttempts());
+        assertEquals("DEAD", rows.get("PIPEDRIVE").getStatus());
+        assertEquals(1, rows.get("PIPEDRIVE").getAttempts());
+
+        // Still backing off.
+        integrationOutboxService.drain();
+        assertEquals(1, rows("cs_outbox_001").get("META_CAPI").getAttempts());
+
+        clock.advanceSeconds(MAX_FIRST_BACKOFF_SECONDS);
+        integrationOutboxService.drain();
+        rows = rows("cs_outbox_001");
+        assertEquals("SENT", rows.get("META_CAPI").getStatus());
+        assertEquals(2, rows.get("META_CAPI").getAttempts());
+    }
+
+    @Test
+    void shouldDeadLetterAfterPerIntegrationMaxAttempts() throws Exception {
+        when(metaCapiService.sendPurchase(any())).thenReturn(IntegrationOutcome.SKIPPED);
+        when(ga4MeasurementProtocolService.sendPurchase(any())).thenReturn(IntegrationOutcome.SKIPPED);
+        when(pipedriveService.sendPurchase(any())).thenReturn(IntegrationOutcome.RETRYABLE_FAILURE);
+
+        postCheckout("evt_outbox_002", "cs_outbox_002", "pi_outbox_002");
+
+        integrationOutboxService.drain();
+        assertEquals("PENDING", rows("cs_outbox_002").get("PIPEDRIVE").getStatus());
+
+        clock.advanceSeconds(MAX_FIRST_BACKOFF_SECONDS);
+        integrationOutboxService.drain();
+        Map<String, IntegrationOutboxEntry> rows = rows("cs_outbox_002");
+        assertEquals("SKIPPED", rows.get("META_CAPI").getStatus());
+        assertEquals("DEAD", rows.get("PIPEDRIVE").getStatus());
+        assertEquals(2, rows.get("PIPEDRIVE").getAttempts());
+    }
+
+    private void postCheckout(String stripeEventId, String stripeSessionId, String paymentIntentId) throws Exception {
+        String payload = TestPayloads.checkoutSessionCompleted(stripeEventId, stripeSessionId, paymentIntentId, "paid");
+        mockMvc.perform(post("/api/stripe/webhook")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header("Stripe-Signature", TestPayloads.buildStripeSignatureHeader(payload, STRIPE_SECRET))
+                        .content(payload))
+                .andExpect(status().isOk());
+    }
+
+    private Map<String, IntegrationOutboxEntry> rows(String referenceId) {
+        Map<String, IntegrationOutboxEntry> rows = integrationOutboxRepository.findByReferenceId(referenceId).stream()
+                .collect(Collectors.toMap(IntegrationOutboxEntry::getIntegration, row -> row));
+        assertEquals(3, rows.size());
+        return rows;
+    }
+
+    @TestConfiguration
+    static class FixedClockConfig {
+
+        @Bean
+        @Primary
+        MutableClock fixedClock() {
+            return new MutableClock(Instant.parse("2026-03-01T10:00:00Z"));
+        }
+    }
+}
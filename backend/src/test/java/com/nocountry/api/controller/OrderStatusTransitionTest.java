@@ -2,6 +2,7 @@ package com.nocountry.api.controller;
 
 import com.nocountry.api.entity.OrderRecord;
 import com.nocountry.api.integration.PurchaseIntegrationDispatcher;
+import com.nocountry.api.integration.PurchaseIntegrationPayload;
 import com.nocountry.api.repository.OrderRepository;
 import com.nocountry.api.repository.StripeWebhookEventRepository;
 import com.nocountry.api.repository.TrackingEventRepository;
@@ -16,8 +17,20 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -97,4 +110,124 @@ class OrderStatusTransitionTest {
         assertEquals("SUCCESS", paidOrder.getBusinessStatus());
         assertEquals(1L, orderRepository.count());
     }
+
+    @Test
+    void shouldDispatchPurchaseOnceWhenPaymentIntentSucceedsBeforeCheckoutCompletes() throws Exception {
+        String paymentIntentId = "pi_transition_002";
+        String stripeSessionId = "cs_transition_002";
+
+        postWebhook(TestPayloads.paymentIntentEvent(
+                "evt_transition_succeeded",
+                "payment_intent.succeeded",
+                paymentIntentId,
+                stripeSessionId,
+                "succeeded"
+        ));
+        postWebhook(TestPayloads.checkoutSessionCompleted("evt_transition_completed", stripeSessionId, paymentIntentId, "paid"));
+
+        OrderRecord order = orderRepository.findByStripeSessionId(stripeSessionId).orElseThrow();
+        assertEquals(paymentIntentId, order.getPaymentIntentId());
+        assertEquals("PAID", order.getStatus());
+        assertEquals(1L, orderRepository.count());
+        verify(purchaseIntegrationDispatcher, times(1)).dispatchPurchase(any());
+    }
+
+    @Test
+    void shouldDispatchPurchaseOnceWhenPaymentEventsArriveConcurrently() throws Exception {
+        String paymentIntentId = "pi_transition_003";
+        String stripeSessionId = "cs_transition_003";
+        String succeeded = TestPayloads.paymentIntentEvent(
+                "evt_concurrent_succeeded",
+                "payment_intent.succeeded",
+                paymentIntentId,
+                stripeSessionId,
+                "succeeded"
+        );
+        // Both events carry the tracking event id, so whichever commits second has nothing new to dispatch.
+        String completed = TestPayloads.checkoutSessionCompletedWithEventId(
+                "evt_concurrent_completed", stripeSessionId, paymentIntentId, "paid");
+
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() -> postWebhookUnchecked(succeeded));
+        CompletableFuture<Void> second = CompletableFuture.runAsync(() -> postWebhookUnchecked(completed));
+        CompletableFuture.allOf(first, second).get(10, TimeUnit.SECONDS);
+
+        OrderRecord order = orderRepository.findByStripeSessionId(stripeSessionId).orElseThrow();
+        assertEquals(paymentIntentId, order.getPaymentIntentId());
+        // Either event may commit last, so only the business status is deterministic.
+        assertEquals("SUCCESS", order.getBusinessStatus());
+        assertEquals(1L, orderRepository.count());
+        verify(purchaseIntegrationDispatcher, times(1)).dispatchPurchase(any());
+    }
+
+    @Test
+    void shouldDispatchPurchaseOnlyAfterTheOrderTransactionHasEnded() throws Exception {
+        AtomicBoolean dispatchedInTransaction = new AtomicBoolean(true);
+        doAnswer(invocation -> {
+            dispatchedInTransaction.set(TransactionSynchronizationManager.isActualTransactionActive());
+            return null;
+        }).when(purchaseIntegrationDispatcher).dispatchPurchase(any());
+
+        postWebhook(TestPayloads.checkoutSessionCompleted("evt_transition_outside", "cs_transition_004",
+                "pi_transition_004", "paid"));
+
+        verify(purchaseIntegrationDispatcher, times(1)).dispatchPurchase(any());
+        assertFalse(dispatchedInTransaction.get());
+    }
+
+    @Test
+    void shouldNotHoldTheOrderLockWhileDispatching() throws Exception {
+        String slowSessionId = "cs_transition_slow";
+        // Same lock stripe as the slow order, so it would wait for it if the lock were held during dispatch.
+        String otherSessionId = sameStripeAs(slowSessionId);
+        CountDownLatch dispatching = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            PurchaseIntegrationPayload payload = invocation.getArgument(0);
+            if (slowSessionId.equals(payload.stripeSessionId())) {
+                dispatching.countDown();
+                release.await(10, TimeUnit.SECONDS);
+            }
+            return null;
+        }).when(purchaseIntegrationDispatcher).dispatchPurchase(any());
+
+        CompletableFuture<Void> slow = CompletableFuture.runAsync(() -> postWebhookUnchecked(
+                TestPayloads.checkoutSessionCompleted("evt_transition_slow", slowSessionId, "pi_transition_slow", "paid")));
+        try {
+            assertTrue(dispatching.await(5, TimeUnit.SECONDS));
+            CompletableFuture.runAsync(() -> postWebhookUnchecked(
+                    TestPayloads.checkoutSessionCompleted("evt_transition_other", otherSessionId, "pi_transition_other", "paid")))
+                    .get(5, TimeUnit.SECONDS);
+        } finally {
+            release.countDown();
+        }
+        slow.get(10, TimeUnit.SECONDS);
+
+        assertEquals("SUCCESS", orderRepository.findByStripeSessionId(otherSessionId).orElseThrow().getBusinessStatus());
+    }
+
+    private String sameStripeAs(String key) {
+        int stripe = Math.floorMod(key.hashCode(), 64);
+        for (int i = 0; ; i++) {
+            String candidate = "cs_transition_other_" + i;
+            if (Math.floorMod(candidate.hashCode(), 64) == stripe) {
+                return candidate;
+            }
+        }
+    }
+
+    private void postWebhookUnchecked(String payload) {
+        try {
+            postWebhook(payload);
+        } catch (Exception ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private void postWebhook(String payload) throws Exception {
+        mockMvc.perform(post("/api/stripe/webhook")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header("Stripe-Signature", TestPayloads.buildStripeSignatureHeader(payload, STRIPE_SECRET))
+                        .content(payload))
+                .andExpect(status().isOk());
+    }
 }
@@ -7,7 +7,9 @@ import com.nocountry.api.service.AdminQueryService;
 import com.nocountry.api.service.RequestMetadata;
 import com.nocountry.api.service.RequestMetadataResolver;
 import com.nocountry.api.service.StripeWebhookService;
+import com.nocountry.api.service.TrackBatchService;
 import com.nocountry.api.service.TrackRateLimiterService;
+import com.nocountry.api.service.TrackingIngestQueue;
 import com.nocountry.api.service.TrackingService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -51,6 +53,12 @@ class SecurityConfigTest {
     @MockBean
     private TrackingService trackingService;
 
+    @MockBean
+    private TrackingIngestQueue trackingIngestQueue;
+
+    @MockBean
+    private TrackBatchService trackBatchService;
+
     @MockBean
     private RequestMetadataResolver requestMetadataResolver;
 
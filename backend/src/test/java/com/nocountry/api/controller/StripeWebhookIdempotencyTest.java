@@ -94,4 +94,17 @@ class StripeWebhookIdempotencyTest {
         assertEquals("PAID", order.getStatus());
         assertEquals("SUCCESS", order.getBusinessStatus());
     }
+
+    @Test
+    void shouldRejectOversizedBodyBeforeVerifyingIt() throws Exception {
+        String payload = "{\"id\": \"evt_idem_large\", \"padding\": \"" + "x".repeat(1_048_576) + "\"}";
+
+        mockMvc.perform(post("/api/stripe/webhook")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header("Stripe-Signature", TestPayloads.buildStripeSignatureHeader(payload, STRIPE_SECRET))
+                        .content(payload))
+                .andExpect(status().isPayloadTooLarge());
+
+        assertEquals(0L, stripeWebhookEventRepository.count());
+    }
 }
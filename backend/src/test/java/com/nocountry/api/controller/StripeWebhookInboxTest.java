@@ -0,0 +1,141 @@
+package com.nocountry.api.controller;
+
+import com.nocountry.api.entity.OrderRecord;
+import com.nocountry.api.entity.StripeWebhookEvent;
+import com.nocountry.api.integration.PurchaseIntegrationDispatcher;
+import com.nocountry.api.repository.OrderRepository;
+import com.nocountry.api.repository.QueuedStripeEvent;
+import com.nocountry.api.repository.StripeWebhookEventRepository;
+import com.nocountry.api.repository.TrackingEventRepository;
+import com.nocountry.api.repository.TrackingSessionRepository;
+import com.nocountry.api.support.TestPayloads;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "app.stripe.inbox-enabled=true",
+        "app.stripe.inbox-poll-interval-ms=50"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class StripeWebhookInboxTest {
+
+    private static final String STRIPE_SECRET = "test_webhook_secret";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private StripeWebhookEventRepository stripeWebhookEventRepository;
+
+    @Autowired
+    private TrackingSessionRepository trackingSessionRepository;
+
+    @Autowired
+    private TrackingEventRepository trackingEventRepository;
+
+    @MockBean
+    private PurchaseIntegrationDispatcher purchaseIntegrationDispatcher;
+
+    @BeforeEach
+    void cleanDatabase() {
+        orderRepository.deleteAll();
+        stripeWebhookEventRepository.deleteAll();
+        trackingEventRepository.deleteAll();
+        trackingSessionRepository.deleteAll();
+    }
+
+    @Test
+    void shouldAckThenProcessQueuedEventInBackground() throws Exception {
+        String payload = TestPayloads.checkoutSessionCompleted("evt_inbox_001", "cs_inbox_001", "pi_inbox_001", "paid");
+        String signature = TestPayloads.buildStripeSignatureHeader(payload, STRIPE_SECRET);
+
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(post("/api/stripe/webhook")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .header("Stripe-Signature", signature)
+                            .content(payload))
+                    .andExpect(status().isOk());
+        }
+
+        StripeWebhookEvent webhookEvent = awaitStatus("evt_inbox_001", "PROCESSED");
+        assertEquals(1, webhookEvent.getAttempts());
+        assertEquals(1L, orderRepository.count());
+        OrderRecord order = orderRepository.findByStripeSessionId("cs_inbox_001").orElseThrow();
+        assertEquals("SUCCESS", order.getBusinessStatus());
+        verify(purchaseIntegrationDispatcher, times(1)).dispatchPurchase(any());
+    }
+
+    @Test
+    void shouldRejectInvalidSignatureWithoutQueueing() throws Exception {
+        String payload = TestPayloads.checkoutSessionCompleted("evt_inbox_002", "cs_inbox_002", "pi_inbox_002", "paid");
+
+        mockMvc.perform(post("/api/stripe/webhook")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header("Stripe-Signature", "t=1,v1=deadbeef")
+                        .content(payload))
+                .andExpect(status().isBadRequest());
+
+        assertEquals(0L, stripeWebhookEventRepository.count());
+    }
+
+    @Test
+    void shouldClaimOnlyTheOldestPendingEventPerPaymentIntent() {
+        // Received in the future so the background workers leave these rows alone.
+        Instant receivedAt = Instant.now().plusSeconds(3600);
+        stripeWebhookEventRepository.enqueue("evt_order_1", "{}", "pi_order", null, null, receivedAt);
+        stripeWebhookEventRepository.enqueue("evt_order_2", "{}", "pi_order", null, null, receivedAt.plusSeconds(1));
+        stripeWebhookEventRepository.enqueue("evt_other", "{}", "pi_other", null, null, receivedAt.plusSeconds(2));
+
+        Instant now = receivedAt.plusSeconds(60);
+        List<QueuedStripeEvent> first = stripeWebhookEventRepository.claim(10, now, now.plusSeconds(60));
+        assertEquals(List.of("evt_order_1", "evt_other"), first.stream().map(QueuedStripeEvent::stripeEventId).sorted().toList());
+
+        assertTrue(stripeWebhookEventRepository.markProcessed(first.get(0), null, now));
+        assertTrue(stripeWebhookEventRepository.markProcessed(first.get(1), null, now));
+        List<QueuedStripeEvent> second = stripeWebhookEventRepository.claim(10, now, now.plusSeconds(60));
+        assertEquals(List.of("evt_order_2"), second.stream().map(QueuedStripeEvent::stripeEventId).toList());
+    }
+
+    @Test
+    void shouldFailUnparseableEventWithoutRetrying() throws Exception {
+        stripeWebhookEventRepository.enqueue("evt_inbox_003", "{\"id\": \"evt_inbox_003\"", "evt_inbox_003",
+                null, null, Instant.now());
+
+        StripeWebhookEvent webhookEvent = awaitStatus("evt_inbox_003", "FAILED");
+        assertEquals(1, webhookEvent.getAttempts());
+    }
+
+    private StripeWebhookEvent awaitStatus(String stripeEventId, String expectedStatus) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (System.currentTimeMillis() < deadline) {
+            StripeWebhookEvent event = stripeWebhookEventRepository.findById(stripeEventId).orElse(null);
+            if (event != null && expectedStatus.equals(event.getStatus())) {
+                return event;
+            }
+            Thread.sleep(50);
+        }
+        throw new AssertionError("Stripe event " + stripeEventId + " did not reach " + expectedStatus);
+    }
+}
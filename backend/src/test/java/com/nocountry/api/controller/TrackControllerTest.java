@@ -78,4 +78,119 @@ class TrackControllerTest {
         assertEquals(1L, landingViewCount);
         assertTrue(trackingEventRepository.findAll().stream().allMatch(event -> event.getId() != null));
     }
+
+    @Test
+    void shouldNotOverwriteFirstTouchUtmSource() throws Exception {
+        UUID eventId = UUID.randomUUID();
+
+        mockMvc.perform(post("/api/track")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"eventId": "%s", "eventType": "landing_view", "utm_source": "google"}
+                                """.formatted(eventId)))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(post("/api/track")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"eventId": "%s", "eventType": "landing_view", "utm_source": "facebook", "utm_medium": "cpc"}
+                                """.formatted(eventId)))
+                .andExpect(status().isOk());
+
+        TrackingSession session = trackingSessionRepository.findById(eventId).orElseThrow();
+        assertEquals("google", session.getUtmSource());
+        assertEquals("cpc", session.getUtmMedium());
+        assertEquals(1L, trackingEventRepository.count());
+    }
+
+    @Test
+    void shouldPersistBatchAndReportPerItemStatus() throws Exception {
+        UUID eventId = UUID.randomUUID();
+
+        String json = """
+                [
+                  {"eventId": "%1$s", "eventType": "landing_view", "utm_source": "google", "landing_path": "/"},
+                  {"eventId": "%1$s", "eventType": "click_cta", "utm_source": "facebook", "utm_medium": "cpc"},
+                  {"eventId": "%1$s", "eventType": "unknown_event"}
+                ]
+                """.formatted(eventId);
+
+        mockMvc.perform(post("/api/track/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted").value(2))
+                .andExpect(jsonPath("$.rejected").value(1))
+                .andExpect(jsonPath("$.items[0].status").value("ACCEPTED"))
+                .andExpect(jsonPath("$.items[1].eventId").value(eventId.toString()))
+                .andExpect(jsonPath("$.items[2].status").value("INVALID"));
+
+        TrackingSession session = trackingSessionRepository.findById(eventId).orElseThrow();
+        assertEquals("google", session.getUtmSource());
+        assertEquals("cpc", session.getUtmMedium());
+        assertEquals("/", session.getLandingPath());
+        assertEquals(2L, trackingEventRepository.count());
+    }
+
+    @Test
+    void shouldAcceptNdjsonBatchForExistingSession() throws Exception {
+        UUID eventId = UUID.randomUUID();
+
+        mockMvc.perform(post("/api/track")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"eventId": "%s", "eventType": "landing_view", "utm_source": "google"}
+                                """.formatted(eventId)))
+                .andExpect(status().isOk());
+
+        String ndjson = """
+                {"eventId": "%1$s", "eventType": "landing_view", "utm_source": "bing"}
+                {"eventId": "%1$s", "eventType": "begin_checkout", "gclid": "gclid-123"}
+                """.formatted(eventId);
+
+        mockMvc.perform(post("/api/track/batch")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(ndjson))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted").value(2));
+
+        TrackingSession session = trackingSessionRepository.findById(eventId).orElseThrow();
+        assertEquals("google", session.getUtmSource());
+        assertEquals("gclid-123", session.getGclid());
+        assertEquals(2L, trackingEventRepository.count());
+    }
+
+    @Test
+    void shouldReportUnreadableBatchItemWithoutInternalDetails() throws Exception {
+        String json = """
+                [
+                  {"eventId": "%1$s", "eventType": "landing_view"},
+                  {"eventId": "%1$s", "eventType": {"name": "landing_view"}}
+                ]
+                """.formatted(UUID.randomUUID());
+
+        mockMvc.perform(post("/api/track/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted").value(1))
+                .andExpect(jsonPath("$.items[1].status").value("INVALID"))
+                .andExpect(jsonPath("$.items[1].errors[0]").value("event could not be read as a tracking event"));
+    }
+
+    @Test
+    void shouldRejectBatchArrayOverMaximumSize() throws Exception {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 21; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"eventId\": \"%s\", \"eventType\": \"landing_view\"}"
+                    .formatted(UUID.randomUUID()));
+        }
+        json.append("]");
+
+        mockMvc.perform(post("/api/track/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json.toString()))
+                .andExpect(status().isBadRequest());
+        assertEquals(0L, trackingEventRepository.count());
+    }
 }
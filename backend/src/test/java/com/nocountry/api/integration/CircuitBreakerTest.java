@@ -0,0 +1,61 @@
+package com.nocountry.api.integration;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final CircuitBreaker breaker = new CircuitBreaker(
+            "PIPEDRIVE", true, 50, 4, 4, 30, nanos::get, new SimpleMeterRegistry());
+
+    @Test
+    void shouldOpenOnFailureRateAndCloseAfterSuccessfulTrial() {
+        record(true, true, false, false);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        assertFalse(breaker.tryAcquire());
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        assertTrue(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+        // Only one trial call at a time.
+        assertFalse(breaker.tryAcquire());
+
+        breaker.record(true);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    void shouldReopenWhenTrialFails() {
+        record(false, false, false, false);
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        assertTrue(breaker.tryAcquire());
+
+        breaker.record(false);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    void shouldStayClosedBelowMinimumCalls() {
+        record(false, false, false);
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    private void record(boolean... results) {
+        for (boolean success : results) {
+            assertTrue(breaker.tryAcquire());
+            breaker.record(success);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.nocountry.api.integration;
+
+import com.nocountry.api.config.AppProperties;
+import com.nocountry.api.integration.ga4.Ga4MeasurementProtocolService;
+import com.nocountry.api.integration.meta.MetaCapiService;
+import com.nocountry.api.integration.pipedrive.PipedriveService;
+import com.nocountry.api.service.IntegrationLogService;
+import com.nocountry.api.support.TestPayloads;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PurchaseIntegrationDispatcherTest {
+
+    @Mock
+    private MetaCapiService metaCapiService;
+
+    @Mock
+    private Ga4MeasurementProtocolService ga4MeasurementProtocolService;
+
+    @Mock
+    private PipedriveService pipedriveService;
+
+    @Mock
+    private IntegrationLogService integrationLogService;
+
+    private PurchaseIntegrationDispatcher dispatcher;
+
+    @AfterEach
+    void tearDown() {
+        if (dispatcher != null) {
+            dispatcher.stop();
+        }
+    }
+
+    @Test
+    void shouldCallAllIntegrationsConcurrently() {
+        dispatcher = newDispatcher(2_000);
+        // Each integration waits for the other two to start; run one after another they would all time out.
+        CountDownLatch allStarted = new CountDownLatch(3);
+        doAnswer(invocation -> awaitOthers(allStarted)).when(metaCapiService).sendPurchase(any());
+        doAnswer(invocation -> awaitOthers(allStarted)).when(ga4MeasurementProtocolService).sendPurchase(any());
+        doAnswer(invocation -> awaitOthers(allStarted)).when(pipedriveService).sendPurchase(any());
+
+        dispatcher.dispatchPurchase(payload(), true);
+
+        assertEquals(0, allStarted.getCount());
+        verify(integrationLogService, never()).logWithReference(anyString(), anyString(), eq("TIMEOUT"),
+                any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void shouldLogTimeoutWithoutWaitingForSlowIntegration() {
+        dispatcher = newDispatcher(100);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> awaitRelease(release)).when(pipedriveService).sendPurchase(any());
+
+        long startNanos = System.nanoTime();
+        dispatcher.dispatchPurchase(payload(), true);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        release.countDown();
+
+        assertTrue(elapsedMs < 2_000, "dispatch waited " + elapsedMs + " ms");
+        verify(integrationLogService).logWithReference(eq("PIPEDRIVE"), anyString(), eq("TIMEOUT"),
+                any(), any(), any(), any(), any());
+        verify(metaCapiService).sendPurchase(any());
+        verify(ga4MeasurementProtocolService).sendPurchase(any());
+    }
+
+    @Test
+    void shouldReturnImmediatelyWhenCallerDoesNotWait() throws Exception {
+        dispatcher = newDispatcher(2_000);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> awaitRelease(release)).when(metaCapiService).sendPurchase(any());
+
+        CompletableFuture<Void> dispatch = dispatcher.dispatchPurchase(payload(), false);
+
+        assertFalse(dispatch.isDone());
+        release.countDown();
+        dispatch.get(5, TimeUnit.SECONDS);
+        verify(pipedriveService).sendPurchase(any());
+    }
+
+    @Test
+    void shouldWaitForABulkheadSlotInsteadOfRejectingInlinePurchases() throws Exception {
+        dispatcher = newDispatcher(5_000, config -> config.setDispatchMaxConcurrent(1));
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            firstStarted.countDown();
+            return awaitRelease(release);
+        }).doReturn(IntegrationOutcome.SENT).when(pipedriveService).sendPurchase(any());
+
+        CompletableFuture<Void> first = dispatcher.dispatchPurchase(payload(), false);
+        assertTrue(firstStarted.await(5, TimeUnit.SECONDS));
+        // The only Pipedrive slot is taken, so the second purchase has to wait for it.
+        CompletableFuture<Void> second = CompletableFuture.runAsync(() -> dispatcher.dispatchPurchase(payload(), true));
+        Thread.sleep(200);
+        assertFalse(second.isDone());
+
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+        verify(pipedriveService, times(2)).sendPurchase(any());
+        verify(integrationLogService, never()).logWithReference(anyString(), anyString(), eq("REJECTED"),
+                any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void shouldDeferCallsWhileCircuitIsOpen() {
+        dispatcher = newDispatcher(2_000, config -> {
+            config.setOutboxEnabled(true);
+            config.setCircuitBreakerEnabled(true);
+            config.setCircuitWindowSize(4);
+            config.setCircuitMinimumCalls(2);
+        });
+        when(pipedriveService.sendPurchase(any())).thenReturn(IntegrationOutcome.RETRYABLE_FAILURE);
+
+        assertEquals(IntegrationOutcome.RETRYABLE_FAILURE, dispatcher.dispatch("PIPEDRIVE", payload()).join());
+        assertEquals(IntegrationOutcome.RETRYABLE_FAILURE, dispatcher.dispatch("PIPEDRIVE", payload()).join());
+        assertEquals(IntegrationOutcome.DEFERRED, dispatcher.dispatch("PIPEDRIVE", payload()).join());
+
+        verify(pipedriveService, times(2)).sendPurchase(any());
+        verify(integrationLogService).logWithReference(eq("PIPEDRIVE"), anyString(), eq("DEFERRED"),
+                any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void shouldNotShortCircuitInlinePurchasesWithoutTheOutbox() {
+        dispatcher = newDispatcher(2_000, config -> {
+            config.setCircuitBreakerEnabled(true);
+            config.setCircuitWindowSize(4);
+            config.setCircuitMinimumCalls(2);
+        });
+        when(pipedriveService.sendPurchase(any())).thenReturn(IntegrationOutcome.RETRYABLE_FAILURE);
+
+        for (int i = 0; i < 3; i++) {
+            dispatcher.dispatchPurchase(payload(), true);
+        }
+
+        verify(pipedriveService, times(3)).sendPurchase(any());
+        verify(integrationLogService, never()).logWithReference(anyString(), anyString(), eq("DEFERRED"),
+                any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void shouldReportSlotsLeftByTheLowestAdaptiveLimit() {
+        dispatcher = newDispatcher(2_000, config -> {
+            config.setDispatchMaxConcurrent(8);
+            config.setAdaptiveConcurrencyEnabled(true);
+            config.setAdaptiveMinConcurrent(1);
+        });
+        when(metaCapiService.sendPurchase(any())).thenReturn(IntegrationOutcome.RETRYABLE_FAILURE);
+
+        assertEquals(8, dispatcher.availableSlots());
+        dispatcher.dispatch("META_CAPI", payload()).join();
+
+        assertEquals(4, dispatcher.availableSlots());
+    }
+
+    private IntegrationOutcome awaitOthers(CountDownLatch allStarted) throws InterruptedException {
+        allStarted.countDown();
+        allStarted.await(5, TimeUnit.SECONDS);
+        return IntegrationOutcome.SENT;
+    }
+
+    private IntegrationOutcome awaitRelease(CountDownLatch release) throws InterruptedException {
+        release.await(5, TimeUnit.SECONDS);
+        return IntegrationOutcome.SENT;
+    }
+
+    private PurchaseIntegrationDispatcher newDispatcher(long timeoutMs) {
+        return newDispatcher(timeoutMs, config -> {
+        });
+    }
+
+    private PurchaseIntegrationDispatcher newDispatcher(long timeoutMs, Consumer<AppProperties.Integrations> customizer) {
+        AppProperties appProperties = new AppProperties();
+        appProperties.getIntegrations().setDispatchTimeoutMs(timeoutMs);
+        customizer.accept(appProperties.getIntegrations());
+        return new PurchaseIntegrationDispatcher(
+                metaCapiService,
+                ga4MeasurementProtocolService,
+                pipedriveService,
+                integrationLogService,
+                appProperties,
+                new SimpleMeterRegistry()
+        );
+    }
+
+    private PurchaseIntegrationPayload payload() {
+        return TestPayloads.purchase("cs_dispatch_001", "client-test");
+    }
+}
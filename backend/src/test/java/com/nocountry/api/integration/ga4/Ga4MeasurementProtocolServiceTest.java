@@ -0,0 +1,142 @@
+package com.nocountry.api.integration.ga4;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nocountry.api.config.AppProperties;
+import com.nocountry.api.integration.IntegrationOutcome;
+import com.nocountry.api.integration.PurchaseIntegrationPayload;
+import com.nocountry.api.service.IntegrationLogService;
+import com.nocountry.api.support.TestPayloads;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.ExpectedCount;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.test.web.client.ResponseCreator;
+import org.springframework.web.client.RestClient;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.jsonPath;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+@ExtendWith(MockitoExtension.class)
+class Ga4MeasurementProtocolServiceTest {
+
+    @Mock
+    private IntegrationLogService integrationLogService;
+
+    private MockRestServiceServer server;
+    private Ga4MeasurementProtocolService service;
+
+    @AfterEach
+    void tearDown() {
+        if (service != null) {
+            service.stop();
+        }
+    }
+
+    @Test
+    void shouldGroupPurchasesByClientId() {
+        service = newService(0.0);
+        server.expect(jsonPath("$.client_id").value("client-a"))
+                .andExpect(jsonPath("$.events.length()").value(2))
+                .andRespond(withSuccess());
+        server.expect(jsonPath("$.client_id").value("client-b"))
+                .andExpect(jsonPath("$.events.length()").value(1))
+                .andRespond(withSuccess());
+
+        List<IntegrationOutcome> outcomes = service.sendBatch(List.of(
+                payload("client-a"), payload("client-b"), payload("client-a")));
+
+        assertEquals(List.of(IntegrationOutcome.SENT, IntegrationOutcome.SENT, IntegrationOutcome.SENT), outcomes);
+        server.verify();
+        verify(integrationLogService, times(3)).logWithReference(eq("GA4_MP"), anyString(), eq("SENT"),
+                eq(200), any(), any(), any(), any());
+        verify(integrationLogService, never()).logWithReference(eq("GA4_MP"), anyString(), eq("VALIDATED"),
+                any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void shouldSendClientGroupsOfABatchInParallel() {
+        service = newService(0.0, true);
+        // Each response waits for the other request to arrive, so this only passes if both are in flight at once.
+        CountDownLatch bothInFlight = new CountDownLatch(2);
+        AtomicBoolean overlapped = new AtomicBoolean(true);
+        ResponseCreator awaitOther = request -> {
+            bothInFlight.countDown();
+            try {
+                if (!bothInFlight.await(5, TimeUnit.SECONDS)) {
+                    overlapped.set(false);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return withSuccess().createResponse(request);
+        };
+        server.expect(jsonPath("$.client_id").value("client-a")).andRespond(awaitOther);
+        server.expect(jsonPath("$.client_id").value("client-b")).andRespond(awaitOther);
+
+        List<IntegrationOutcome> outcomes = service.sendBatch(List.of(payload("client-a"), payload("client-b")));
+
+        assertEquals(List.of(IntegrationOutcome.SENT, IntegrationOutcome.SENT), outcomes);
+        assertTrue(overlapped.get());
+        server.verify();
+    }
+
+    @Test
+    void shouldValidateSampledRequestsOffTheSendPath() {
+        service = newService(1.0);
+        server.expect(requestTo(startsWith("https://www.google-analytics.com/mp/collect")))
+                .andRespond(withSuccess());
+        server.expect(ExpectedCount.once(), requestTo(containsString("/debug/mp/collect")))
+                .andRespond(withSuccess("{\"validationMessages\":[]}", MediaType.APPLICATION_JSON));
+
+        PurchaseIntegrationPayload payload = payload("client-a");
+        assertEquals(List.of(IntegrationOutcome.SENT), service.sendBatch(List.of(payload)));
+
+        verify(integrationLogService, timeout(5_000)).logWithReference(eq("GA4_MP"), eq(payload.eventId().toString()),
+                eq("VALIDATED"), eq(200), any(), any(), any(), any());
+        server.verify();
+    }
+
+    private Ga4MeasurementProtocolService newService(double sampleRate) {
+        return newService(sampleRate, false);
+    }
+
+    private Ga4MeasurementProtocolService newService(double sampleRate, boolean batchEnabled) {
+        AppProperties appProperties = new AppProperties();
+        appProperties.getIntegrations().setGa4MpEnabled(true);
+        appProperties.getGa4().setMeasurementId("G-TEST");
+        appProperties.getGa4().setApiSecret("secret-test");
+        appProperties.getGa4().setDebugValidationEnabled(true);
+        appProperties.getGa4().setDebugValidationSampleRate(sampleRate);
+        appProperties.getGa4().setBatchEnabled(batchEnabled);
+
+        RestClient.Builder builder = RestClient.builder();
+        server = MockRestServiceServer.bindTo(builder).ignoreExpectOrder(batchEnabled).build();
+        return new Ga4MeasurementProtocolService(builder.build(), appProperties, integrationLogService, new ObjectMapper());
+    }
+
+    private PurchaseIntegrationPayload payload(String clientId) {
+        return TestPayloads.purchase("cs_ga4_" + UUID.randomUUID(), clientId);
+    }
+}
@@ -0,0 +1,135 @@
+package com.nocountry.api.integration.meta;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nocountry.api.config.AppProperties;
+import com.nocountry.api.integration.IntegrationOutcome;
+import com.nocountry.api.integration.PurchaseIntegrationPayload;
+import com.nocountry.api.service.IntegrationLogService;
+import com.nocountry.api.support.TestPayloads;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestClient;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.jsonPath;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withBadRequest;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withUnauthorizedRequest;
+
+@ExtendWith(MockitoExtension.class)
+class MetaCapiServiceTest {
+
+    private static final String OK = "{\"events_received\":1}";
+
+    @Mock
+    private IntegrationLogService integrationLogService;
+
+    private MockRestServiceServer server;
+    private MetaCapiService service;
+
+    @AfterEach
+    void tearDown() {
+        if (service != null) {
+            service.stop();
+        }
+    }
+
+    @Test
+    void shouldSendConcurrentPurchasesInOneRequest() throws Exception {
+        service = newService(true, 3);
+        server.expect(method(HttpMethod.POST))
+                .andExpect(jsonPath("$.data.length()").value(3))
+                .andRespond(withSuccess("{\"events_received\":3}", MediaType.APPLICATION_JSON));
+
+        List<CompletableFuture<IntegrationOutcome>> outcomes = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            PurchaseIntegrationPayload payload = payload();
+            outcomes.add(CompletableFuture.supplyAsync(() -> service.sendPurchase(payload)));
+        }
+
+        for (CompletableFuture<IntegrationOutcome> outcome : outcomes) {
+            assertEquals(IntegrationOutcome.SENT, outcome.get(5, TimeUnit.SECONDS));
+        }
+        server.verify();
+        verify(integrationLogService, times(3)).logWithReference(eq("META_CAPI"), anyString(), eq("SENT"),
+                eq(200), any(), any(), any(), any());
+    }
+
+    @Test
+    void shouldSplitRejectedBatchToIsolateInvalidEvent() {
+        service = newService(false, 100);
+        List<PurchaseIntegrationPayload> payloads = List.of(payload(), payload(), payload(), payload());
+        String invalidEventId = payloads.get(3).eventId().toString();
+
+        server.expect(jsonPath("$.data.length()").value(4)).andRespond(withBadRequest());
+        server.expect(jsonPath("$.data.length()").value(2)).andRespond(withSuccess(OK, MediaType.APPLICATION_JSON));
+        server.expect(jsonPath("$.data.length()").value(2)).andRespond(withBadRequest());
+        server.expect(jsonPath("$.data.length()").value(1)).andRespond(withSuccess(OK, MediaType.APPLICATION_JSON));
+        server.expect(jsonPath("$.data[0].event_id").value(invalidEventId)).andRespond(withBadRequest());
+
+        List<IntegrationOutcome> outcomes = service.sendBatch(payloads);
+
+        assertEquals(List.of(
+                IntegrationOutcome.SENT,
+                IntegrationOutcome.SENT,
+                IntegrationOutcome.SENT,
+                IntegrationOutcome.PERMANENT_FAILURE
+        ), outcomes);
+        server.verify();
+        verify(integrationLogService, times(3)).logWithReference(eq("META_CAPI"), anyString(), eq("SENT"),
+                any(), any(), any(), any(), any());
+        verify(integrationLogService).logWithReference(eq("META_CAPI"), eq(invalidEventId), eq("FAILED"),
+                eq(400), any(), any(), any(), any());
+    }
+
+    @Test
+    void shouldFailWholeBatchOnAuthorizationErrorWithoutSplitting() {
+        service = newService(false, 100);
+        List<PurchaseIntegrationPayload> payloads = List.of(payload(), payload(), payload(), payload());
+
+        server.expect(jsonPath("$.data.length()").value(4)).andRespond(withUnauthorizedRequest());
+
+        List<IntegrationOutcome> outcomes = service.sendBatch(payloads);
+
+        assertEquals(Collections.nCopies(4, IntegrationOutcome.PERMANENT_FAILURE), outcomes);
+        server.verify();
+        verify(integrationLogService, times(4)).logWithReference(eq("META_CAPI"), anyString(), eq("FAILED"),
+                eq(401), any(), any(), any(), any());
+    }
+
+    private MetaCapiService newService(boolean batchEnabled, int batchMaxEvents) {
+        AppProperties appProperties = new AppProperties();
+        appProperties.getIntegrations().setMetaCapiEnabled(true);
+        appProperties.getMeta().setPixelId("pixel-test");
+        appProperties.getMeta().setAccessToken("token-test");
+        appProperties.getMeta().setBatchEnabled(batchEnabled);
+        appProperties.getMeta().setBatchMaxEvents(batchMaxEvents);
+        appProperties.getMeta().setBatchMaxWaitMs(5_000);
+
+        RestClient.Builder builder = RestClient.builder();
+        server = MockRestServiceServer.bindTo(builder).build();
+        return new MetaCapiService(builder.build(), appProperties, integrationLogService, new ObjectMapper());
+    }
+
+    private PurchaseIntegrationPayload payload() {
+        return TestPayloads.purchase("cs_meta_001", "client-test");
+    }
+}
@@ -0,0 +1,61 @@
+package com.nocountry.api.integration.pipedrive;
+
+import com.nocountry.api.config.AppProperties;
+import com.nocountry.api.repository.PipedriveIdCacheRepository;
+import com.nocountry.api.support.MutableClock;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class PipedriveIdCacheTest {
+
+    private static final Instant NOW = Instant.parse("2026-01-01T00:00:00Z");
+
+    @Mock
+    private PipedriveIdCacheRepository pipedriveIdCacheRepository;
+
+    private final MutableClock clock = new MutableClock(NOW);
+
+    @Test
+    void shouldKeepDealIdsInMemoryOnly() {
+        PipedriveIdCache cache = newCache();
+
+        cache.put(PipedriveIdCache.DEAL, "Purchase cs_1", 99L);
+
+        assertEquals(99L, cache.get(PipedriveIdCache.DEAL, "Purchase cs_1"));
+        verify(pipedriveIdCacheRepository, never()).upsertMapping(anyString(), anyString(), anyLong(), any());
+        verify(pipedriveIdCacheRepository, never()).findMapping(anyString(), anyString());
+
+        cache.invalidate(PipedriveIdCache.DEAL, "Purchase cs_1", 99L);
+        assertNull(cache.get(PipedriveIdCache.DEAL, "Purchase cs_1"));
+    }
+
+    @Test
+    void shouldPurgeRowsPastTheTtl() {
+        PipedriveIdCache cache = newCache();
+
+        cache.purgeExpired();
+
+        verify(pipedriveIdCacheRepository).deleteVerifiedBefore(NOW.minusSeconds(3600));
+    }
+
+    private PipedriveIdCache newCache() {
+        AppProperties appProperties = new AppProperties();
+        appProperties.getPipedrive().setIdCacheTtlSeconds(3600);
+        appProperties.getPipedrive().setIdCacheDealTtlSeconds(60);
+        return new PipedriveIdCache(pipedriveIdCacheRepository, appProperties, clock, new SimpleMeterRegistry());
+    }
+}
@@ -0,0 +1,94 @@
+package com.nocountry.api.integration.pipedrive;
+
+import com.nocountry.api.config.AppProperties;
+import com.nocountry.api.integration.IntegrationOutcome;
+import com.nocountry.api.integration.PurchaseIntegrationPayload;
+import com.nocountry.api.service.IntegrationLogService;
+import com.nocountry.api.support.TestPayloads;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestClient;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+@ExtendWith(MockitoExtension.class)
+class PipedriveServiceTest {
+
+    private static final String EMAIL = "Buyer@Example.com";
+    private static final String EMAIL_KEY = "buyer@example.com";
+    private static final String SESSION_ID = "cs_pipedrive_001";
+    private static final String TITLE = "Purchase " + SESSION_ID;
+
+    @Mock
+    private IntegrationLogService integrationLogService;
+
+    @Mock
+    private PipedriveIdCache pipedriveIdCache;
+
+    @Test
+    void shouldSkipSearchesForCachedIds() {
+        when(pipedriveIdCache.get(PipedriveIdCache.PERSON, EMAIL_KEY)).thenReturn(7L);
+        when(pipedriveIdCache.get(PipedriveIdCache.DEAL, TITLE)).thenReturn(99L);
+        RestClient.Builder builder = RestClient.builder();
+        MockRestServiceServer server = MockRestServiceServer.bindTo(builder).build();
+        server.expect(requestTo(containsString("/v1/deals/99?")))
+                .andExpect(method(HttpMethod.PUT))
+                .andRespond(withSuccess());
+
+        IntegrationOutcome outcome = newService(builder).sendPurchase(payload());
+
+        assertEquals(IntegrationOutcome.SENT, outcome);
+        server.verify();
+        verify(pipedriveIdCache).put(PipedriveIdCache.DEAL, TITLE, 99L);
+    }
+
+    @Test
+    void shouldInvalidateCachedIdsOnNotFoundAndSearchAgain() {
+        when(pipedriveIdCache.get(PipedriveIdCache.PERSON, EMAIL_KEY)).thenReturn(7L);
+        when(pipedriveIdCache.get(PipedriveIdCache.DEAL, TITLE)).thenReturn(99L);
+        RestClient.Builder builder = RestClient.builder();
+        MockRestServiceServer server = MockRestServiceServer.bindTo(builder).build();
+        server.expect(requestTo(containsString("/v1/deals/99?")))
+                .andRespond(withStatus(HttpStatus.NOT_FOUND));
+        server.expect(requestTo(containsString("/v1/persons/search?")))
+                .andRespond(withSuccess("{\"data\":{\"items\":[{\"item\":{\"id\":8}}]}}", MediaType.APPLICATION_JSON));
+        server.expect(requestTo(containsString("/v1/deals/search?")))
+                .andRespond(withSuccess("{\"data\":{\"items\":[]}}", MediaType.APPLICATION_JSON));
+        server.expect(requestTo(containsString("/v1/deals?")))
+                .andExpect(method(HttpMethod.POST))
+                .andRespond(withSuccess("{\"data\":{\"id\":100}}", MediaType.APPLICATION_JSON));
+
+        IntegrationOutcome outcome = newService(builder).sendPurchase(payload());
+
+        assertEquals(IntegrationOutcome.SENT, outcome);
+        server.verify();
+        verify(pipedriveIdCache).invalidate(PipedriveIdCache.PERSON, EMAIL_KEY, 7L);
+        verify(pipedriveIdCache).invalidate(PipedriveIdCache.DEAL, TITLE, 99L);
+        verify(pipedriveIdCache).put(PipedriveIdCache.PERSON, EMAIL_KEY, 8L);
+        verify(pipedriveIdCache).put(PipedriveIdCache.DEAL, TITLE, 100L);
+    }
+
+    private PipedriveService newService(RestClient.Builder builder) {
+        AppProperties appProperties = new AppProperties();
+        appProperties.getIntegrations().setPipedriveEnabled(true);
+        appProperties.getPipedrive().setApiToken("token-test");
+        return new PipedriveService(builder.build(), appProperties, integrationLogService, pipedriveIdCache);
+    }
+
+    private PurchaseIntegrationPayload payload() {
+        return TestPayloads.purchase(SESSION_ID, "client-test", EMAIL, "Buyer");
+    }
+}
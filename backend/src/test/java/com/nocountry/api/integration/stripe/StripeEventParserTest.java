@@ -0,0 +1,96 @@
+package com.nocountry.api.integration.stripe;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nocountry.api.support.TestPayloads;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class StripeEventParserTest {
+
+    private final StripeEventParser parser = new StripeEventParser(new ObjectMapper());
+
+    @Test
+    void shouldReadCheckoutSessionFieldsAndSkipTheRest() throws IOException {
+        String payload = """
+                {
+                  "id": "evt_parse_001",
+                  "object": "event",
+                  "data": {
+                    "object": {
+                      "id": "cs_parse_001",
+                      "line_items": {"data": [{"id": "li_1", "metadata": {"client_id": "ignored"}}]},
+                      "payment_intent": "pi_parse_001",
+                      "amount_total": 4999,
+                      "currency": "usd",
+                      "payment_status": "paid",
+                      "client_reference_id": " ",
+                      "customer_details": {"email": "buyer@example.com", "name": "Buyer", "address": {"country": "AR"}},
+                      "metadata": {"client_id": "client-test", "empty": "", "nested": {"a": 1}}
+                    },
+                    "previous_attributes": {"id": "ignored"}
+                  },
+                  "type": "checkout.session.completed"
+                }
+                """;
+
+        StripeEvent event = parser.parse(payload);
+
+        assertEquals("evt_parse_001", event.id());
+        assertEquals("checkout.session.completed", event.type());
+        StripeEvent.DataObject session = event.object();
+        assertEquals("cs_parse_001", session.id());
+        assertEquals("pi_parse_001", session.paymentIntent());
+        assertEquals(4999L, session.amountTotal());
+        assertEquals("usd", session.currency());
+        assertEquals("paid", session.paymentStatus());
+        assertNull(session.clientReferenceId());
+        assertEquals("buyer@example.com", session.customerDetailsEmail());
+        assertEquals("Buyer", session.customerDetailsName());
+        assertEquals(Map.of("client_id", "client-test"), session.metadata());
+    }
+
+    @Test
+    void shouldReadFirstChargeBillingDetailsOfPaymentIntent() throws IOException {
+        String payload = """
+                {
+                  "id": "evt_parse_002",
+                  "type": "payment_intent.succeeded",
+                  "data": {
+                    "object": {
+                      "id": "pi_parse_002",
+                      "amount": 4999,
+                      "amount_received": "4999",
+                      "status": "succeeded",
+                      "charges": {"data": [
+                        {"billing_details": {"email": "first@example.com", "name": "First"}},
+                        {"billing_details": {"email": "second@example.com", "name": "Second"}}
+                      ]}
+                    }
+                  }
+                }
+                """;
+
+        StripeEvent.DataObject paymentIntent = parser.parse(payload).object();
+
+        assertEquals(4999L, paymentIntent.amountReceived());
+        assertEquals("first@example.com", paymentIntent.billingEmail());
+        assertEquals("First", paymentIntent.billingName());
+    }
+
+    @Test
+    void shouldMatchTestPayloadsAndRejectMalformedJson() throws IOException {
+        StripeEvent event = parser.parse(TestPayloads.paymentIntentEvent(
+                "evt_parse_003", "payment_intent.processing", "pi_parse_003", "cs_parse_003", "processing"));
+
+        assertEquals("pi_parse_003", event.object().id());
+        assertEquals("cs_parse_003", event.object().metadata("checkout_session_id"));
+        assertNull(event.object().paymentIntent());
+        assertThrows(IOException.class, () -> parser.parse("{\"id\": \"evt\", \"data\": {"));
+    }
+}
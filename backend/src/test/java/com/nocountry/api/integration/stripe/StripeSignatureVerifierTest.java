@@ -0,0 +1,48 @@
+package com.nocountry.api.integration.stripe;
+
+import com.nocountry.api.config.AppProperties;
+import com.nocountry.api.support.TestPayloads;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StripeSignatureVerifierTest {
+
+    private static final String PAYLOAD = "{\"id\":\"evt_signature_001\"}";
+
+    @Test
+    void shouldAcceptCurrentAndPreviousSecretsDuringRotation() {
+        StripeSignatureVerifier verifier = newVerifier("whsec_new", "whsec_old");
+
+        assertTrue(verifier.verify(PAYLOAD, TestPayloads.buildStripeSignatureHeader(PAYLOAD, "whsec_new")));
+        assertTrue(verifier.verify(PAYLOAD, TestPayloads.buildStripeSignatureHeader(PAYLOAD, "whsec_old")));
+        assertTrue(verifier.verify(PAYLOAD.getBytes(StandardCharsets.UTF_8),
+                TestPayloads.buildStripeSignatureHeader(PAYLOAD, "whsec_new")));
+        assertFalse(verifier.verify(PAYLOAD, TestPayloads.buildStripeSignatureHeader(PAYLOAD, "whsec_other")));
+    }
+
+    @Test
+    void shouldMatchAnyV1SignatureAndIgnoreMalformedOnes() {
+        StripeSignatureVerifier verifier = newVerifier("whsec_new");
+        String valid = TestPayloads.buildStripeSignatureHeader(PAYLOAD, "whsec_new");
+        String signature = valid.substring(valid.indexOf("v1=") + 3);
+        long timestamp = Instant.now().getEpochSecond();
+
+        assertTrue(verifier.verify(PAYLOAD, "t=" + timestamp + ",v1=not-hex,v1=" + "0".repeat(64) + ",v1=" + signature));
+        assertFalse(verifier.verify(PAYLOAD, "t=" + timestamp + ",v1=" + signature.substring(2)));
+        assertFalse(verifier.verify(PAYLOAD + " ", valid));
+        assertFalse(verifier.verify(PAYLOAD, "v1=" + signature));
+    }
+
+    private StripeSignatureVerifier newVerifier(String secret, String... previousSecrets) {
+        AppProperties appProperties = new AppProperties();
+        appProperties.getStripe().setWebhookSecret(secret);
+        appProperties.getStripe().setWebhookPreviousSecrets(List.of(previousSecrets));
+        return new StripeSignatureVerifier(appProperties);
+    }
+}
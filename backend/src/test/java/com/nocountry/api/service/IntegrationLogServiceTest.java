@@ -0,0 +1,120 @@
+package com.nocountry.api.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nocountry.api.config.AppProperties;
+import com.nocountry.api.entity.IntegrationLog;
+import com.nocountry.api.entity.IntegrationSkipRollup;
+import com.nocountry.api.repository.IntegrationLogRepository;
+import com.nocountry.api.repository.IntegrationSkipRollupRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class IntegrationLogServiceTest {
+
+    @Mock
+    private IntegrationLogRepository integrationLogRepository;
+
+    @Mock
+    private IntegrationSkipRollupRepository integrationSkipRollupRepository;
+
+    @Test
+    void shouldDropRowsBeyondCapacityAndWriteTheRestInOneBatch() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        AppProperties appProperties = new AppProperties();
+        appProperties.getIntegrations().setLogBufferCapacity(2);
+        IntegrationLogService service = newService(appProperties, Clock.systemUTC(), meterRegistry);
+
+        service.logWithReference("META_CAPI", "ref-1", "SENT", 200, 12, Map.of("value", 1), null, null);
+        service.logWithReference("GA4_MP", "ref-1", "FAILED", 500, null, null, "boom", "error");
+        service.logWithReference("PIPEDRIVE", "ref-1", "SENT", 200, 30, null, null, null);
+
+        verify(integrationLogRepository, never()).insertAll(anyList());
+        assertEquals(1.0, meterRegistry.get("integrations.log.dropped").counter().count());
+
+        service.flush();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<IntegrationLog>> rows = ArgumentCaptor.forClass(List.class);
+        verify(integrationLogRepository).insertAll(rows.capture());
+        assertEquals(2, rows.getValue().size());
+        assertEquals("{\"value\":1}", rows.getValue().get(0).getRequestPayload());
+        assertEquals("\"boom\"", rows.getValue().get(1).getResponsePayload());
+        assertEquals(0.0, meterRegistry.get("integrations.log.buffer.depth").gauge().value());
+    }
+
+    @Test
+    void shouldWriteRowByRowWhenTheBatchInsertFails() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        IntegrationLogService service = newService(new AppProperties(), Clock.systemUTC(), meterRegistry);
+        List<String> written = new ArrayList<>();
+        doAnswer(invocation -> {
+            List<IntegrationLog> rows = invocation.getArgument(0);
+            if (rows.stream().anyMatch(row -> "bad".equals(row.getReferenceId()))) {
+                throw new DataIntegrityViolationException("value too long");
+            }
+            rows.forEach(row -> written.add(row.getReferenceId()));
+            return null;
+        }).when(integrationLogRepository).insertAll(anyList());
+
+        service.logWithReference("META_CAPI", "ref-1", "SENT", 200, 12, null, null, null);
+        service.logWithReference("META_CAPI", "bad", "SENT", 200, 12, null, null, null);
+        service.logWithReference("META_CAPI", "ref-2", "SENT", 200, 12, null, null, null);
+        service.flush();
+
+        assertEquals(List.of("ref-1", "ref-2"), written);
+        assertEquals(1.0, meterRegistry.get("integrations.log.failed").counter().count());
+    }
+
+    @Test
+    void shouldRollUpSkipsAndKeepOnlyFirstSkipPerReference() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        AppProperties appProperties = new AppProperties();
+        appProperties.getIntegrations().setLogSkippedRollupEnabled(true);
+        Clock clock = Clock.fixed(Instant.parse("2026-03-01T10:15:42Z"), ZoneOffset.UTC);
+        IntegrationLogService service = newService(appProperties, clock, meterRegistry);
+
+        service.logWithReference("META_CAPI", "ref-1", "SKIPPED", null, null, null, null, "META_CAPI_ENABLED=false");
+        service.logWithReference("GA4_MP", "ref-1", "SKIPPED", null, null, null, null, "GA4_MP_ENABLED=false");
+        service.logWithReference("META_CAPI", "ref-2", "SKIPPED", null, null, null, null, "META_CAPI_ENABLED=false");
+        service.logWithReference("PIPEDRIVE", "ref-1", "SENT", 200, 30, null, null, null);
+        service.flush();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<IntegrationLog>> rows = ArgumentCaptor.forClass(List.class);
+        verify(integrationLogRepository).insertAll(rows.capture());
+        assertEquals(List.of("META_CAPI:ref-1", "META_CAPI:ref-2", "PIPEDRIVE:ref-1"), rows.getValue().stream()
+                .map(row -> row.getIntegration() + ":" + row.getReferenceId())
+                .toList());
+
+        Instant bucket = Instant.parse("2026-03-01T10:15:00Z");
+        verify(integrationSkipRollupRepository).addAll(Map.of(
+                new IntegrationSkipRollup.Key("META_CAPI", bucket), 2L,
+                new IntegrationSkipRollup.Key("GA4_MP", bucket), 1L
+        ));
+        assertEquals(2.0, meterRegistry.get("integrations.skipped").tag("integration", "META_CAPI").counter().count());
+    }
+
+    private IntegrationLogService newService(AppProperties appProperties, Clock clock, SimpleMeterRegistry meterRegistry) {
+        return new IntegrationLogService(integrationLogRepository, integrationSkipRollupRepository,
+                new ObjectMapper(), clock, appProperties, meterRegistry);
+    }
+}
@@ -0,0 +1,70 @@
+package com.nocountry.api.service;
+
+import com.nocountry.api.config.AppProperties;
+import com.nocountry.api.repository.TrackingSessionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class LastSeenCoalescerTest {
+
+    private static final Instant T0 = Instant.parse("2026-02-13T10:00:00Z");
+
+    @Mock
+    private TrackingSessionRepository trackingSessionRepository;
+
+    private LastSeenCoalescer coalescer;
+
+    @BeforeEach
+    void setUp() {
+        coalescer = new LastSeenCoalescer(trackingSessionRepository, new AppProperties(), new SimpleMeterRegistry());
+    }
+
+    @Test
+    void shouldFlushOnlyLatestTimestampPerSessionInOneWrite() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+
+        coalescer.record(first, T0.plusSeconds(5));
+        coalescer.record(first, T0);
+        coalescer.record(second, T0.plusSeconds(1));
+        coalescer.record(first, T0.plusSeconds(3));
+
+        verify(trackingSessionRepository, never()).touchLastSeen(any());
+
+        coalescer.flush();
+        coalescer.flush();
+
+        verify(trackingSessionRepository, times(1))
+                .touchLastSeen(Map.of(first, T0.plusSeconds(5), second, T0.plusSeconds(1)));
+    }
+
+    @Test
+    void shouldRetryPendingTimestampsAfterFailedFlush() {
+        UUID eventId = UUID.randomUUID();
+        coalescer.record(eventId, T0);
+
+        doThrow(new IllegalStateException("db down"))
+                .doNothing()
+                .when(trackingSessionRepository).touchLastSeen(any());
+        coalescer.flush();
+        coalescer.record(eventId, T0.plusSeconds(2));
+        coalescer.flush();
+
+        verify(trackingSessionRepository, times(1)).touchLastSeen(Map.of(eventId, T0.plusSeconds(2)));
+    }
+}
@@ -0,0 +1,43 @@
+package com.nocountry.api.service;
+
+import com.nocountry.api.config.AppProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class RequestMetadataResolverTest {
+
+    // sha256("203.0.113.195")
+    private static final String PLAIN_HASH = "ea3f6e8890630ff034f9906f0c2d429df551b6505c1d9d8d28b0262f650dbb68";
+
+    @Test
+    void shouldHashFirstForwardedHop() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("User-Agent", "ua");
+        request.addHeader("X-Forwarded-For", "  203.0.113.195 , 70.41.3.18");
+        request.setRemoteAddr("10.0.0.1");
+
+        RequestMetadata metadata = new RequestMetadataResolver(new AppProperties()).resolve(request);
+
+        assertEquals("ua", metadata.userAgent());
+        assertEquals("203.0.113.195", metadata.clientIp());
+        assertEquals(PLAIN_HASH, metadata.ipHash());
+    }
+
+    @Test
+    void shouldFallBackToRemoteAddrAndUseKeyedHashWhenSecretIsSet() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("X-Forwarded-For", " , 70.41.3.18");
+        request.setRemoteAddr("203.0.113.195");
+        AppProperties appProperties = new AppProperties();
+        appProperties.getTracking().setIpHashSecret("secret");
+
+        RequestMetadata metadata = new RequestMetadataResolver(appProperties).resolve(request);
+
+        assertEquals("203.0.113.195", metadata.clientIp());
+        assertEquals(64, metadata.ipHash().length());
+        assertNotEquals(PLAIN_HASH, metadata.ipHash());
+    }
+}
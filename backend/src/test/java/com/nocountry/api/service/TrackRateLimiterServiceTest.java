@@ -0,0 +1,171 @@
+package com.nocountry.api.service;
+
+import com.nocountry.api.config.AppProperties;
+import com.nocountry.api.repository.DatabaseDialect;
+import com.nocountry.api.repository.RateLimitBucketRepository;
+import com.nocountry.api.support.MutableClock;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TrackRateLimiterServiceTest {
+
+    private static final String IP_HASH = "ea3f6e8890630ff034f9906f0c2d429df551b6505c1d9d8d28b0262f650dbb68";
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2026-02-13T10:00:00Z"));
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RateLimitBucketRepository rateLimitBucketRepository = mock(RateLimitBucketRepository.class);
+    private final DatabaseDialect databaseDialect = mock(DatabaseDialect.class);
+
+    @Test
+    void shouldRefillAtConfiguredRate() {
+        TrackRateLimiterService limiter = limiter(3, 10, 100);
+
+        assertTrue(limiter.allow(IP_HASH, 3));
+        assertFalse(limiter.allow(IP_HASH));
+
+        clock.advanceMillis(150);
+        assertTrue(limiter.allow(IP_HASH));
+        assertFalse(limiter.allow(IP_HASH));
+        assertFalse(limiter.allow(IP_HASH, 4));
+    }
+
+    @Test
+    void shouldEvictOnlyFullyRefilledBuckets() {
+        TrackRateLimiterService limiter = limiter(3, 1, 100);
+        limiter.allow(IP_HASH, 3);
+        limiter.allow("not-a-hex-key");
+
+        clock.advanceSeconds(2);
+        limiter.evictIdle();
+        assertEquals(1, limiter.bucketCount());
+        assertFalse(limiter.allow(IP_HASH, 3));
+
+        clock.advanceSeconds(5);
+        limiter.evictIdle();
+        assertEquals(0, limiter.bucketCount());
+        assertEquals(2.0, meterRegistry.get("tracking.rate_limit.evictions").tag("reason", "idle").counter().count());
+    }
+
+    @Test
+    void shouldStayWithinMaxBuckets() {
+        TrackRateLimiterService limiter = limiter(3, 1, 50);
+
+        for (int i = 0; i < 500; i++) {
+            assertTrue(limiter.allow("%016x".formatted(i).repeat(4)));
+        }
+
+        assertTrue(limiter.bucketCount() <= 50);
+        assertEquals(450.0, meterRegistry.get("tracking.rate_limit.evictions").tag("reason", "capacity").counter().count());
+    }
+
+    @Test
+    void shouldNeverGrantMoreThanCapacityUnderContention() throws Exception {
+        TrackRateLimiterService limiter = limiter(1000, 1, 100);
+        AtomicInteger granted = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 16; t++) {
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        if (limiter.allow(IP_HASH)) {
+                            granted.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(1000, granted.get());
+    }
+
+    @Test
+    void shouldSpendLeasedBlockLocallyBeforeAskingDatabaseAgain() {
+        when(databaseDialect.isPostgres()).thenReturn(true);
+        when(rateLimitBucketRepository.acquire(anyLong(), anyLong(), eq(5000L), eq(30000L), eq(10)))
+                .thenReturn(5000L)
+                .thenReturn(2000L)
+                .thenReturn(0L);
+        TrackRateLimiterService limiter = sharedLimiter();
+
+        for (int i = 0; i < 7; i++) {
+            assertTrue(limiter.allow(IP_HASH));
+        }
+        assertFalse(limiter.allow(IP_HASH));
+
+        verify(rateLimitBucketRepository, times(3)).acquire(anyLong(), anyLong(), eq(5000L), eq(30000L), eq(10));
+    }
+
+    @Test
+    void shouldRememberDenialAndKeepPartialGrants() {
+        when(databaseDialect.isPostgres()).thenReturn(true);
+        when(rateLimitBucketRepository.acquire(anyLong(), anyLong(), eq(5000L), eq(30000L), eq(10)))
+                .thenReturn(500L)
+                .thenReturn(500L);
+        TrackRateLimiterService limiter = sharedLimiter();
+
+        assertFalse(limiter.allow(IP_HASH));
+        for (int i = 0; i < 10; i++) {
+            assertFalse(limiter.allow(IP_HASH));
+        }
+        verify(rateLimitBucketRepository, times(1)).acquire(anyLong(), anyLong(), anyLong(), anyLong(), anyInt());
+
+        // 4500 milli-tokens short at 10 per millisecond: asked again after 450 ms, and the two halves add up.
+        clock.advanceMillis(450);
+        assertTrue(limiter.allow(IP_HASH));
+        verify(rateLimitBucketRepository, times(2)).acquire(anyLong(), anyLong(), anyLong(), anyLong(), anyInt());
+    }
+
+    @Test
+    void shouldFallBackToLocalBucketsWhileSharedStoreFails() {
+        when(databaseDialect.isPostgres()).thenReturn(true);
+        when(rateLimitBucketRepository.acquire(anyLong(), anyLong(), anyLong(), anyLong(), anyInt()))
+                .thenThrow(new QueryTimeoutException("timeout"));
+        TrackRateLimiterService limiter = sharedLimiter();
+
+        assertTrue(limiter.allow(IP_HASH));
+        assertTrue(limiter.allow(IP_HASH));
+
+        verify(rateLimitBucketRepository, times(1)).acquire(anyLong(), anyLong(), anyLong(), anyLong(), anyInt());
+        assertEquals(1.0, meterRegistry.get("tracking.rate_limit.shared.fallback").counter().count());
+    }
+
+    private TrackRateLimiterService sharedLimiter() {
+        AppProperties appProperties = new AppProperties();
+        appProperties.getTracking().setRateLimitSharedEnabled(true);
+        return new TrackRateLimiterService(appProperties, clock, meterRegistry, rateLimitBucketRepository, databaseDialect);
+    }
+
+    private TrackRateLimiterService limiter(int capacity, int refillPerSecond, int maxBuckets) {
+        AppProperties appProperties = new AppProperties();
+        appProperties.getTracking().setRateLimitCapacity(capacity);
+        appProperties.getTracking().setRateLimitRefillPerSecond(refillPerSecond);
+        appProperties.getTracking().setRateLimitMaxBuckets(maxBuckets);
+        return new TrackRateLimiterService(appProperties, clock, meterRegistry, rateLimitBucketRepository, databaseDialect);
+    }
+}
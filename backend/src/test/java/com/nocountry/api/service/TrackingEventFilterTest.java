@@ -0,0 +1,56 @@
+package com.nocountry.api.service;
+
+import com.nocountry.api.config.AppProperties;
+import com.nocountry.api.support.MutableClock;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrackingEventFilterTest {
+
+    @Test
+    void shouldRememberIdsUntilTheirSliceAgesOut() {
+        MutableClock clock = new MutableClock(Instant.parse("2026-02-13T10:00:00Z"));
+        AppProperties appProperties = new AppProperties();
+        appProperties.getTracking().setDedupFilterWindowSeconds(600);
+        TrackingEventFilter filter = new TrackingEventFilter(appProperties, clock, new SimpleMeterRegistry());
+
+        UUID id = UUID.randomUUID();
+        assertFalse(filter.mightContain(id));
+        filter.put(id);
+        assertTrue(filter.mightContain(id));
+
+        clock.advanceSeconds(300);
+        assertTrue(filter.mightContain(id));
+
+        clock.advanceSeconds(300);
+        assertFalse(filter.mightContain(id));
+    }
+
+    @Test
+    void shouldKeepFalsePositivesRareWithinMemoryBudget() {
+        AppProperties appProperties = new AppProperties();
+        appProperties.getTracking().setDedupFilterMemoryKb(64);
+        TrackingEventFilter filter = new TrackingEventFilter(
+                appProperties, Clock.fixed(Instant.parse("2026-02-13T10:00:00Z"), ZoneOffset.UTC), new SimpleMeterRegistry());
+
+        for (int i = 0; i < 10_000; i++) {
+            filter.put(UUID.randomUUID());
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightContain(UUID.randomUUID())) {
+                falsePositives++;
+            }
+        }
+
+        assertTrue(falsePositives < 100, "false positives: " + falsePositives);
+    }
+}
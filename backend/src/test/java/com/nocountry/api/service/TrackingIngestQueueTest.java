@@ -0,0 +1,126 @@
+package com.nocountry.api.service;
+
+import com.nocountry.api.config.AppProperties;
+import com.nocountry.api.dto.TrackRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TrackingIngestQueueTest {
+
+    @Mock
+    private TrackingService trackingService;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private TrackingIngestQueue queue;
+
+    @AfterEach
+    void tearDown() {
+        if (queue != null) {
+            queue.stop();
+        }
+    }
+
+    @Test
+    void shouldPersistQueuedEventsInBatches() {
+        queue = newQueue(100);
+        queue.start();
+
+        TrackRequest request = landingView();
+        RequestMetadata metadata = new RequestMetadata("ua", "1.1.1.1", "hash");
+        when(trackingService.toCommand(any(), any()))
+                .thenAnswer(invocation -> new TrackingCommand(UUID.randomUUID(), request, metadata, Instant.now()));
+
+        AtomicInteger persisted = new AtomicInteger();
+        doAnswer(invocation -> {
+            List<TrackingCommand> batch = invocation.getArgument(0);
+            persisted.addAndGet(batch.size());
+            return null;
+        }).when(trackingService).trackBatch(any());
+
+        for (int i = 0; i < 5; i++) {
+            queue.enqueue(request, metadata);
+        }
+
+        verify(trackingService, timeout(2000).atLeastOnce()).trackBatch(any());
+        queue.stop();
+        assertEquals(5, persisted.get());
+    }
+
+    @Test
+    void shouldKeepValidEventsWhenOneEventOfTheBatchFails() {
+        queue = newQueue(100);
+        queue.start();
+
+        TrackRequest request = landingView();
+        RequestMetadata metadata = new RequestMetadata("ua", "1.1.1.1", "hash");
+        TrackingCommand valid = new TrackingCommand(UUID.randomUUID(), request, metadata, Instant.now());
+        TrackingCommand poison = new TrackingCommand(UUID.randomUUID(), request, metadata, Instant.now());
+        TrackingCommand alsoValid = new TrackingCommand(UUID.randomUUID(), request, metadata, Instant.now());
+
+        AtomicInteger persisted = new AtomicInteger();
+        doAnswer(invocation -> {
+            List<TrackingCommand> batch = invocation.getArgument(0);
+            if (batch.contains(poison)) {
+                throw new IllegalStateException("value too long");
+            }
+            persisted.addAndGet(batch.size());
+            return null;
+        }).when(trackingService).trackBatch(any());
+
+        queue.enqueue(valid);
+        queue.enqueue(poison);
+        queue.enqueue(alsoValid);
+
+        verify(trackingService, timeout(2000).atLeastOnce()).trackBatch(any());
+        queue.stop();
+        assertEquals(2, persisted.get());
+        assertEquals(1.0, meterRegistry.counter("tracking.ingest.failed").count());
+    }
+
+    @Test
+    void shouldRejectWhenWritersAreNotRunning() {
+        queue = newQueue(1);
+
+        TrackRequest request = landingView();
+        RequestMetadata metadata = new RequestMetadata("ua", "1.1.1.1", "hash");
+        when(trackingService.toCommand(any(), any()))
+                .thenReturn(new TrackingCommand(UUID.randomUUID(), request, metadata, Instant.now()));
+
+        assertThrows(ServiceUnavailableException.class, () -> queue.enqueue(request, metadata));
+        verify(trackingService, never()).trackBatch(any());
+    }
+
+    private TrackingIngestQueue newQueue(int capacity) {
+        AppProperties appProperties = new AppProperties();
+        appProperties.getTracking().setAsyncIngestEnabled(true);
+        appProperties.getTracking().setIngestQueueCapacity(capacity);
+        appProperties.getTracking().setIngestWriterThreads(1);
+        appProperties.getTracking().setIngestFlushIntervalMs(10);
+        return new TrackingIngestQueue(trackingService, appProperties, meterRegistry);
+    }
+
+    private TrackRequest landingView() {
+        TrackRequest request = new TrackRequest();
+        request.setEventType("landing_view");
+        return request;
+    }
+}
@@ -3,9 +3,11 @@ package com.nocountry.api.service;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.nocountry.api.config.AppProperties;
 import com.nocountry.api.dto.TrackRequest;
+import com.nocountry.api.entity.TrackingEvent;
 import com.nocountry.api.entity.TrackingSession;
 import com.nocountry.api.repository.TrackingEventRepository;
 import com.nocountry.api.repository.TrackingSessionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -16,13 +18,12 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import java.time.Clock;
 import java.time.Instant;
 import java.time.ZoneOffset;
-import java.util.Optional;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.argThat;
-import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -35,6 +36,9 @@ class TrackingServiceTest {
     @Mock
     private TrackingEventRepository trackingEventRepository;
 
+    @Mock
+    private LastSeenCoalescer lastSeenCoalescer;
+
     private TrackingService trackingService;
 
     @BeforeEach
@@ -43,29 +47,23 @@ class TrackingServiceTest {
         appProperties.getTracking().setEnabled(true);
 
         Clock clock = Clock.fixed(Instant.parse("2026-02-13T10:00:00Z"), ZoneOffset.UTC);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
         trackingService = new TrackingService(
                 trackingSessionRepository,
                 trackingEventRepository,
                 new ObjectMapper(),
                 clock,
-                appProperties
+                appProperties,
+                new TrackingSessionCache(appProperties, meterRegistry),
+                lastSeenCoalescer,
+                new TrackingEventFilter(appProperties, clock, meterRegistry)
         );
-
-        when(trackingSessionRepository.saveAndFlush(any())).thenAnswer(invocation -> invocation.getArgument(0));
-        when(trackingEventRepository.saveAndFlush(any())).thenAnswer(invocation -> invocation.getArgument(0));
     }
 
     @Test
-    void shouldNotOverwriteFirstTouchUtmSource() {
+    void shouldUpsertSessionWithoutReadingIt() {
         UUID eventId = UUID.randomUUID();
-
-        TrackingSession existing = new TrackingSession();
-        existing.setEventId(eventId);
-        existing.setCreatedAt(Instant.parse("2026-02-10T10:00:00Z"));
-        existing.setLastSeenAt(Instant.parse("2026-02-10T10:00:00Z"));
-        existing.setUtmSource("google");
-
-        when(trackingSessionRepository.findById(eventId)).thenReturn(Optional.of(existing));
+        when(trackingEventRepository.insertIfAbsent(any())).thenReturn(true);
 
         TrackRequest request = new TrackRequest();
         request.setEventId(eventId.toString());
@@ -77,39 +75,96 @@ class TrackingServiceTest {
         trackingService.track(request, metadata);
 
         ArgumentCaptor<TrackingSession> sessionCaptor = ArgumentCaptor.forClass(TrackingSession.class);
-        verify(trackingSessionRepository).saveAndFlush(sessionCaptor.capture());
+        verify(trackingSessionRepository).upsert(sessionCaptor.capture());
+        verify(trackingSessionRepository, never()).findById(any());
+
+        TrackingSession upserted = sessionCaptor.getValue();
+        assertEquals(eventId, upserted.getEventId());
+        assertEquals("facebook", upserted.getUtmSource());
+        assertEquals("hash", upserted.getIpHash());
+    }
+
+    @Test
+    void shouldTreatDuplicateEventInsertAsIdempotent() {
+        UUID eventId = UUID.randomUUID();
+        when(trackingEventRepository.insertIfAbsent(any())).thenReturn(false);
+
+        TrackRequest request = new TrackRequest();
+        request.setEventId(eventId.toString());
+        request.setEventType("landing_view");
+
+        RequestMetadata metadata = new RequestMetadata("ua", "1.1.1.1", "hash");
+
+        UUID tracked = trackingService.track(request, metadata);
 
-        TrackingSession saved = sessionCaptor.getValue();
-        assertEquals("google", saved.getUtmSource());
+        assertEquals(eventId, tracked);
+        ArgumentCaptor<TrackingEvent> eventCaptor = ArgumentCaptor.forClass(TrackingEvent.class);
+        verify(trackingEventRepository).insertIfAbsent(eventCaptor.capture());
+        assertEquals(eventId, eventCaptor.getValue().getEventId());
+        assertEquals("landing_view", eventCaptor.getValue().getEventType());
     }
 
     @Test
-    void shouldHandleConcurrentSessionInsertIdempotently() {
+    void shouldOnlyCoalesceLastSeenForCachedSessionWithoutNewFirstTouchData() {
         UUID eventId = UUID.randomUUID();
+        when(trackingEventRepository.insertIfAbsent(any())).thenReturn(true);
+        RequestMetadata metadata = new RequestMetadata("ua", "1.1.1.1", "hash");
+
+        TrackRequest landing = new TrackRequest();
+        landing.setEventId(eventId.toString());
+        landing.setEventType("landing_view");
+        landing.setUtmSource("google");
+        trackingService.track(landing, metadata);
+
+        TrackRequest click = new TrackRequest();
+        click.setEventId(eventId.toString());
+        click.setEventType("click_cta");
+        click.setUtmSource("facebook");
+        trackingService.track(click, metadata);
+        trackingService.ensureSessionExists(eventId);
+
+        verify(trackingSessionRepository, times(1)).upsert(any());
+        verify(lastSeenCoalescer, times(3)).record(eventId, Instant.parse("2026-02-13T10:00:00Z"));
+        verify(trackingSessionRepository, never()).touchLastSeen(any());
+        verify(trackingSessionRepository, never()).findById(any());
+    }
 
-        TrackingSession existing = new TrackingSession();
-        existing.setEventId(eventId);
-        existing.setCreatedAt(Instant.parse("2026-02-10T10:00:00Z"));
-        existing.setLastSeenAt(Instant.parse("2026-02-10T10:00:00Z"));
-        existing.setUtmSource("google");
+    @Test
+    void shouldUpsertCachedSessionWhenRequestFillsBlankFirstTouchField() {
+        UUID eventId = UUID.randomUUID();
+        when(trackingEventRepository.insertIfAbsent(any())).thenReturn(true);
+        RequestMetadata metadata = new RequestMetadata("ua", "1.1.1.1", "hash");
 
-        when(trackingSessionRepository.findById(eventId))
-                .thenReturn(Optional.empty())
-                .thenReturn(Optional.of(existing));
+        TrackRequest landing = new TrackRequest();
+        landing.setEventId(eventId.toString());
+        landing.setEventType("landing_view");
+        trackingService.track(landing, metadata);
 
-        doThrow(new org.springframework.dao.DataIntegrityViolationException("duplicate"))
-                .when(trackingSessionRepository)
-                .saveAndFlush(argThat(session -> session.getCreatedAt() != null && "facebook".equals(session.getUtmSource())));
+        TrackRequest click = new TrackRequest();
+        click.setEventId(eventId.toString());
+        click.setEventType("click_cta");
+        click.setGclid("gclid-1");
+        trackingService.track(click, metadata);
+
+        verify(trackingSessionRepository, times(2)).upsert(any());
+    }
+
+    @Test
+    void shouldCheckExistenceInsteadOfInsertingRecentlyWrittenEvent() {
+        UUID eventId = UUID.randomUUID();
+        when(trackingEventRepository.insertIfAbsent(any())).thenReturn(true);
+        when(trackingEventRepository.existsById(any())).thenReturn(true);
 
         TrackRequest request = new TrackRequest();
         request.setEventId(eventId.toString());
         request.setEventType("landing_view");
-        request.setUtmSource("facebook");
-
         RequestMetadata metadata = new RequestMetadata("ua", "1.1.1.1", "hash");
 
         trackingService.track(request, metadata);
+        UUID tracked = trackingService.track(request, metadata);
 
-        verify(trackingSessionRepository).saveAndFlush(argThat(session -> "google".equals(session.getUtmSource())));
+        assertEquals(eventId, tracked);
+        verify(trackingEventRepository, times(1)).insertIfAbsent(any());
+        verify(trackingEventRepository, times(1)).existsById(any());
     }
 }
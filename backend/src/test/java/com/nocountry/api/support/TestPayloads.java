@@ -1,7 +1,10 @@
 package com.nocountry.api.support;
 
+import com.nocountry.api.integration.PurchaseIntegrationPayload;
+
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
+import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.UUID;
@@ -37,6 +40,35 @@ public final class TestPayloads {
                 """.formatted(stripeEventId, stripeSessionId, paymentIntentId, paymentStatus);
     }
 
+    // Same tracking event id as paymentIntentEvent gives that payment intent.
+    public static String checkoutSessionCompletedWithEventId(
+            String stripeEventId,
+            String stripeSessionId,
+            String paymentIntentId,
+            String paymentStatus
+    ) {
+        UUID trackingEventId = UUID.nameUUIDFromBytes(paymentIntentId.getBytes(StandardCharsets.UTF_8));
+        return """
+                {
+                  "id": "%s",
+                  "type": "checkout.session.completed",
+                  "data": {
+                    "object": {
+                      "id": "%s",
+                      "payment_intent": "%s",
+                      "currency": "usd",
+                      "amount_total": 4999,
+                      "payment_status": "%s",
+                      "metadata": {
+                        "client_id": "client-test",
+                        "eventId": "%s"
+                      }
+                    }
+                  }
+                }
+                """.formatted(stripeEventId, stripeSessionId, paymentIntentId, paymentStatus, trackingEventId);
+    }
+
     public static String paymentIntentEvent(
             String stripeEventId,
             String eventType,
@@ -66,6 +98,30 @@ public final class TestPayloads {
                 """.formatted(stripeEventId, eventType, paymentIntentId, status, stripeSessionId, trackingEventId);
     }
 
+    public static PurchaseIntegrationPayload purchase(String stripeSessionId, String clientId) {
+        return purchase(stripeSessionId, clientId, null, null);
+    }
+
+    public static PurchaseIntegrationPayload purchase(
+            String stripeSessionId,
+            String clientId,
+            String customerEmail,
+            String customerName
+    ) {
+        return new PurchaseIntegrationPayload(
+                UUID.randomUUID(),
+                stripeSessionId,
+                new BigDecimal("49.99"),
+                "USD",
+                Instant.now(),
+                "ua",
+                "1.1.1.1",
+                clientId,
+                customerEmail,
+                customerName
+        );
+    }
+
     public static String buildStripeSignatureHeader(String payload, String secret) {
         long timestamp = Instant.now().getEpochSecond();
         String signedPayload = timestamp + "." + payload;
@@ -10,7 +10,9 @@ const DASHBOARD_MAX_SESSIONS = 1000
 const DASHBOARD_DETAIL_CONCURRENCY = 6
 const SUCCESS_ORDER_STATES = new Set(['SUCCESS', 'SUCCEEDED', 'PAID'])
 const FAILED_ORDER_STATES = new Set(['FAILED', 'ERROR', 'CANCELED'])
-const SUCCESS_INTEGRATION_STATES = new Set(['SENT', 'SENT_WITH_WARNINGS'])
+const SUCCESS_INTEGRATION_STATES = new Set(['SENT'])
+// GA4 debug validation writes its own rows next to the SENT one; they report on a delivery, not attempt one.
+const NON_ATTEMPT_INTEGRATION_STATES = new Set(['SKIPPED', 'VALIDATED', 'VALIDATION_WARNINGS'])
 
 export function useDashboardStats(filters: DateRangeParams) {
   return useQuery({
@@ -117,7 +119,7 @@ function resolveBusinessStatus(order: OrderDto) {
 
 function resolveIntegrationHealth(rows: IntegrationLogDto[], integration: string) {
   const attemptedRows = rows.filter((row) => {
-    return row.integration === integration && row.status.toUpperCase() !== 'SKIPPED'
+    return row.integration === integration && !NON_ATTEMPT_INTEGRATION_STATES.has(row.status.toUpperCase())
   })
   if (attemptedRows.length === 0) {
     return null